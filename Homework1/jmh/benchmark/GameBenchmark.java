@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import server.model.HangmanGame;
+
+/**
+ * Measures <code>HangmanGame.guess</code> with a fixed word. Guessing a letter that is
+ * in the word leaves the game as it was, so it is measured on its own. Every other guess
+ * changes the game, so those start a new game first and {@link #startGame()} is the
+ * baseline to subtract. The game has no player, so nothing is recorded on the leaderboard.
+ *
+ * @author Antonio
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+	private static final char[] WORD = "BENCHMARKING".toCharArray();
+	private static final String LETTERS = "BENCHMARKIG";
+	private final HangmanGame game = new HangmanGame();
+
+	/**
+	 * Starts the game that {@link #guessLetterHit()} guesses in.
+	 */
+	@Setup
+	public void setUp() {
+		this.game.startGame(WORD);
+	}
+
+	/**
+	 * Guesses a letter that is in the word.
+	 * @return the game respond.
+	 */
+	@Benchmark
+	public String guessLetterHit() {
+		return this.game.guess("e");
+	}
+
+	/**
+	 * Starts a game, the baseline of the other guesses.
+	 * @return the game respond.
+	 */
+	@Benchmark
+	public String startGame() {
+		return this.game.startGame(WORD);
+	}
+
+	/**
+	 * Starts a game and guesses a letter that is not in the word.
+	 * @return the game respond.
+	 */
+	@Benchmark
+	public String guessLetterMiss() {
+		this.game.startGame(WORD);
+		return this.game.guess("z");
+	}
+
+	/**
+	 * Starts a game and guesses the word.
+	 * @return the game respond.
+	 */
+	@Benchmark
+	public String guessWord() {
+		this.game.startGame(WORD);
+		return this.game.guess("benchmarking");
+	}
+
+	/**
+	 * Starts a game and guesses a wrong word.
+	 * @return the game respond.
+	 */
+	@Benchmark
+	public String guessWordMiss() {
+		this.game.startGame(WORD);
+		return this.game.guess("benchwarming");
+	}
+
+	/**
+	 * Starts a game and wins it by guessing all letters of the word.
+	 * @param blackhole consumes the responds
+	 */
+	@Benchmark
+	public void playGame(Blackhole blackhole) {
+		this.game.startGame(WORD);
+		for(int i = 0; i < LETTERS.length(); i++) {
+			blackhole.consume(this.game.guess(LETTERS.substring(i, i + 1)));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.model.JWTHandler;
+import server.model.VerifiedToken;
+
+/**
+ * Measures <code>JWTHandler</code>: signing a new token, validating a token that is in
+ * the cache of validated tokens, validating a token for the first time, i.e decoding
+ * it and verifying its signature, and rejecting a garbage token that has been rejected before.
+ *
+ * @author Antonio
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+	private static final String USERNAME = "johndoe";
+	private static final String GARBAGE = "eyJhbGciOiJIUzI1NiJ9.not-a-token.signature";
+	private final JWTHandler jwtHandler = new JWTHandler();
+	private String cachedJwt;
+
+	/**
+	 * Creates and validates the token that is validated again from the cache.
+	 */
+	@Setup
+	public void setUp() {
+		this.cachedJwt = this.jwtHandler.generateJWT(USERNAME).getEncodedJwt();
+		this.jwtHandler.isValid(this.cachedJwt);
+		this.jwtHandler.isValid(GARBAGE);
+	}
+
+	/**
+	 * Signs a new token.
+	 * @return the token.
+	 */
+	@Benchmark
+	public VerifiedToken generateJwt() {
+		return this.jwtHandler.generateJWT(USERNAME);
+	}
+
+	/**
+	 * Validates a token that is in the cache.
+	 * @return <code>true</code>
+	 */
+	@Benchmark
+	public boolean isValidCached() {
+		return this.jwtHandler.isValid(this.cachedJwt);
+	}
+
+	/**
+	 * Rejects a token that is in the negative cache.
+	 * @return <code>false</code>
+	 */
+	@Benchmark
+	public boolean isValidRejected() {
+		return this.jwtHandler.isValid(GARBAGE);
+	}
+
+	/**
+	 * Validates a token that has not been seen before.
+	 * @param fresh a new handler and token for every invocation
+	 * @return <code>true</code>
+	 */
+	@Benchmark
+	public boolean isValidFirstTime(FreshToken fresh) {
+		return fresh.jwtHandler.isValid(fresh.jwt);
+	}
+
+	/**
+	 * A token that is not in the cache yet. A new handler, with an empty cache, signs it
+	 * before every invocation, outside of the measured time. The setup for every invocation
+	 * is fine here since a full validation takes several microseconds.
+	 */
+	@State(Scope.Thread)
+	public static class FreshToken {
+		private JWTHandler jwtHandler;
+		private String jwt;
+
+		/**
+		 * Creates the handler and the token.
+		 */
+		@Setup(Level.Invocation)
+		public void setUp() {
+			this.jwtHandler = new JWTHandler();
+			this.jwt = this.jwtHandler.generateJWT(USERNAME).getEncodedJwt();
+		}
+	}
+}
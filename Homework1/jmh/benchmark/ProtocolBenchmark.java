@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
+import common.MessageType;
+import common.Receiver;
+import common.Sender;
+import common.SessionTicket;
+import server.model.JWTHandler;
+
+/**
+ * Measures writing and reading one GUESS message over in-memory streams, with the
+ * text protocol of <code>Sender</code> and <code>Receiver</code> and with the binary
+ * frames of <code>FrameWriter</code> and <code>FrameReader</code>, with a JSON Web Token
+ * and with a session ticket. No socket is involved, so this is the cost of the encoding only.
+ *
+ * @author Antonio
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+	private static final String GUESS = "E";
+	private final Sender sender = new Sender();
+	private final Receiver receiver = new Receiver();
+	private final FrameWriter frameWriter = new FrameWriter();
+	private final FrameReader frameReader = new FrameReader();
+	private final SessionTicket ticket = new SessionTicket(0x0123456789ABCDEFL, 0xFEDCBA9876543210L);
+	private final ByteArrayOutputStream sink = new ByteArrayOutputStream(Constants.MAX_FRAME_SIZE);
+	private final DataOutputStream out = new DataOutputStream(this.sink);
+	private String jwt;
+	private String textMessage;
+	private ByteArrayInputStream textBytes;
+	private DataInputStream textIn;
+	private ByteArrayInputStream frameBytes;
+	private DataInputStream frameIn;
+
+	/**
+	 * Creates the token and the encoded messages to read.
+	 * @throws IOException never, the streams are in memory.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.jwt = new JWTHandler().generateJWT("johndoe").getEncodedJwt();
+		this.textMessage = MessageType.GUESS + Constants.MSG_DELIMITER + this.jwt + Constants.MSG_DELIMITER + GUESS;
+		this.sender.writeMessage(this.textMessage, this.out);
+		this.textBytes = new ByteArrayInputStream(this.sink.toByteArray());
+		this.textIn = new DataInputStream(this.textBytes);
+		this.sink.reset();
+		this.frameWriter.writeFrame(MessageType.GUESS, this.out, 1, this.jwt, GUESS);
+		this.frameBytes = new ByteArrayInputStream(this.sink.toByteArray());
+		this.frameIn = new DataInputStream(this.frameBytes);
+	}
+
+	/**
+	 * Sends a text GUESS message with <code>Sender.sendMessage</code>.
+	 * @return the number of bytes sent.
+	 */
+	@Benchmark
+	public int sendMessage() {
+		this.sink.reset();
+		this.sender.sendMessage(this.textMessage, this.out);
+		return this.sink.size();
+	}
+
+	/**
+	 * Receives a text GUESS message with <code>Receiver.receiveMessage</code>.
+	 * @return the message.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public String receiveMessage() throws IOException {
+		this.textBytes.reset();
+		return this.receiver.receiveMessage(this.textIn);
+	}
+
+	/**
+	 * Sends a GUESS frame with the JSON Web Token.
+	 * @return the number of bytes sent.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public int sendFrame() throws IOException {
+		this.sink.reset();
+		this.frameWriter.sendFrame(MessageType.GUESS, this.out, 1, this.jwt, GUESS);
+		return this.sink.size();
+	}
+
+	/**
+	 * Sends a GUESS frame with a session ticket instead of the JSON Web Token.
+	 * @return the number of bytes sent.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public int sendTicketFrame() throws IOException {
+		this.sink.reset();
+		this.frameWriter.writeFrame(MessageType.GUESS, this.out, 1, this.ticket, GUESS);
+		this.out.flush();
+		return this.sink.size();
+	}
+
+	/**
+	 * Reads a GUESS frame with the JSON Web Token and decodes its fields.
+	 * @param blackhole consumes the fields
+	 * @return the message type.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public MessageType receiveFrame(Blackhole blackhole) throws IOException {
+		this.frameBytes.reset();
+		MessageType type = this.frameReader.readFrame(this.frameIn);
+		blackhole.consume(this.frameReader.nextField());
+		blackhole.consume(this.frameReader.nextField());
+		return type;
+	}
+}
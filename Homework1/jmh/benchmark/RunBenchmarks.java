@@ -0,0 +1,29 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of <code>target/benchmarks.jar</code>, built with <code>mvn -Pjmh package</code>.
+ * Runs the JMH benchmarks like the JMH main class does, always with the GC profiler, so
+ * the allocation per operation (<code>gc.alloc.rate.norm</code>) is reported with the throughput.
+ *
+ * Run with: <code>java -jar target/benchmarks.jar [JMH options] [benchmark regex]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class RunBenchmarks {
+
+	/**
+	 * Runs the benchmarks.
+	 * @param args the JMH command line options.
+	 * @throws Exception if the options are invalid or a benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+	}
+}
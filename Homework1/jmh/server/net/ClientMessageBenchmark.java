@@ -0,0 +1,111 @@
+package server.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
+import common.MessageType;
+import common.SessionTicket;
+import server.model.JWTHandler;
+
+/**
+ * Measures parsing requests into a <code>ClientHandler.ClientMessage</code>: text GUESS
+ * and LOGIN messages, and a GUESS frame of the binary protocol with a JSON Web Token and
+ * with a session ticket. It lives in the package of the <code>ClientHandler</code> since
+ * <code>ClientMessage</code> is not public.
+ *
+ * @author Antonio
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientMessageBenchmark {
+	private static final String LOGIN = MessageType.LOGIN + Constants.MSG_DELIMITER + "johndoe"
+			+ Constants.MSG_BODY_DELIMITER + "123456";
+	private final FrameReader frameReader = new FrameReader();
+	private String textGuess;
+	private ByteArrayInputStream jwtFrameBytes;
+	private DataInputStream jwtFrameIn;
+	private ByteArrayInputStream ticketFrameBytes;
+	private DataInputStream ticketFrameIn;
+
+	/**
+	 * Encodes the messages to parse.
+	 * @throws IOException never, the streams are in memory.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		String jwt = new JWTHandler().generateJWT("johndoe").getEncodedJwt();
+		this.textGuess = MessageType.GUESS + Constants.MSG_DELIMITER + jwt + Constants.MSG_DELIMITER + "E";
+		FrameWriter frameWriter = new FrameWriter();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		frameWriter.writeFrame(MessageType.GUESS, new DataOutputStream(bytes), 1, jwt, "E");
+		this.jwtFrameBytes = new ByteArrayInputStream(bytes.toByteArray());
+		this.jwtFrameIn = new DataInputStream(this.jwtFrameBytes);
+		bytes.reset();
+		frameWriter.writeFrame(MessageType.GUESS, new DataOutputStream(bytes), 1, new SessionTicket(1, 2), "E");
+		this.ticketFrameBytes = new ByteArrayInputStream(bytes.toByteArray());
+		this.ticketFrameIn = new DataInputStream(this.ticketFrameBytes);
+	}
+
+	/**
+	 * Parses a text GUESS message.
+	 * @return the parsed message.
+	 */
+	@Benchmark
+	public ClientHandler.ClientMessage parseTextGuess() {
+		return new ClientHandler.ClientMessage(this.textGuess);
+	}
+
+	/**
+	 * Parses a text LOGIN message.
+	 * @return the parsed message.
+	 */
+	@Benchmark
+	public ClientHandler.ClientMessage parseTextLogin() {
+		return new ClientHandler.ClientMessage(LOGIN);
+	}
+
+	/**
+	 * Reads and parses a GUESS frame with a JSON Web Token.
+	 * @return the parsed message.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public ClientHandler.ClientMessage parseJwtFrame() throws IOException {
+		this.jwtFrameBytes.reset();
+		return new ClientHandler.ClientMessage(this.frameReader, this.jwtFrameIn);
+	}
+
+	/**
+	 * Reads and parses a GUESS frame with a session ticket.
+	 * @return the parsed message.
+	 * @throws IOException never, the stream is in memory.
+	 */
+	@Benchmark
+	public ClientHandler.ClientMessage parseTicketFrame() throws IOException {
+		this.ticketFrameBytes.reset();
+		return new ClientHandler.ClientMessage(this.frameReader, this.ticketFrameIn);
+	}
+}
@@ -0,0 +1,50 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import server.net.HangmanServer;
+
+/**
+ * Starts a <code>HangmanServer</code> for a benchmark on a daemon thread, so it stops with
+ * the benchmark, and waits until its port accepts connections before the benchmark connects.
+ * The port is probed with a connection that is closed right away.
+ *
+ * @author Antonio
+ *
+ */
+final class BenchmarkServer {
+	private static final String HOST = "localhost";
+	private static final long START_TIMEOUT_MILLIS = 10_000;
+	private static final long PROBE_INTERVAL_MILLIS = 20;
+	private static final int PROBE_TIMEOUT_MILLIS = 1000;
+
+	private BenchmarkServer() {
+	}
+
+	/**
+	 * Runs the server and waits until it listens.
+	 * @param server the server, set up but not run yet.
+	 * @param port the port the server listens on.
+	 * @throws IOException if the port does not accept connections within the timeout.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	static void start(HangmanServer server, int port) throws IOException, InterruptedException {
+		Thread serverThread = new Thread(server::run);
+		serverThread.setDaemon(true);
+		serverThread.start();
+		long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+		while(true) {
+			try(Socket probe = new Socket()) {
+				probe.connect(new InetSocketAddress(HOST, port), PROBE_TIMEOUT_MILLIS);
+				return;
+			} catch (IOException notListening) {
+				if(!serverThread.isAlive() || System.currentTimeMillis() >= deadline) {
+					throw new IOException("Server on port " + port + " did not start", notListening);
+				}
+				Thread.sleep(PROBE_INTERVAL_MILLIS);
+			}
+		}
+	}
+}
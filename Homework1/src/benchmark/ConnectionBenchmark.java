@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import common.Constants;
+import common.MessageType;
+import common.Receiver;
+import common.Sender;
+import server.net.ConnectionExecutor;
+import server.net.ExecutionMode;
+import server.net.HangmanServer;
+
+/**
+ * Benchmarks the different {@link ExecutionMode}s of the <code>HangmanServer</code>.
+ * For every mode a server is started locally, a number of active clients start
+ * to send GUESS requests while a flood of idle clients connects. The benchmark
+ * reports how many idle connections the server held, how many were rejected by the
+ * admission control and the round trip latency seen by the active clients.
+ *
+ * Run with: <code>java benchmark.ConnectionBenchmark [idleClients] [activeClients] [requestsPerClient]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class ConnectionBenchmark {
+	private static final String HOST = "127.0.0.1";
+	private static final int BASE_PORT = 5100;
+	private static final int POOL_SIZE = 64;
+	private static final int MAX_CONNECTIONS = 512;
+	private static final int SETTLE_MILLIS = 500;
+	private static final String USERNAME = "johndoe";
+	private static final String PASSWORD = "123456";
+
+	/**
+	 * Runs the benchmark for every <code>ExecutionMode</code>.
+	 * @param args optional number of idle clients, active clients and requests per active client.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int idleClients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int activeClients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		System.out.printf("%-22s %8s %8s %10s %10s %10s%n", "mode", "held", "rejected", "p50 (us)", "p99 (us)", "req/s");
+		ExecutionMode[] modes = ExecutionMode.values();
+		for(int i = 0; i < modes.length; i++) {
+			runMode(modes[i], BASE_PORT + i, idleClients, activeClients, requestsPerClient);
+		}
+		System.exit(0);
+	}
+
+	private static void runMode(ExecutionMode mode, int port, int idleClients, int activeClients,
+			int requestsPerClient) throws Exception {
+		ConnectionExecutor executor = new ConnectionExecutor(mode, POOL_SIZE, MAX_CONNECTIONS);
+		BenchmarkServer.start(new HangmanServer(port, executor), port);
+
+		long[][] latencies = new long[activeClients][];
+		CountDownLatch loggedIn = new CountDownLatch(activeClients);
+		CountDownLatch idleConnected = new CountDownLatch(1);
+		List<Thread> activeThreads = new ArrayList<>();
+		for(int i = 0; i < activeClients; i++) {
+			final int client = i;
+			Thread thread = new Thread(() -> {
+				try {
+					latencies[client] = runActiveClient(port, requestsPerClient, loggedIn, idleConnected);
+				} catch (Exception e) {
+					latencies[client] = new long[0];
+					loggedIn.countDown();
+				}
+			});
+			thread.start();
+			activeThreads.add(thread);
+		}
+		loggedIn.await();
+
+		List<Socket> idleSockets = new ArrayList<>();
+		for(int i = 0; i < idleClients; i++) {
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress(HOST, port));
+			idleSockets.add(socket);
+		}
+		long start = System.nanoTime();
+		idleConnected.countDown();
+		for(Thread thread : activeThreads) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Thread.sleep(SETTLE_MILLIS);
+		int held = executor.activeConnections();
+		int rejected = idleClients - held;
+		for(Socket socket : idleSockets) {
+			socket.close();
+		}
+		executor.shutdown();
+
+		long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+		double requestsPerSecond = all.length / (elapsed / 1e9);
+		System.out.printf("%-22s %8d %8d %10d %10d %10.0f%n", executor.getMode(), held, rejected,
+				percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000, requestsPerSecond);
+	}
+
+	private static long[] runActiveClient(int port, int requests, CountDownLatch loggedIn,
+			CountDownLatch idleConnected) throws IOException, InterruptedException {
+		Sender sender = new Sender();
+		Receiver receiver = new Receiver();
+		try(Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(HOST, port));
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			sender.sendMessage(MessageType.LOGIN + Constants.MSG_DELIMITER + USERNAME
+					+ Constants.MSG_BODY_DELIMITER + PASSWORD, out);
+			String jwt = receiver.receiveMessage(in).split(Constants.MSG_DELIMITER)[Constants.MSG_JWT_INDEX];
+			String guess = MessageType.GUESS + Constants.MSG_DELIMITER + jwt + Constants.MSG_DELIMITER + "A";
+			loggedIn.countDown();
+			idleConnected.await();
+
+			long[] latencies = new long[requests];
+			for(int i = 0; i < requests; i++) {
+				long start = System.nanoTime();
+				sender.sendMessage(guess, out);
+				receiver.receiveMessage(in);
+				latencies[i] = System.nanoTime() - start;
+			}
+			sender.sendMessage(MessageType.DISCONNECT.toString(), out);
+			return latencies;
+		}
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+	}
+}
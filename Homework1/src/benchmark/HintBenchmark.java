@@ -0,0 +1,170 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import server.model.HintSolver;
+import server.model.WordIndex;
+import server.model.WordReader;
+
+/**
+ * Measures the <code>HintSolver</code> over a large dictionary. The words of the
+ * word file are padded with variants (one or two letters changed) up to the requested
+ * number of words, written to a temporary file and loaded like the server does.
+ *
+ * Then games are played by always guessing the hinted letter, and the time per hint
+ * is measured. For a sample of the same game states the candidates are also counted
+ * by scanning every word of the index, which is what the bitsets replace.
+ *
+ * Run with: <code>java benchmark.HintBenchmark [words] [games]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class HintBenchmark {
+	private static final int NAIVE_SAMPLES = 200;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional number of dictionary words and games to play.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_200_000;
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		Path wordFile = writeWords(WordReader.getShared().load(), wordCount);
+		try {
+			WordIndex index = new WordReader(wordFile).load();
+			long buildStart = System.nanoTime();
+			HintSolver solver = HintSolver.build(index);
+			System.out.printf("built bitsets for %d words in %d ms, %d MB%n", index.size(),
+					(System.nanoTime() - buildStart) / 1_000_000, solver.memoryBytes() / (1024 * 1024));
+
+			//Warm up, then measure
+			play(solver, index, games / 4, null);
+			long[] hintNanos = new long[games * 32];
+			int[] result = play(solver, index, games, hintNanos);
+			int hints = result[0];
+			long[] measured = Arrays.copyOf(hintNanos, hints);
+			Arrays.sort(measured);
+			System.out.printf("%d games, %d hints: mean %.1f us, p50 %.1f us, p99 %.1f us%n", games, hints,
+					Arrays.stream(measured).average().orElse(0) / 1000, measured[hints / 2] / 1000.0,
+					measured[(int) (hints * 0.99)] / 1000.0);
+			System.out.printf("games won within the attempts: %.1f%%, mean misses per game %.2f%n",
+					100.0 * result[1] / games, (double) result[2] / games);
+
+			long naiveNanos = 0;
+			long bitsetNanos = 0;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for(int i = 0; i < NAIVE_SAMPLES; i++) {
+				char[] word = index.wordChars(random.nextInt(index.size()));
+				char[] pattern = new char[word.length];
+				Arrays.fill(pattern, HintSolver.HIDDEN);
+				StringBuilder misses = new StringBuilder();
+				guess(word, pattern, misses, solver.bestLetter(pattern, misses).getLetter());
+				long start = System.nanoTime();
+				int naive = naiveCount(index, pattern, misses);
+				naiveNanos += System.nanoTime() - start;
+				start = System.nanoTime();
+				int bitset = solver.countCandidates(pattern, misses);
+				bitsetNanos += System.nanoTime() - start;
+				if(naive != bitset) {
+					System.out.println("Mismatch for " + new String(pattern) + " misses " + misses + ": " + naive + " != " + bitset);
+				}
+			}
+			System.out.printf("candidate filtering: full scan %.1f us, bitsets %.1f us%n",
+					naiveNanos / 1000.0 / NAIVE_SAMPLES, bitsetNanos / 1000.0 / NAIVE_SAMPLES);
+		} finally {
+			Files.delete(wordFile);
+		}
+	}
+
+	//Returns the number of hints, games won and misses
+	private static int[] play(HintSolver solver, WordIndex index, int games, long[] hintNanos) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int hints = 0;
+		int won = 0;
+		int totalMisses = 0;
+		for(int game = 0; game < games; game++) {
+			char[] word = index.wordChars(random.nextInt(index.size()));
+			char[] pattern = new char[word.length];
+			Arrays.fill(pattern, HintSolver.HIDDEN);
+			StringBuilder misses = new StringBuilder();
+			while(!Arrays.equals(pattern, word)) {
+				long start = System.nanoTime();
+				HintSolver.Hint hint = solver.bestLetter(pattern, misses);
+				if(hintNanos != null && hints < hintNanos.length) {
+					hintNanos[hints] = System.nanoTime() - start;
+				}
+				hints++;
+				if(!hint.hasLetter()) {
+					break;
+				}
+				guess(word, pattern, misses, hint.getLetter());
+			}
+			totalMisses += misses.length();
+			if(Arrays.equals(pattern, word) && misses.length() < word.length) {
+				won++;
+			}
+		}
+		return new int[] {Math.min(hints, hintNanos == null ? hints : hintNanos.length), won, totalMisses};
+	}
+
+	private static void guess(char[] word, char[] pattern, StringBuilder misses, char letter) {
+		boolean hit = false;
+		for(int i = 0; i < word.length; i++) {
+			if(word[i] == letter) {
+				pattern[i] = letter;
+				hit = true;
+			}
+		}
+		if(!hit) {
+			misses.append(letter);
+		}
+	}
+
+	private static int naiveCount(WordIndex index, char[] pattern, CharSequence misses) {
+		int count = 0;
+		String revealed = new String(pattern);
+		for(int i = 0; i < index.size(); i++) {
+			if(index.wordLength(i) != pattern.length) {
+				continue;
+			}
+			char[] word = index.wordChars(i);
+			boolean matches = true;
+			for(int p = 0; p < word.length && matches; p++) {
+				if(pattern[p] == HintSolver.HIDDEN) {
+					matches = revealed.indexOf(word[p]) < 0 && misses.toString().indexOf(word[p]) < 0;
+				} else {
+					matches = pattern[p] == word[p];
+				}
+			}
+			if(matches) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static Path writeWords(WordIndex dictionary, int wordCount) throws Exception {
+		Path wordFile = Files.createTempFile("hint-benchmark", ".txt");
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		try(BufferedWriter out = Files.newBufferedWriter(wordFile, StandardCharsets.UTF_8)) {
+			for(int i = 0; i < wordCount; i++) {
+				char[] word = dictionary.wordChars(i % dictionary.size());
+				if(i >= dictionary.size()) {
+					for(int change = random.nextInt(1, 3); change > 0; change--) {
+						word[random.nextInt(word.length)] = (char) ('A' + random.nextInt(26));
+					}
+				}
+				out.write(word);
+				out.newLine();
+			}
+		}
+		return wordFile;
+	}
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import server.integration.ScoreJournal;
+import server.model.Leaderboard;
+
+/**
+ * Measures how many game outcomes per second the <code>ScoreJournal</code> makes
+ * durable when many game threads finish games at once, with group commit and with
+ * one force per outcome. Every row then replays the journal into a new leaderboard,
+ * reports the replay time and checks that all scores came back. The last row uses a
+ * small compaction threshold so that the replay goes through snapshots.
+ *
+ * Run with: <code>java benchmark.JournalBenchmark [threads] [outcomesPerThread] [players]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class JournalBenchmark {
+	private static final long NO_COMPACTION = Long.MAX_VALUE;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional number of game threads, outcomes per thread and players.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int outcomesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int players = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		System.out.printf("%-28s %12s %10s %12s %12s %8s%n", "journal", "outcomes/s", "forces", "per force", "replay ms", "scores");
+		run("one force per outcome", threads, outcomesPerThread, players, NO_COMPACTION, 1);
+		run("group commit", threads, outcomesPerThread, players, NO_COMPACTION, 4096);
+		run("group commit, compaction", threads, outcomesPerThread, players, 64 * 1024, 4096);
+	}
+
+	private static void run(String name, int threads, int outcomesPerThread, int players,
+			long compactBytes, int maxBatch) throws Exception {
+		Path directory = Files.createTempDirectory("journal-benchmark");
+		try {
+			Leaderboard leaderboard = new Leaderboard();
+			ScoreJournal journal = new ScoreJournal(directory, compactBytes, maxBatch);
+			journal.open(leaderboard);
+			CountDownLatch done = new CountDownLatch(threads);
+			long start = System.nanoTime();
+			for(int t = 0; t < threads; t++) {
+				new Thread(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for(int i = 0; i < outcomesPerThread; i++) {
+						String player = "player" + random.nextInt(players);
+						if(random.nextBoolean()) {
+							leaderboard.recordWin(player);
+						} else {
+							leaderboard.recordLoss(player);
+						}
+					}
+					done.countDown();
+				}).start();
+			}
+			done.await();
+			journal.close();
+			double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+			Leaderboard restored = new Leaderboard();
+			long replayStart = System.nanoTime();
+			ScoreJournal reopened = new ScoreJournal(directory, compactBytes, maxBatch);
+			reopened.open(restored);
+			long replayMillis = (System.nanoTime() - replayStart) / 1_000_000;
+			reopened.close();
+
+			boolean scoresMatch = restored.getWins() == leaderboard.getWins()
+					&& restored.getLosses() == leaderboard.getLosses();
+			for(int i = 0; i < players; i++) {
+				scoresMatch &= restored.scoreOf("player" + i) == leaderboard.scoreOf("player" + i);
+			}
+			System.out.printf("%-28s %12.0f %10d %12.1f %12d %8s%n", name, journal.getAppendedCount() / elapsedSeconds,
+					journal.getCommitCount(), (double) journal.getAppendedCount() / journal.getCommitCount(),
+					replayMillis, scoresMatch ? "ok" : "LOST");
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		try(Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
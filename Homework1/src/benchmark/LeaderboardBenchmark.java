@@ -0,0 +1,95 @@
+package benchmark;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import server.model.Leaderboard;
+
+/**
+ * Measures score updates per second on the <code>Leaderboard</code> with one
+ * updating thread per core, while another thread keeps querying the top players.
+ * At the end the scores are checked against the win and loss totals, and the last
+ * top list is checked for duplicate players.
+ *
+ * Run with: <code>java benchmark.LeaderboardBenchmark [players] [seconds] [topCount]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class LeaderboardBenchmark {
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional number of players, seconds to run and players per top list query.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+		int topCount = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Leaderboard leaderboard = new Leaderboard();
+		String[] names = new String[players];
+		for(int i = 0; i < players; i++) {
+			names[i] = "player" + i;
+		}
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		LongAdder updates = new LongAdder();
+		LongAdder queries = new LongAdder();
+		CountDownLatch done = new CountDownLatch(threads + 1);
+		for(int t = 0; t < threads; t++) {
+			new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while(running.get()) {
+					String player = names[random.nextInt(players)];
+					if(random.nextBoolean()) {
+						leaderboard.recordWin(player);
+					} else {
+						leaderboard.recordLoss(player);
+					}
+					updates.increment();
+				}
+				done.countDown();
+			}).start();
+		}
+		Set<String> duplicates = new HashSet<>();
+		new Thread(() -> {
+			while(running.get()) {
+				Set<String> seen = new HashSet<>();
+				for(Leaderboard.Entry entry : leaderboard.topPlayers(topCount)) {
+					if(!seen.add(entry.getPlayer())) {
+						duplicates.add(entry.getPlayer());
+					}
+				}
+				queries.increment();
+			}
+			done.countDown();
+		}).start();
+
+		long start = System.nanoTime();
+		Thread.sleep(seconds * 1000);
+		running.set(false);
+		done.await();
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+		long scoreSum = 0;
+		for(String name : names) {
+			scoreSum += leaderboard.scoreOf(name);
+		}
+		List<Leaderboard.Entry> top = leaderboard.topPlayers(topCount);
+		System.out.printf("%d updating threads, %d players%n", threads, players);
+		System.out.printf("updates/s:         %12.0f%n", updates.sum() / elapsedSeconds);
+		System.out.printf("top %d queries/s:  %12.0f%n", topCount, queries.sum() / elapsedSeconds);
+		System.out.printf("score sum %d, wins - losses %d, duplicate players in a top list: %d%n",
+				scoreSum, leaderboard.getWins() - leaderboard.getLosses(), duplicates.size());
+		for(Leaderboard.Entry entry : top) {
+			System.out.println(entry.getPlayer() + " " + entry.getScore());
+		}
+	}
+}
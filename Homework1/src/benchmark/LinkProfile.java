@@ -0,0 +1,131 @@
+package benchmark;
+
+/**
+ * The properties of an emulated network link, one direction of it, see {@link WanProxy}.
+ * Every chunk of bytes is delayed by the latency plus a random jitter, takes as long to
+ * send as the bandwidth allows, and is at most one packet large. Chunks are never
+ * reordered, like on a TCP connection.
+ *
+ * @author Antonio
+ *
+ */
+public final class LinkProfile {
+	/**
+	 * A local network, no emulated latency or bandwidth cap.
+	 */
+	public static final LinkProfile LAN = new LinkProfile("lan", 0, 0, 0, 1460);
+	/**
+	 * A good home connection.
+	 */
+	public static final LinkProfile BROADBAND = new LinkProfile("broadband", 15, 3, 20_000_000, 1460);
+	/**
+	 * A mobile connection with a weak signal.
+	 */
+	public static final LinkProfile MOBILE = new LinkProfile("mobile", 60, 25, 1_000_000, 1400);
+	/**
+	 * A satellite connection.
+	 */
+	public static final LinkProfile SATELLITE = new LinkProfile("satellite", 300, 20, 2_000_000, 1460);
+	private static final LinkProfile[] PRESETS = {LAN, BROADBAND, MOBILE, SATELLITE};
+	private final String name;
+	private final long latencyMillis;
+	private final long jitterMillis;
+	private final long bitsPerSecond;
+	private final int packetSize;
+
+	/**
+	 * Creates a <code>LinkProfile</code>.
+	 * @param name the name of the profile
+	 * @param latencyMillis the one-way delay of every chunk.
+	 * @param jitterMillis the largest random delay added to the latency.
+	 * @param bitsPerSecond the bandwidth; or <code>0</code> for no cap.
+	 * @param packetSize the largest chunk of bytes that is forwarded at once.
+	 */
+	public LinkProfile(String name, long latencyMillis, long jitterMillis, long bitsPerSecond, int packetSize) {
+		if(latencyMillis < 0 || jitterMillis < 0 || bitsPerSecond < 0 || packetSize < 1) {
+			throw new IllegalArgumentException("Invalid link profile " + name);
+		}
+		this.name = name;
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+		this.bitsPerSecond = bitsPerSecond;
+		this.packetSize = packetSize;
+	}
+
+	/**
+	 * @return the link profiles that are known by name.
+	 */
+	public static LinkProfile[] presets() {
+		return PRESETS.clone();
+	}
+
+	/**
+	 * Parses a profile, either the name of a preset or
+	 * <code>latencyMillis/jitterMillis/bitsPerSecond/packetSize</code>.
+	 * @param profile the profile
+	 * @return the link profile.
+	 * @throws IllegalArgumentException if the profile is not valid.
+	 */
+	public static LinkProfile parse(String profile) {
+		for(LinkProfile preset : PRESETS) {
+			if(preset.name.equalsIgnoreCase(profile)) {
+				return preset;
+			}
+		}
+		String[] parts = profile.split("/");
+		if(parts.length != 4) {
+			throw new IllegalArgumentException("Unknown link profile " + profile);
+		}
+		return new LinkProfile(profile, Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+				Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+	}
+
+	/**
+	 * @return the name of the profile.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the one-way delay of every chunk in milliseconds.
+	 */
+	public long getLatencyMillis() {
+		return this.latencyMillis;
+	}
+
+	/**
+	 * @return the largest random delay added to the latency in milliseconds.
+	 */
+	public long getJitterMillis() {
+		return this.jitterMillis;
+	}
+
+	/**
+	 * @return the bandwidth in bits per second; or <code>0</code> for no cap.
+	 */
+	public long getBitsPerSecond() {
+		return this.bitsPerSecond;
+	}
+
+	/**
+	 * @return the largest chunk of bytes that is forwarded at once.
+	 */
+	public int getPacketSize() {
+		return this.packetSize;
+	}
+
+	/**
+	 * @param bytes the size of a chunk
+	 * @return how long sending the chunk takes at the bandwidth of the link, in nanoseconds.
+	 */
+	long transmissionNanos(int bytes) {
+		return this.bitsPerSecond == 0 ? 0 : bytes * 8L * 1_000_000_000L / this.bitsPerSecond;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (%d ms + 0-%d ms jitter, %s, %d byte packets)", this.name, this.latencyMillis, this.jitterMillis,
+				this.bitsPerSecond == 0 ? "no bandwidth cap" : this.bitsPerSecond / 1000 + " kbit/s", this.packetSize);
+	}
+}
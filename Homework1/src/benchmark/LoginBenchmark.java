@@ -0,0 +1,164 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import common.Constants;
+import common.MessageType;
+import common.Receiver;
+import common.Sender;
+import server.model.CredentialStore;
+import server.net.HangmanServer;
+
+/**
+ * Measures the <code>CredentialStore</code> for growing numbers of accounts, with the
+ * same PBKDF2 iterations for every size, so that only the lookup changes. For every size
+ * a store with generated accounts is built in a temporary directory, and then lookups of
+ * random accounts and verified logins per second are measured on one thread. Finally the
+ * server is started with the largest store and LOGIN requests per second are measured
+ * on one connection.
+ *
+ * Run with: <code>java benchmark.LoginBenchmark [iterations] [accounts...]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class LoginBenchmark {
+	private static final String HOST = "127.0.0.1";
+	private static final int PORT = 5230;
+	private static final long SECONDS_PER_ROW = 3;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional PBKDF2 iterations and numbers of accounts.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int[] sizes = {10_000, 100_000, 1_000_000};
+		if(args.length > 1) {
+			sizes = new int[args.length - 1];
+			for(int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		Path directory = Files.createTempDirectory("login-benchmark");
+		Path largest = null;
+		try {
+			System.out.printf("PBKDF2 iterations: %d%n", iterations);
+			System.out.printf("%12s %10s %10s %14s %12s%n", "accounts", "file MB", "build s", "lookups/s", "logins/s");
+			for(int size : sizes) {
+				Path file = directory.resolve("credentials-" + size + ".store");
+				long start = System.nanoTime();
+				CredentialStore store = CredentialStore.build(file, usernames(size), passwords(size), iterations);
+				double buildSeconds = (System.nanoTime() - start) / 1e9;
+				//Warm up, then measure
+				lookups(store, 1);
+				verifications(store, 1);
+				System.out.printf("%12d %10.1f %10.1f %14.0f %12.0f%n", size, store.fileBytes() / (1024.0 * 1024),
+						buildSeconds, lookups(store, SECONDS_PER_ROW), verifications(store, SECONDS_PER_ROW));
+				largest = file;
+			}
+			if(largest != null) {
+				System.setProperty("hangman.credentials", largest.toString());
+				startServer();
+				serverLogins(sizes[sizes.length - 1], 1);
+				System.out.printf("LOGIN requests/s through the server: %.0f%n",
+						serverLogins(sizes[sizes.length - 1], SECONDS_PER_ROW));
+			}
+		} finally {
+			for(int size : sizes) {
+				Files.deleteIfExists(directory.resolve("credentials-" + size + ".store"));
+			}
+			Files.deleteIfExists(directory);
+		}
+		System.exit(0);
+	}
+
+	private static String[] usernames(int size) {
+		String[] usernames = new String[size];
+		for(int i = 0; i < size; i++) {
+			usernames[i] = "player" + i;
+		}
+		return usernames;
+	}
+
+	private static String[] passwords(int size) {
+		String[] passwords = new String[size];
+		for(int i = 0; i < size; i++) {
+			passwords[i] = "secret" + i;
+		}
+		return passwords;
+	}
+
+	private static double lookups(CredentialStore store, long seconds) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long lookups = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1_000_000_000L;
+		while(System.nanoTime() < end) {
+			for(int i = 0; i < 1000; i++) {
+				if(!store.contains("player" + random.nextInt(store.size()))) {
+					throw new IllegalStateException("Lost an account");
+				}
+			}
+			lookups += 1000;
+		}
+		return lookups / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static double verifications(CredentialStore store, long seconds) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long logins = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1_000_000_000L;
+		while(System.nanoTime() < end) {
+			int account = random.nextInt(store.size());
+			if(!store.verify("player" + account, "secret" + account)) {
+				throw new IllegalStateException("Wrong password for player" + account);
+			}
+			logins++;
+		}
+		return logins / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static void startServer() throws IOException, InterruptedException {
+		HangmanServer server = new HangmanServer(PORT);
+		server.setTcpNoDelay(true);
+		BenchmarkServer.start(server, PORT);
+	}
+
+	private static double serverLogins(int accounts, long seconds) throws Exception {
+		Sender sender = new Sender();
+		Receiver receiver = new Receiver();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		try(Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(HOST, PORT));
+			socket.setTcpNoDelay(true);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			long logins = 0;
+			long start = System.nanoTime();
+			long end = start + seconds * 1_000_000_000L;
+			while(System.nanoTime() < end) {
+				int account = random.nextInt(accounts);
+				sender.sendMessage(MessageType.LOGIN + Constants.MSG_DELIMITER + "player" + account
+						+ Constants.MSG_BODY_DELIMITER + "secret" + account, out);
+				String response = receiver.receiveMessage(in);
+				if(!response.startsWith(MessageType.LOGIN_SUCCESS.toString())) {
+					throw new IllegalStateException("Login failed: " + response);
+				}
+				logins++;
+			}
+			return logins / ((System.nanoTime() - start) / 1e9);
+		}
+	}
+}
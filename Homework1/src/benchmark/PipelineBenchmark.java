@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
+import common.MessageType;
+import common.Receiver;
+import common.Sender;
+import server.net.HangmanServer;
+
+/**
+ * Measures GUESS messages per second on a single connection. The first row
+ * sends like the original client did, one unbuffered request at a time with
+ * Nagle's algorithm enabled on both ends. The other rows use buffered writes with
+ * <code>TCP_NODELAY</code>, first one request at a time and then with several
+ * requests pipelined before the responses are read.
+ *
+ * Run with: <code>java benchmark.PipelineBenchmark [secondsPerRow]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class PipelineBenchmark {
+	private static final String HOST = "127.0.0.1";
+	private static final int NAGLE_PORT = 5200;
+	private static final int NO_DELAY_PORT = 5201;
+	private static final String USERNAME = "johndoe";
+	private static final String PASSWORD = "123456";
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional number of seconds to run every row.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+		startServer(NAGLE_PORT, false);
+		startServer(NO_DELAY_PORT, true);
+		System.out.printf("%-40s %12s%n", "client", "msg/s");
+		report("text, unbuffered, Nagle (original)", run(NAGLE_PORT, false, false, false, 1, seconds));
+		report("text, buffered, TCP_NODELAY", run(NO_DELAY_PORT, true, true, false, 1, seconds));
+		for(int depth : new int[] {8, 32}) {
+			report("text, pipelined x" + depth, run(NO_DELAY_PORT, true, true, false, depth, seconds));
+		}
+		report("binary, buffered, TCP_NODELAY", run(NO_DELAY_PORT, true, true, true, 1, seconds));
+		for(int depth : new int[] {8, 32}) {
+			report("binary, pipelined x" + depth, run(NO_DELAY_PORT, true, true, true, depth, seconds));
+		}
+		System.exit(0);
+	}
+
+	private static void startServer(int port, boolean tcpNoDelay) throws IOException, InterruptedException {
+		HangmanServer server = new HangmanServer(port);
+		server.setTcpNoDelay(tcpNoDelay);
+		BenchmarkServer.start(server, port);
+	}
+
+	private static void report(String client, double messagesPerSecond) {
+		System.out.printf("%-40s %12.0f%n", client, messagesPerSecond);
+	}
+
+	private static double run(int port, boolean buffered, boolean tcpNoDelay, boolean binary,
+			int depth, long seconds) throws IOException {
+		Sender sender = new Sender();
+		Receiver receiver = new Receiver();
+		FrameWriter frameWriter = new FrameWriter();
+		FrameReader frameReader = new FrameReader();
+		try(Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(HOST, port));
+			socket.setTcpNoDelay(tcpNoDelay);
+			OutputStream socketOut = buffered ? new BufferedOutputStream(socket.getOutputStream()) : socket.getOutputStream();
+			DataOutputStream out = new DataOutputStream(socketOut);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			String jwt;
+			if(binary) {
+				out.writeInt(Constants.BINARY_PROTOCOL_MAGIC);
+				out.flush();
+				in.readInt();
+				frameWriter.sendFrame(MessageType.LOGIN, out, USERNAME, PASSWORD);
+				frameReader.readFrame(in);
+				jwt = frameReader.nextField();
+			} else {
+				sender.sendMessage(MessageType.LOGIN + Constants.MSG_DELIMITER + USERNAME
+						+ Constants.MSG_BODY_DELIMITER + PASSWORD, out);
+				jwt = receiver.receiveMessage(in).split(Constants.MSG_DELIMITER)[Constants.MSG_JWT_INDEX];
+			}
+			String guess = MessageType.GUESS + Constants.MSG_DELIMITER + jwt + Constants.MSG_DELIMITER + "A";
+
+			long messages = 0;
+			long start = System.nanoTime();
+			long end = start + seconds * 1_000_000_000L;
+			while(System.nanoTime() < end) {
+				for(int i = 0; i < depth; i++) {
+					if(binary) {
+						frameWriter.writeFrame(MessageType.GUESS, out, jwt, "A");
+					} else {
+						sender.writeMessage(guess, out);
+					}
+				}
+				out.flush();
+				for(int i = 0; i < depth; i++) {
+					if(binary) {
+						frameReader.readFrame(in);
+					} else {
+						receiver.receiveMessage(in);
+					}
+				}
+				messages += depth;
+			}
+			double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+			return messages / elapsedSeconds;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+import client.net.OutputHandler;
+import client.net.ServerConnection;
+import common.TlsContexts;
+import server.net.HangmanServer;
+
+/**
+ * Measures short sessions per second: connect, log in and disconnect, like a mobile
+ * client that comes back now and then. The plaintext server is the baseline. Against the
+ * TLS server every session either makes a full handshake, since the client forgets its
+ * sessions, or resumes the session of the one before.
+ *
+ * A self-signed key store for the server and a trust store for the client are generated
+ * with <code>keytool</code> in a temporary directory, which is deleted afterwards.
+ *
+ * Run with: <code>java benchmark.TlsBenchmark [secondsPerRow]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class TlsBenchmark {
+	private static final String HOST = "localhost";
+	private static final int PLAINTEXT_PORT = 5210;
+	private static final int TLS_PORT = 5211;
+	private static final String USERNAME = "johndoe";
+	private static final String PASSWORD = "123456";
+	private static final char[] STORE_PASSWORD = "benchmark".toCharArray();
+	private static final long LOGIN_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional number of seconds to run every row.
+	 * @throws Exception if the benchmark fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+		Path directory = Files.createTempDirectory("tls-benchmark");
+		try {
+			Path keyStore = directory.resolve("server.p12");
+			Path trustStore = directory.resolve("client.p12");
+			generateStores(directory, keyStore, trustStore);
+			startServer(PLAINTEXT_PORT, null);
+			startServer(TLS_PORT, TlsContexts.forServer(keyStore, STORE_PASSWORD));
+			SSLContext client = TlsContexts.forClient(trustStore, STORE_PASSWORD);
+
+			System.out.printf("%-30s %12s %12s%n", "sessions", "sessions/s", "ms/session");
+			//Warm up every row, then measure
+			run(PLAINTEXT_PORT, null, false, 1);
+			report("plaintext", run(PLAINTEXT_PORT, null, false, seconds));
+			run(TLS_PORT, client, true, 1);
+			report("TLS, full handshake", run(TLS_PORT, client, true, seconds));
+			run(TLS_PORT, client, false, 1);
+			report("TLS, resumed session", run(TLS_PORT, client, false, seconds));
+		} finally {
+			try(Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+		System.exit(0);
+	}
+
+	private static void generateStores(Path directory, Path keyStore, Path trustStore) throws IOException, InterruptedException {
+		Path certificate = directory.resolve("server.cer");
+		String password = new String(STORE_PASSWORD);
+		keytool("-genkeypair", "-alias", "hangman", "-keyalg", "EC", "-keysize", "256", "-sigalg", "SHA256withECDSA",
+				"-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "1",
+				"-storetype", "PKCS12", "-keystore", keyStore.toString(), "-storepass", password, "-keypass", password);
+		keytool("-exportcert", "-alias", "hangman", "-keystore", keyStore.toString(), "-storepass", password,
+				"-file", certificate.toString());
+		keytool("-importcert", "-noprompt", "-alias", "hangman", "-file", certificate.toString(),
+				"-storetype", "PKCS12", "-keystore", trustStore.toString(), "-storepass", password);
+	}
+
+	private static void keytool(String... args) throws IOException, InterruptedException {
+		String[] command = new String[args.length + 1];
+		command[0] = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+		System.arraycopy(args, 0, command, 1, args.length);
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+		if(process.waitFor() != 0) {
+			throw new IOException("keytool " + args[0] + " failed");
+		}
+	}
+
+	private static void startServer(int port, SSLContext sslContext) throws IOException, InterruptedException {
+		HangmanServer server = new HangmanServer(port);
+		server.setSslContext(sslContext);
+		BenchmarkServer.start(server, port);
+	}
+
+	private static void report(String sessions, double sessionsPerSecond) {
+		System.out.printf("%-30s %12.0f %12.2f%n", sessions, sessionsPerSecond, 1000 / sessionsPerSecond);
+	}
+
+	private static double run(int port, SSLContext sslContext, boolean fullHandshakes, long seconds) throws Exception {
+		OutputHandler ignored = new OutputHandler() {
+			@Override
+			public void handleResponse(String message) {
+			}
+
+			@Override
+			public void handleMessage(String message) {
+			}
+		};
+		long sessions = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1_000_000_000L;
+		while(System.nanoTime() < end) {
+			ServerConnection connection = new ServerConnection();
+			connection.setSslContext(sslContext);
+			connection.connect(HOST, port, ignored, true);
+			connection.requestLogin(USERNAME, PASSWORD).get(LOGIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			connection.disconnect();
+			if(fullHandshakes) {
+				forgetSessions(sslContext.getClientSessionContext());
+			}
+			sessions++;
+		}
+		return sessions / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static void forgetSessions(SSLSessionContext sessions) {
+		Enumeration<byte[]> ids = sessions.getIds();
+		while(ids.hasMoreElements()) {
+			SSLSession session = sessions.getSession(ids.nextElement());
+			if(session != null) {
+				session.invalidate();
+			}
+		}
+	}
+}
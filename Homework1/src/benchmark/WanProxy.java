@@ -0,0 +1,227 @@
+package benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A local TCP proxy that makes a connection behave like a slow network link, see
+ * {@link LinkProfile}. It sits between a client, e.g the <code>ServerConnection</code>, and
+ * the server: the client connects to the proxy, which connects to the server and forwards
+ * the bytes both ways.
+ *
+ * Every direction of a connection has a reading and a writing thread. The reading thread
+ * cuts the bytes into packet sized chunks and schedules every chunk: it is sent when the
+ * emulated link is free, takes as long as the bandwidth allows, and arrives after the latency
+ * and a random jitter, but never before the chunk before it. The writing thread forwards
+ * every chunk when it arrives.
+ *
+ * Run with: <code>java benchmark.WanProxy listenPort targetHost targetPort [profile]</code>,
+ * where the profile is a preset name or <code>latencyMillis/jitterMillis/bitsPerSecond/packetSize</code>.
+ * E.g start the server, the proxy on port 5001 and the client with <code>-Dhangman.port=5001</code>.
+ *
+ * @author Antonio
+ *
+ */
+public class WanProxy implements Closeable {
+	private static final Chunk END_OF_STREAM = new Chunk(new byte[0], 0);
+	private final ServerSocket listeningSocket;
+	private final InetSocketAddress target;
+	private final LinkProfile profile;
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a <code>WanProxy</code>, it listens right away but only accepts connections once started.
+	 * @param listenPort the port to listen on; or <code>0</code> for any free port.
+	 * @param target the address of the server
+	 * @param profile the link of both directions
+	 * @throws IOException if the port could not be listened on.
+	 */
+	public WanProxy(int listenPort, InetSocketAddress target, LinkProfile profile) throws IOException {
+		this.listeningSocket = new ServerSocket(listenPort);
+		this.target = target;
+		this.profile = profile;
+	}
+
+	/**
+	 * Runs the proxy until the process is stopped.
+	 * @param args the port to listen on, the host and port of the server, and optionally the link profile.
+	 * @throws IOException if the port could not be listened on.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 3) {
+			System.out.println("Usage: java benchmark.WanProxy listenPort targetHost targetPort [profile]");
+			return;
+		}
+		LinkProfile profile = args.length > 3 ? LinkProfile.parse(args[3]) : LinkProfile.MOBILE;
+		WanProxy proxy = new WanProxy(Integer.parseInt(args[0]), new InetSocketAddress(args[1], Integer.parseInt(args[2])), profile);
+		System.out.println("Proxy on port " + proxy.getPort() + " to " + args[1] + ":" + args[2] + " over " + profile);
+		proxy.acceptConnections();
+	}
+
+	/**
+	 * Starts accepting connections in a daemon thread.
+	 * @return this proxy.
+	 */
+	public WanProxy start() {
+		Thread acceptor = new Thread(this::acceptConnections, "wan-proxy-" + getPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return this;
+	}
+
+	/**
+	 * @return the port the proxy listens on.
+	 */
+	public int getPort() {
+		return this.listeningSocket.getLocalPort();
+	}
+
+	/**
+	 * Stops accepting connections and closes all forwarded connections.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		closeQuietly(this.listeningSocket);
+		for(Socket socket : this.sockets) {
+			closeQuietly(socket);
+		}
+	}
+
+	private void acceptConnections() {
+		while(!this.closed) {
+			try {
+				Socket client = this.listeningSocket.accept();
+				Socket server = new Socket();
+				try {
+					server.connect(this.target);
+				} catch (IOException e) {
+					System.err.println("Proxy failed to connect to " + this.target + ": " + e.getMessage());
+					closeQuietly(client);
+					continue;
+				}
+				client.setTcpNoDelay(true);
+				server.setTcpNoDelay(true);
+				this.sockets.add(client);
+				this.sockets.add(server);
+				new Direction(client, server).start("upstream");
+				new Direction(server, client).start("downstream");
+			} catch (IOException e) {
+				if(!this.closed) {
+					System.err.println("Proxy stopped accepting: " + e.getMessage());
+				}
+				return;
+			}
+		}
+	}
+
+	private void closeConnection(Socket from, Socket to) {
+		closeQuietly(from);
+		closeQuietly(to);
+		this.sockets.remove(from);
+		this.sockets.remove(to);
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			//Closed either way
+		}
+	}
+
+	private static final class Chunk {
+		private final byte[] bytes;
+		private final long arrivalNanos;
+
+		private Chunk(byte[] bytes, long arrivalNanos) {
+			this.bytes = bytes;
+			this.arrivalNanos = arrivalNanos;
+		}
+	}
+
+	//One direction of a connection
+	private final class Direction {
+		private final Socket from;
+		private final Socket to;
+		private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+		private long linkFreeNanos = 0;
+		private long lastArrivalNanos = 0;
+
+		private Direction(Socket from, Socket to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		private void start(String name) {
+			Thread reader = new Thread(this::read, "wan-proxy-" + name + "-reader");
+			Thread writer = new Thread(this::write, "wan-proxy-" + name + "-writer");
+			reader.setDaemon(true);
+			writer.setDaemon(true);
+			reader.start();
+			writer.start();
+		}
+
+		private void read() {
+			byte[] buffer = new byte[profile.getPacketSize()];
+			try {
+				InputStream in = this.from.getInputStream();
+				int read;
+				while((read = in.read(buffer)) >= 0) {
+					schedule(Arrays.copyOf(buffer, read));
+				}
+			} catch (IOException e) {
+				//The connection is closed below
+			}
+			this.chunks.add(END_OF_STREAM);
+		}
+
+		private void schedule(byte[] bytes) {
+			long now = System.nanoTime();
+			this.linkFreeNanos = Math.max(now, this.linkFreeNanos) + profile.transmissionNanos(bytes.length);
+			long jitterNanos = profile.getJitterMillis() == 0 ? 0
+					: ThreadLocalRandom.current().nextLong(profile.getJitterMillis() * 1_000_000L + 1);
+			long arrival = this.linkFreeNanos + profile.getLatencyMillis() * 1_000_000L + jitterNanos;
+			//TCP delivers in order, a chunk never overtakes the one before it
+			this.lastArrivalNanos = Math.max(arrival, this.lastArrivalNanos);
+			this.chunks.add(new Chunk(bytes, this.lastArrivalNanos));
+		}
+
+		private void write() {
+			try {
+				OutputStream out = this.to.getOutputStream();
+				while(true) {
+					Chunk chunk = this.chunks.take();
+					if(chunk == END_OF_STREAM) {
+						this.to.shutdownOutput();
+						if(this.from.isOutputShutdown() || this.to.isInputShutdown()) {
+							closeConnection(this.from, this.to);
+						}
+						return;
+					}
+					long wait;
+					while((wait = chunk.arrivalNanos - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(wait);
+					}
+					out.write(chunk.bytes);
+					out.flush();
+				}
+			} catch (IOException | InterruptedException e) {
+				closeConnection(this.from, this.to);
+			}
+		}
+	}
+}
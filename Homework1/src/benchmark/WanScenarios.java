@@ -0,0 +1,268 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
+import common.MessageType;
+import common.Receiver;
+import common.Sender;
+import common.SessionTicket;
+import server.net.HangmanServer;
+
+/**
+ * Plays whole games through a {@link WanProxy} for every {@link LinkProfile} and reports
+ * how long a game takes, from the START request to the response that ends the game. On a
+ * slow link the time is mostly round trips, so the rows show what the protocol features
+ * are worth there: the text protocol, the binary protocol with the token in every frame,
+ * the binary protocol with a session ticket, and the ticket with guesses pipelined.
+ *
+ * A player guesses the letters from the most to the least common one until the game is
+ * over, and pipelines send several guesses before reading the responses. The Homework1
+ * server is started in-process. A running Homework2 server is played as well when its
+ * address is given with <code>-Dhangman.scenarios.homework2=host:port</code>.
+ *
+ * Run with: <code>java benchmark.WanScenarios [gamesPerRow] [profile...]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class WanScenarios {
+	private static final String HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 5220;
+	private static final String USERNAME = "johndoe";
+	private static final String PASSWORD = "123456";
+	private static final String LETTERS = "ETAOINSHRDLCUMWFGYPBVKJXQZ";
+	private static final int PIPELINE_DEPTH = 4;
+
+	/**
+	 * Runs the scenarios.
+	 * @param args optional number of games to play per row, and the link profiles to play over.
+	 * @throws Exception if the scenarios fail.
+	 */
+	public static void main(String[] args) throws Exception {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		List<LinkProfile> profiles = new ArrayList<>();
+		for(int i = 1; i < args.length; i++) {
+			profiles.add(LinkProfile.parse(args[i]));
+		}
+		if(profiles.isEmpty()) {
+			profiles.addAll(Arrays.asList(LinkProfile.presets()));
+		}
+		String homework2 = System.getProperty("hangman.scenarios.homework2");
+		startServer();
+
+		System.out.printf("%-20s %-28s %10s %10s %10s %12s%n", "link", "client", "p50 ms", "p90 ms", "max ms", "round trips");
+		for(LinkProfile profile : profiles) {
+			System.out.println(profile);
+			try(WanProxy proxy = new WanProxy(0, new InetSocketAddress(HOST, SERVER_PORT), profile).start()) {
+				report(profile, "text", games, () -> new TextPlayer(proxy.getPort()), 1);
+				report(profile, "binary, token", games, () -> new FramePlayer(proxy.getPort(), false), 1);
+				report(profile, "binary, ticket", games, () -> new FramePlayer(proxy.getPort(), true), 1);
+				report(profile, "binary, ticket, pipelined x" + PIPELINE_DEPTH, games,
+						() -> new FramePlayer(proxy.getPort(), true), PIPELINE_DEPTH);
+			}
+			if(homework2 != null) {
+				String[] address = homework2.split(":");
+				InetSocketAddress target = new InetSocketAddress(address[0], Integer.parseInt(address[1]));
+				try(WanProxy proxy = new WanProxy(0, target, profile).start()) {
+					report(profile, "Homework2", games, () -> new Homework2Player(proxy.getPort()), 1);
+				}
+			}
+		}
+		System.exit(0);
+	}
+
+	private static void startServer() throws IOException, InterruptedException {
+		HangmanServer server = new HangmanServer(SERVER_PORT);
+		server.setTcpNoDelay(true);
+		BenchmarkServer.start(server, SERVER_PORT);
+	}
+
+	private static void report(LinkProfile profile, String client, int games, PlayerFactory players, int depth) throws IOException {
+		long[] gameNanos = new long[games];
+		long roundTrips = 0;
+		try(Player player = players.connect()) {
+			for(int game = 0; game < games; game++) {
+				long start = System.nanoTime();
+				roundTrips += play(player, depth);
+				gameNanos[game] = System.nanoTime() - start;
+			}
+		}
+		Arrays.sort(gameNanos);
+		System.out.printf("%-20s %-28s %10.0f %10.0f %10.0f %12.1f%n", profile.getName(), client,
+				gameNanos[games / 2] / 1e6, gameNanos[(int) (games * 0.9)] / 1e6, gameNanos[games - 1] / 1e6,
+				(double) roundTrips / games);
+	}
+
+	//Returns the number of round trips of the game
+	private static int play(Player player, int depth) throws IOException {
+		player.send(MessageType.START, null);
+		player.flush();
+		boolean over = isOver(player.receive());
+		int roundTrips = 1;
+		int next = 0;
+		while(!over && next < LETTERS.length()) {
+			int sent = 0;
+			for(; sent < depth && next < LETTERS.length(); sent++) {
+				player.send(MessageType.GUESS, String.valueOf(LETTERS.charAt(next++)));
+			}
+			player.flush();
+			//Guesses pipelined behind the last one of the game are answered too
+			for(int i = 0; i < sent; i++) {
+				over |= isOver(player.receive());
+			}
+			roundTrips++;
+		}
+		return roundTrips;
+	}
+
+	//A game is over when the response has no attempts left
+	private static boolean isOver(String body) {
+		String[] parts = body.split(Constants.MSG_BODY_DELIMITER);
+		if(parts.length <= Constants.MSG_BODY_GAME_ATTEMPTS_INDEX) {
+			throw new IllegalStateException("Not a game response: " + body);
+		}
+		return Integer.parseInt(parts[Constants.MSG_BODY_GAME_ATTEMPTS_INDEX].trim()) == 0;
+	}
+
+	private interface PlayerFactory {
+		Player connect() throws IOException;
+	}
+
+	//A logged in connection to a server
+	private static abstract class Player implements Closeable {
+		final Socket socket = new Socket();
+		final DataOutputStream out;
+		final DataInputStream in;
+
+		Player(int port) throws IOException {
+			this.socket.connect(new InetSocketAddress(HOST, port));
+			this.socket.setTcpNoDelay(true);
+			this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+		}
+
+		//Writes a request, the body is null for none
+		abstract void send(MessageType type, String body) throws IOException;
+
+		//Returns the body of the next response
+		abstract String receive() throws IOException;
+
+		void flush() throws IOException {
+			this.out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.socket.close();
+		}
+	}
+
+	private static final class TextPlayer extends Player {
+		private final Sender sender = new Sender();
+		private final Receiver receiver = new Receiver();
+		private final String jwt;
+
+		TextPlayer(int port) throws IOException {
+			super(port);
+			this.sender.sendMessage(MessageType.LOGIN + Constants.MSG_DELIMITER + USERNAME
+					+ Constants.MSG_BODY_DELIMITER + PASSWORD, this.out);
+			this.jwt = this.receiver.receiveMessage(this.in).split(Constants.MSG_DELIMITER)[Constants.MSG_JWT_INDEX];
+		}
+
+		@Override
+		void send(MessageType type, String body) throws IOException {
+			String message = type + Constants.MSG_DELIMITER + this.jwt;
+			this.sender.writeMessage(body == null ? message : message + Constants.MSG_DELIMITER + body, this.out);
+		}
+
+		@Override
+		String receive() throws IOException {
+			return this.receiver.receiveMessage(this.in).split(Constants.MSG_DELIMITER)[Constants.MSG_BODY_INDEX];
+		}
+	}
+
+	private static final class FramePlayer extends Player {
+		private final FrameWriter frameWriter = new FrameWriter();
+		private final FrameReader frameReader = new FrameReader();
+		private final String jwt;
+		private final SessionTicket ticket;
+
+		FramePlayer(int port, boolean useTicket) throws IOException {
+			super(port);
+			this.out.writeInt(Constants.BINARY_PROTOCOL_MAGIC);
+			this.out.flush();
+			this.in.readInt();
+			this.frameWriter.sendFrame(MessageType.LOGIN, this.out, USERNAME, PASSWORD);
+			this.frameReader.readFrame(this.in);
+			this.jwt = this.frameReader.nextField();
+			this.ticket = useTicket ? this.frameReader.getTicket() : null;
+		}
+
+		@Override
+		void send(MessageType type, String body) throws IOException {
+			if(this.ticket != null) {
+				this.frameWriter.writeFrame(type, this.out, 0, this.ticket, body);
+			} else {
+				this.frameWriter.writeFrame(type, this.out, this.jwt, body);
+			}
+		}
+
+		@Override
+		String receive() throws IOException {
+			this.frameReader.readFrame(this.in);
+			return this.frameReader.nextField();
+		}
+	}
+
+	//Speaks the frames of the Homework2 server: payload length, type ordinal and UTF-8 body, without login
+	private static final class Homework2Player extends Player {
+		//The message types of Homework2 in the order of their ordinals
+		private static final List<String> TYPES = Arrays.asList("GUESS", "START", "DISCONNECT", "GAME_RESPONSE");
+		private static final int GAME_RESPONSE = TYPES.indexOf("GAME_RESPONSE");
+		private static final long GAME_SETUP_MILLIS = 1000;
+
+		Homework2Player(int port) throws IOException {
+			super(port);
+			//The server sets up the game of a new client in the background
+			try {
+				Thread.sleep(GAME_SETUP_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		void send(MessageType type, String body) throws IOException {
+			byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+			this.out.writeInt(1 + bytes.length);
+			this.out.writeByte(TYPES.indexOf(type.toString()));
+			this.out.write(bytes);
+		}
+
+		@Override
+		String receive() throws IOException {
+			while(true) {
+				byte[] bytes = new byte[this.in.readInt() - 1];
+				int type = this.in.readUnsignedByte();
+				this.in.readFully(bytes);
+				if(type == GAME_RESPONSE) {
+					return new String(bytes, StandardCharsets.UTF_8);
+				}
+			}
+		}
+	}
+}
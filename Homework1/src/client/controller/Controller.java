@@ -22,11 +22,12 @@ public class Controller {
 	 * @param host The host to start a connection to
 	 * @param port The port in which the host will receive the connection
 	 * @param outputHandler An <code>OutputHandler</code> to handle output from the server
+	 * @param binaryProtocol <code>true</code> to use the binary protocol
 	 */
-	public void connect(String host, int port, OutputHandler outputHandler) {
+	public void connect(String host, int port, OutputHandler outputHandler, boolean binaryProtocol) {
 		CompletableFuture.runAsync(() -> {
 			try {
-				this.connection.connect(host, port, outputHandler);
+				this.connection.connect(host, port, outputHandler, binaryProtocol);
 			} catch (IOException exc) {
 				outputHandler.handleMessage("Failed to connect to server");
 				throw new UncheckedIOException(exc);
@@ -55,28 +56,58 @@ public class Controller {
 	/**
 	 * Asynchronous method that will tell the <code>ServerConnection</code>
 	 * to request a new game from the server.
+	 * @param tier the tier of the word, EASY, MEDIUM or HARD; or <code>null</code> for any word.
 	 * @throws Throwable if not connected to the server.
 	 */
-	public void startGame() throws Throwable {
+	public void startGame(String tier) throws Throwable {
 		if(!this.connection.isConnected()) {
 			throw new Throwable("Please connect first...");
 		}
 		CompletableFuture.runAsync(() -> {
-			this.connection.sendStartGame();
+			this.connection.sendStartGame(tier);
 		});	
 	}
 	
 	/**
 	 * Asynchronous method that will send the <code>ServerConnection</code>
-	 * a guess to send to the server.
+	 * one or more guesses to send to the server. Several guesses are pipelined.
 	 * @throws Throwable if not connected to the server.
 	 */
-	public void sendGuess(String guess) throws Throwable {
+	public void sendGuess(String... guesses) throws Throwable {
 		if(!this.connection.isConnected()) {
 			throw new Throwable("Please connect first...");
 		}
 		CompletableFuture.runAsync(() -> {
-			this.connection.sendGuess(guess);
+			this.connection.sendGuesses(guesses);
+		});	
+	}
+	
+	/**
+	 * Asynchronous method that will tell the <code>ServerConnection</code>
+	 * to request the best next letter of the current game from the server.
+	 * @throws Throwable if not connected to the server.
+	 */
+	public void hint() throws Throwable {
+		if(!this.connection.isConnected()) {
+			throw new Throwable("Please connect first...");
+		}
+		CompletableFuture.runAsync(() -> {
+			this.connection.sendHint();
+		});	
+	}
+	
+	/**
+	 * Asynchronous method that will tell the <code>ServerConnection</code>
+	 * to request the players with the highest total scores from the server.
+	 * @param count the number of players to list; or <code>null</code> for the server default.
+	 * @throws Throwable if not connected to the server.
+	 */
+	public void leaderboard(String count) throws Throwable {
+		if(!this.connection.isConnected()) {
+			throw new Throwable("Please connect first...");
+		}
+		CompletableFuture.runAsync(() -> {
+			this.connection.sendLeaderboard(count);
 		});	
 	}
 	
@@ -1,16 +1,36 @@
 package client.net;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
 
 import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
 import common.MessageType;
 import common.Receiver;
 import common.Sender;
+import common.SessionTicket;
+import common.TlsContexts;
 
 /**
  * Represents the connection to the server. <code>ServerConnection</code>
@@ -18,6 +38,26 @@ import common.Sender;
  * When authenticated, it will hold the JSON Web Token. When connected to the
  * server, a new thread is created to listen for output from the server.
  * 
+ * The connection either talks the "##"-delimited text protocol or, if requested
+ * when connecting, the binary protocol of {@link FrameWriter}. Several guesses
+ * can be pipelined with {@link #sendGuesses(String...)}; they are sent in one write
+ * without waiting for the responses in between.
+ * 
+ * With the binary protocol, requests can also be made with {@link #requestGuess},
+ * {@link #requestStartGame}, {@link #requestHint}, {@link #requestLeaderboard} and {@link #requestLogin}. These tag the request with a
+ * request id and return a <code>CompletableFuture</code> that is completed with the
+ * response carrying the same id, instead of passing it to the <code>OutputHandler</code>.
+ * Requests that are not answered within the timeout are completed exceptionally.
+ * 
+ * When the server issues a {@link SessionTicket} on a binary connection, it is sent
+ * instead of the JSON Web Token in the following requests on the same connection.
+ * 
+ * The connection talks TLS if it has an <code>SSLContext</code>, see {@link #setSslContext(SSLContext)},
+ * or if <code>hangman.tls.trustStore</code> names a trust store with the certificate of the
+ * server (password <code>hangman.tls.trustStorePassword</code>). The context from the system
+ * properties is shared by all connections, so reconnecting resumes the TLS session instead of
+ * making a full handshake. The host name of the server is checked against its certificate.
+ * 
  * @author Antonio
  *
  */
@@ -25,13 +65,28 @@ public class ServerConnection {
 	private static final int TIMEOUT_TEN_MIN = 600000;
 	private static final int TIMEOUT_TWENTY_SEC = 20000;
 	private static final String DISCONNECT = "DISCONNECT";
+	private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
+	private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "request-timeouts");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static SSLContext sharedSslContext;
+	private final Map<Integer, CompletableFuture<String>> pendingRequests = new ConcurrentHashMap<>();
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private volatile long requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
 	private final Receiver receiver = new Receiver();
 	private final Sender sender = new Sender();
+	private final FrameReader frameReader = new FrameReader();
+	private final FrameWriter frameWriter = new FrameWriter();
+	private boolean binaryProtocol = false;
 	private Socket socket;
 	private DataOutputStream toServer;
 	private DataInputStream fromServer;
 	private volatile boolean isConnected;
 	private volatile String jwt = null;
+	private volatile SessionTicket ticket = null;
+	private SSLContext sslContext = null;
 
 	/**
 	 * Connects to the server and creates a new thread to listen
@@ -43,24 +98,65 @@ public class ServerConnection {
 	 * @throws IOException If error with the streams occur
 	 */
 	public void connect(String host, int port, OutputHandler handler) throws IOException {
+		connect(host, port, handler, false);
+	}
+	
+	/**
+	 * Connects to the server, negotiates the protocol and creates a new thread
+	 * to listen for server output.
+	 * @param host The IP address of the server
+	 * @param port The port where the server hosts its service
+	 * @param handler <code>OutputHandler</code> to display server output
+	 * for the client
+	 * @param binaryProtocol <code>true</code> to use the binary protocol; <code>false</code>
+	 * for the text protocol.
+	 * @throws IOException If error with the streams occur, the server does not
+	 * support the binary protocol, or it does not admit the connection, e.g when it is busy.
+	 */
+	public void connect(String host, int port, OutputHandler handler, boolean binaryProtocol) throws IOException {
 		this.socket = new Socket();
 		socket.connect(new InetSocketAddress(host, port), TIMEOUT_TWENTY_SEC);
 		socket.setSoTimeout(TIMEOUT_TEN_MIN);
-		this.isConnected = true;
-		this.toServer = new DataOutputStream(socket.getOutputStream());
+		socket.setTcpNoDelay(!"false".equalsIgnoreCase(System.getProperty("hangman.tcpNoDelay")));
+		SSLContext context = this.sslContext != null ? this.sslContext : sslContextFromProperties();
+		if(context != null) {
+			this.socket = startTls(context, this.socket, host, port);
+		}
+		this.toServer = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 		this.fromServer = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.binaryProtocol = binaryProtocol;
+		this.ticket = null;
+		if(binaryProtocol) {
+			negotiateBinaryProtocol();
+		}
+		this.isConnected = true;
 		new Thread(new ServerListener(handler, this)).start();
 	}
 
+	/**
+	 * Makes the following connections talk TLS with the given context. Connections with
+	 * the same context resume earlier TLS sessions with the same server.
+	 * @param sslContext the client context, see {@link TlsContexts#forClient}; or <code>null</code>
+	 * for the context of the system properties, if any.
+	 */
+	public void setSslContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
+	}
+	
 	/**
 	 * Disconnect by closing the socket, i.e server connection.
 	 * @throws IOException If closing the sockets failed.
 	 */
 	public void disconnect() throws IOException {
-		sendMessage(ServerConnection.DISCONNECT);
+		if(this.binaryProtocol) {
+			sendFrame(MessageType.DISCONNECT);
+		} else {
+			sendMessage(ServerConnection.DISCONNECT);
+		}
 		this.socket.close();
 		this.isConnected = false;
 		this.jwt = null;
+		this.ticket = null;
 		this.socket = null;
 	}
 
@@ -71,30 +167,93 @@ public class ServerConnection {
 	 * @param guess
 	 */
 	public void sendGuess(String guess) {
+		sendGuesses(guess);
+	}
+	
+	/**
+	 * Sends several guess requests to the server back to back in one write. The
+	 * server answers each of them in order.
+	 * @param guesses the guesses
+	 */
+	public synchronized void sendGuesses(String... guesses) {
 		if(!this.isConnected) {
 			return;
 		}
-		StringBuilder sb = new StringBuilder();
-		sb.append(MessageType.GUESS);
-		sb.append(Constants.MSG_DELIMITER);
-		sb.append(this.jwt);
-		sb.append(Constants.MSG_DELIMITER);
-		sb.append(guess);
-		sender.sendMessage(sb.toString(), this.toServer);
+		try {
+			for(String guess : guesses) {
+				writeGuess(guess);
+			}
+			this.toServer.flush();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
 	}
 	
 	/**
 	 * Sends a start-game request to the server
 	 */
 	public void sendStartGame() {
+		sendStartGame(null);
+	}
+	
+	/**
+	 * Sends a start-game request to the server
+	 * @param tier the tier of the word, EASY, MEDIUM or HARD; or <code>null</code> for any word.
+	 */
+	public void sendStartGame(String tier) {
 		if(!this.isConnected) {
 			return;
 		}
+		if(this.binaryProtocol) {
+			sendAuthenticatedFrame(MessageType.START, tier);
+			return;
+		}
 		StringBuilder sb = new StringBuilder();
 		sb.append(MessageType.START);
 		sb.append(Constants.MSG_DELIMITER);
 		sb.append(this.jwt);
-		sender.sendMessage(sb.toString(), this.toServer);
+		if(tier != null) {
+			sb.append(Constants.MSG_DELIMITER);
+			sb.append(tier);
+		}
+		sendMessage(sb.toString());
+	}
+	
+	/**
+	 * Sends a request for the best next letter of the current game to the server
+	 */
+	public void sendHint() {
+		if(!this.isConnected) {
+			return;
+		}
+		if(this.binaryProtocol) {
+			sendAuthenticatedFrame(MessageType.HINT);
+			return;
+		}
+		sendMessage(MessageType.HINT + Constants.MSG_DELIMITER + this.jwt);
+	}
+	
+	/**
+	 * Sends a request for the players with the highest total scores to the server
+	 * @param count the number of players to list; or <code>null</code> for the server default.
+	 */
+	public void sendLeaderboard(String count) {
+		if(!this.isConnected) {
+			return;
+		}
+		if(this.binaryProtocol) {
+			sendAuthenticatedFrame(MessageType.LEADERBOARD, count);
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(MessageType.LEADERBOARD);
+		sb.append(Constants.MSG_DELIMITER);
+		sb.append(this.jwt);
+		if(count != null) {
+			sb.append(Constants.MSG_DELIMITER);
+			sb.append(count);
+		}
+		sendMessage(sb.toString());
 	}
 	
 	/**
@@ -103,11 +262,77 @@ public class ServerConnection {
 	 * @param password password
 	 */
 	public void sendLogin(String username, String password) {
+		if(this.binaryProtocol) {
+			sendFrame(MessageType.LOGIN, username, password);
+			return;
+		}
 		StringBuilder sb = new StringBuilder();
 		sb.append(MessageType.LOGIN);
 		sb.append(Constants.MSG_DELIMITER);
 		sb.append(username+Constants.MSG_BODY_DELIMITER+password);
-		sender.sendMessage(sb.toString(), this.toServer);
+		sendMessage(sb.toString());
+	}
+	
+	/**
+	 * Sends a guess request to the server, tagged with a new request id.
+	 * @param guess the guess
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestGuess(String guess) {
+		return request(MessageType.GUESS, true, guess);
+	}
+	
+	/**
+	 * Sends a start-game request to the server, tagged with a new request id.
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestStartGame() {
+		return requestStartGame(null);
+	}
+	
+	/**
+	 * Sends a start-game request to the server, tagged with a new request id.
+	 * @param tier the tier of the word, EASY, MEDIUM or HARD; or <code>null</code> for any word.
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestStartGame(String tier) {
+		return request(MessageType.START, true, tier);
+	}
+	
+	/**
+	 * Sends a hint request to the server, tagged with a new request id.
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestHint() {
+		return request(MessageType.HINT, true);
+	}
+	
+	/**
+	 * Sends a leaderboard request to the server, tagged with a new request id.
+	 * @param count the number of players to list; or <code>null</code> for the server default.
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestLeaderboard(String count) {
+		return request(MessageType.LEADERBOARD, true, count);
+	}
+	
+	/**
+	 * Sends a login request to the server, tagged with a new request id. The JSON
+	 * Web Token of a successful login is kept by the connection as usual.
+	 * @param username username
+	 * @param password password
+	 * @return a future completed with the response to this request.
+	 */
+	public CompletableFuture<String> requestLogin(String username, String password) {
+		return request(MessageType.LOGIN, false, username, password);
+	}
+	
+	/**
+	 * Sets how long a request made with a request id waits for its response.
+	 * @param timeoutMillis the timeout in milliseconds.
+	 */
+	public void setRequestTimeout(long timeoutMillis) {
+		this.requestTimeoutMillis = timeoutMillis;
 	}
 	
 	/**
@@ -117,13 +342,177 @@ public class ServerConnection {
 		return this.isConnected;
 	}
 	
-	private void sendMessage(String message) {
+	private synchronized void sendMessage(String message) {
 		if(!this.isConnected) {
 			return;
 		}
 		sender.sendMessage(message, this.toServer);
 	}
 	
+	private synchronized void sendFrame(MessageType type, String... fields) {
+		if(!this.isConnected) {
+			return;
+		}
+		try {
+			this.frameWriter.sendFrame(type, this.toServer, fields);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+	
+	private synchronized void sendAuthenticatedFrame(MessageType type, String... body) {
+		if(!this.isConnected) {
+			return;
+		}
+		try {
+			writeAuthenticatedFrame(type, 0, body);
+			this.toServer.flush();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+	
+	//Sends the session ticket if there is one; otherwise the JSON Web Token as the first field
+	private void writeAuthenticatedFrame(MessageType type, int requestId, String... body) throws IOException {
+		SessionTicket currentTicket = this.ticket;
+		if(currentTicket != null) {
+			this.frameWriter.writeFrame(type, this.toServer, requestId, currentTicket, body);
+			return;
+		}
+		String[] fields = new String[body.length + 1];
+		fields[0] = this.jwt;
+		System.arraycopy(body, 0, fields, 1, body.length);
+		this.frameWriter.writeFrame(type, this.toServer, requestId, fields);
+	}
+	
+	private CompletableFuture<String> request(MessageType type, boolean authenticated, String... fields) {
+		CompletableFuture<String> response = new CompletableFuture<>();
+		if(!this.isConnected || !this.binaryProtocol) {
+			response.completeExceptionally(new IllegalStateException("Requests need a binary protocol connection"));
+			return response;
+		}
+		int requestId = newRequestId();
+		this.pendingRequests.put(requestId, response);
+		ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> {
+			CompletableFuture<String> expired = this.pendingRequests.remove(requestId);
+			if(expired != null) {
+				expired.completeExceptionally(new TimeoutException("No response to request " + requestId));
+			}
+		}, this.requestTimeoutMillis, TimeUnit.MILLISECONDS);
+		response.whenComplete((result, failure) -> timeout.cancel(false));
+		try {
+			synchronized(this) {
+				if(authenticated) {
+					writeAuthenticatedFrame(type, requestId, fields);
+				} else {
+					this.frameWriter.writeFrame(type, this.toServer, requestId, fields);
+				}
+				this.toServer.flush();
+			}
+		} catch (IOException e) {
+			this.pendingRequests.remove(requestId);
+			response.completeExceptionally(e);
+		}
+		return response;
+	}
+	
+	//Request id 0 is reserved for frames that are not correlated with a request, and the ids wrap around
+	//to stay positive, the varint of a negative id is refused by FrameReader
+	private int newRequestId() {
+		int requestId;
+		do {
+			requestId = this.nextRequestId.incrementAndGet() & Integer.MAX_VALUE;
+		} while(requestId == 0 || this.pendingRequests.containsKey(requestId));
+		return requestId;
+	}
+	
+	private void failPendingRequests(Throwable failure) {
+		for(Integer requestId : this.pendingRequests.keySet()) {
+			CompletableFuture<String> pending = this.pendingRequests.remove(requestId);
+			if(pending != null) {
+				pending.completeExceptionally(failure);
+			}
+		}
+	}
+	
+	private void writeGuess(String guess) throws IOException {
+		if(this.binaryProtocol) {
+			writeAuthenticatedFrame(MessageType.GUESS, 0, guess);
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(MessageType.GUESS);
+		sb.append(Constants.MSG_DELIMITER);
+		sb.append(this.jwt);
+		sb.append(Constants.MSG_DELIMITER);
+		sb.append(guess);
+		sender.writeMessage(sb.toString(), this.toServer);
+	}
+	
+	private static SSLSocket startTls(SSLContext context, Socket socket, String host, int port) throws IOException {
+		SSLSocket sslSocket = (SSLSocket) context.getSocketFactory().createSocket(socket, host, port, true);
+		SSLParameters parameters = sslSocket.getSSLParameters();
+		parameters.setEndpointIdentificationAlgorithm("HTTPS");
+		parameters.setProtocols(TlsContexts.protocols(context));
+		sslSocket.setSSLParameters(parameters);
+		try {
+			sslSocket.startHandshake();
+		} catch (IOException e) {
+			sslSocket.close();
+			throw e;
+		}
+		return sslSocket;
+	}
+	
+	private static synchronized SSLContext sslContextFromProperties() throws IOException {
+		String trustStore = System.getProperty("hangman.tls.trustStore");
+		if(trustStore == null) {
+			return null;
+		}
+		if(sharedSslContext == null) {
+			char[] password = System.getProperty("hangman.tls.trustStorePassword", "").toCharArray();
+			try {
+				sharedSslContext = TlsContexts.forClient(Paths.get(trustStore), password);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("Unusable trust store " + trustStore, e);
+			}
+		}
+		return sharedSslContext;
+	}
+	
+	//A server that does not admit the connection answers with a text message in place of the magic echo
+	private void negotiateBinaryProtocol() throws IOException {
+		this.toServer.writeInt(Constants.BINARY_PROTOCOL_MAGIC);
+		this.toServer.flush();
+		int header = this.fromServer.readInt();
+		if(header != Constants.BINARY_PROTOCOL_MAGIC) {
+			String rejection = null;
+			try {
+				rejection = this.receiver.receiveMessage(this.fromServer, header);
+			} catch (IOException notAMessage) {
+				//Not a text message either
+			}
+			this.socket.close();
+			String rejectedPrefix = MessageType.INVALID_REQUEST + Constants.MSG_DELIMITER;
+			if(rejection != null && rejection.startsWith(rejectedPrefix)) {
+				throw new IOException(rejection.substring(rejectedPrefix.length()));
+			}
+			throw new IOException("Server does not support the binary protocol");
+		}
+	}
+	
+	private String receiveResponse() throws IOException {
+		if(!this.binaryProtocol) {
+			return this.receiver.receiveMessage(this.fromServer);
+		}
+		MessageType type = this.frameReader.readFrame(this.fromServer);
+		SessionTicket issued = this.frameReader.getTicket();
+		if(issued != null) {
+			this.ticket = issued;
+		}
+		return type + Constants.MSG_DELIMITER + this.frameReader.nextField();
+	}
+	
 	private void setJWT(String jwt) {
 		this.jwt = jwt;
 	}
@@ -145,11 +534,17 @@ public class ServerConnection {
 		public void run() {
 			try {
 				while(true) { 
-					String response = receiver.receiveMessage(fromServer);
+					String response = receiveResponse();
 					extractLoginJWT(response);
-					outputHandler.handleResponse(response);
+					CompletableFuture<String> pending = binaryProtocol ? pendingRequests.remove(frameReader.getRequestId()) : null;
+					if(pending != null) {
+						pending.complete(response);
+					} else {
+						outputHandler.handleResponse(response);
+					}
 				}
 			} catch (Throwable connectionFailure) {
+				failPendingRequests(connectionFailure);
 				if(isConnected) {
 					outputHandler.handleMessage("Lost connection!");
 				}
@@ -3,7 +3,10 @@ package client.startup;
 import client.view.ConsoleInput;
 
 /**
- * Client starter; connection will be to localhost:5000.
+ * Client starter; connection will be to localhost:5000. Start with
+ * <code>-Dhangman.binary=true</code> to use the binary protocol, and with
+ * <code>-Dhangman.tls.trustStore=&lt;file&gt;</code> to connect with TLS. Another port, e.g
+ * the one of a <code>benchmark.WanProxy</code>, is chosen with <code>-Dhangman.port</code>.
  * 
  * @author Antonio
  *
@@ -18,7 +21,7 @@ public class ClientStarter {
 	 */
 	public static void main(String[] args) {
 		//System.out.println("Starting Client...");
-		new ConsoleInput(LOCALHOST, PORT).start();
+		new ConsoleInput(LOCALHOST, Integer.getInteger("hangman.port", PORT), Boolean.getBoolean("hangman.binary")).start();
 	}
 
 }
@@ -46,6 +46,16 @@ public enum Command {
 	 */
 	LOGIN,
 	
+	/**
+	 * Command to get the best next letter to guess.
+	 */
+	HINT,
+	
+	/**
+	 * Command to list the players with the highest total scores.
+	 */
+	LEADERBOARD,
+	
 	/**
 	 * Invalid commands are set to this.
 	 */
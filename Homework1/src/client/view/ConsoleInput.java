@@ -1,5 +1,7 @@
 package client.view;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 import client.controller.Controller;
@@ -15,6 +17,8 @@ import client.net.OutputHandler;
 public class ConsoleInput implements Runnable{
 	private static final String PROMPT = "$ ";
 	private static final int COMMANDLINE_GUESS_INDEX = 1;
+	private static final int COMMANDLINE_LEADERBOARD_COUNT_INDEX = 1;
+	private static final int COMMANDLINE_TIER_INDEX = 1;
 	private final Scanner console = new Scanner(System.in);
 	private boolean active = false;
 	private final Controller controller = new Controller();
@@ -22,6 +26,7 @@ public class ConsoleInput implements Runnable{
 	private final OutputHandler outputHandler = new ConsoleOutput();
 	private String host;
 	private int port;
+	private boolean binaryProtocol;
 
 	/**
 	 * Creates a <code>ConsoleInput</code> instance with given parameters
@@ -29,8 +34,19 @@ public class ConsoleInput implements Runnable{
 	 * @param port The port where the host is running its service
 	 */
 	public ConsoleInput(String host, int port) {
+		this(host, port, false);
+	}
+	
+	/**
+	 * Creates a <code>ConsoleInput</code> instance with given parameters
+	 * @param host The host to connect to
+	 * @param port The port where the host is running its service
+	 * @param binaryProtocol <code>true</code> to talk the binary protocol with the host
+	 */
+	public ConsoleInput(String host, int port, boolean binaryProtocol) {
 		this.host = host;
 		this.port = port;
+		this.binaryProtocol = binaryProtocol;
 	}
 
 	/**
@@ -57,14 +73,16 @@ public class ConsoleInput implements Runnable{
 			switch (currentCommand) {
 			case GUESS:
 				try {
-					this.controller.sendGuess(commandLine.getParameter(COMMANDLINE_GUESS_INDEX));
+					this.controller.sendGuess(guesses(commandLine));
 				} catch (Throwable e) {
 					this.out.println(e.getMessage());
 				}
 				break;
 			case HELP:
-				this.out.println("START - Start a game\n" +
-						"GUESS - Guess a letter or a word\n"
+				this.out.println("START - Start a game, optionally EASY, MEDIUM or HARD\n" +
+						"GUESS - Guess a letter or a word, or several at once\n"
+						+ "HINT - See the best next letter to guess\n"
+						+ "LEADERBOARD - See the top players, optionally how many\n"
 						+ "CONNECT - Connect to game server\n"
 						+ "DISCONNECT - Disconnect from server\n"
 						+ "QUIT - Quit client\n"
@@ -73,7 +91,21 @@ public class ConsoleInput implements Runnable{
 				break;
 			case START:
 				try {
-					this.controller.startGame();
+					this.controller.startGame(commandLine.getParameter(COMMANDLINE_TIER_INDEX));
+				} catch (Throwable e) {
+					this.out.println(e.getMessage());
+				}
+				break;
+			case HINT:
+				try {
+					this.controller.hint();
+				} catch (Throwable e) {
+					this.out.println(e.getMessage());
+				}
+				break;
+			case LEADERBOARD:
+				try {
+					this.controller.leaderboard(commandLine.getParameter(COMMANDLINE_LEADERBOARD_COUNT_INDEX));
 				} catch (Throwable e) {
 					this.out.println(e.getMessage());
 				}
@@ -89,7 +121,7 @@ public class ConsoleInput implements Runnable{
 				}
 				break;
 			case CONNECT:
-				this.controller.connect(this.host, this.port, this.outputHandler);
+				this.controller.connect(this.host, this.port, this.outputHandler, this.binaryProtocol);
 				break;
 			case DISCONNECT:
 				try {
@@ -124,6 +156,18 @@ public class ConsoleInput implements Runnable{
 
 	}
 
+	//A guess command may hold several guesses, e.g. "guess a e i", which are pipelined
+	private String[] guesses(CommandLine commandLine) {
+		List<String> guesses = new ArrayList<>();
+		for(int i = COMMANDLINE_GUESS_INDEX; commandLine.getParameter(i) != null; i++) {
+			guesses.add(commandLine.getParameter(i));
+		}
+		if(guesses.isEmpty()) {
+			guesses.add(null);
+		}
+		return guesses.toArray(new String[0]);
+	}
+
 	private String readNextLine() {
 		this.out.print(PROMPT);
 		return this.console.nextLine();
@@ -48,6 +48,26 @@ class ConsoleOutput implements OutputHandler {
 			String score = gameBody[Constants.MSG_BODY_GAME_SCORE_INDEX];
 			this.out.println(gameWord + "Remaining attempts: " + remainingAttempts + " Total score: " + score);
 			break;
+		case HINT_RESPONSE:
+			String[] hintBody = msgParser.message.split(Constants.MSG_BODY_DELIMITER);
+			String letter = hintBody[Constants.MSG_BODY_HINT_LETTER_INDEX];
+			String candidates = hintBody[Constants.MSG_BODY_HINT_CANDIDATES_INDEX];
+			if(letter.isEmpty()) {
+				this.out.println("No hint, " + candidates + " possible words");
+			} else {
+				this.out.println("Hint: guess " + letter + " (" + candidates + " possible words)");
+			}
+			break;
+		case LEADERBOARD_RESPONSE:
+			if(msgParser.message == null) {
+				this.out.println("No scores yet");
+				break;
+			}
+			String[] players = msgParser.message.split(Constants.MSG_BODY_DELIMITER);
+			for(int i = 0; i < players.length; i++) {
+				this.out.println((i + 1) + ". " + players[i]);
+			}
+			break;
 		default:
 			break;
 		}
@@ -74,6 +94,15 @@ class ConsoleOutput implements OutputHandler {
 			case GAME_RESPONSE:
 				this.message = splittedMessage[Constants.MSG_BODY_INDEX];
 				break;
+			case HINT_RESPONSE:
+				this.message = splittedMessage[Constants.MSG_BODY_INDEX];
+				break;
+			case LEADERBOARD_RESPONSE:
+				//An empty leaderboard has no body, the binary protocol gives "null"
+				if(splittedMessage.length > Constants.MSG_BODY_INDEX && !splittedMessage[Constants.MSG_BODY_INDEX].equals("null")) {
+					this.message = splittedMessage[Constants.MSG_BODY_INDEX];
+				}
+				break;
 			default:
 				break;
 			}
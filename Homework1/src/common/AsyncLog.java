@@ -0,0 +1,307 @@
+package common;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A log that never makes the thread that logs wait for the console. A message is put
+ * into a preallocated ring buffer and written by one background thread, which does the
+ * formatting and the console I/O. The threads that log only claim a slot of the ring
+ * with a compare-and-set and fill it in; when the ring is full the message is dropped and
+ * counted instead, and the writer reports how many were dropped.
+ *
+ * Stack traces are expensive to print and a failing client can cause many of them, so
+ * only a few per second are printed. Beyond that only the exception itself is logged and
+ * the suppressed stack traces are counted.
+ *
+ * The level is chosen with <code>hangman.log.level</code> (default INFO), the size of the
+ * ring with <code>hangman.log.bufferSize</code> (default 8192, rounded up to a power of two)
+ * and the stack traces per second with <code>hangman.log.stackTracesPerSecond</code> (default 5).
+ *
+ * @author Antonio
+ *
+ */
+public final class AsyncLog {
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_STACK_TRACES_PER_SECOND = 5;
+	private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+	private static final AsyncLog SHARED = new AsyncLog(
+			Level.valueOf(System.getProperty("hangman.log.level", Level.INFO.name()).toUpperCase()),
+			Integer.getInteger("hangman.log.bufferSize", DEFAULT_BUFFER_SIZE),
+			Integer.getInteger("hangman.log.stackTracesPerSecond", DEFAULT_STACK_TRACES_PER_SECOND),
+			System.err);
+	private final Level level;
+	private final Entry[] ring;
+	private final int mask;
+	private final int stackTracesPerSecond;
+	private final PrintStream out;
+	private final AtomicLong tail = new AtomicLong();
+	//Only read and written by the writer thread
+	private long head = 0;
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder suppressedStackTraces = new LongAdder();
+	private final AtomicLong stackTraceSecond = new AtomicLong();
+	private final AtomicLong stackTracesThisSecond = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean closing = false;
+
+	/**
+	 * The severity of a message, messages below the level of the log are not logged.
+	 */
+	public enum Level {
+		/**
+		 * Details only needed when looking for a problem.
+		 */
+		DEBUG,
+
+		/**
+		 * Normal events, like a client disconnecting.
+		 */
+		INFO,
+
+		/**
+		 * Something failed, but the server goes on.
+		 */
+		WARN,
+
+		/**
+		 * Something failed that should not.
+		 */
+		ERROR
+	}
+
+	/**
+	 * Creates an <code>AsyncLog</code> and starts its writer thread. The application logs
+	 * to the shared one, see {@link #getShared()}.
+	 * @param level the lowest level that is logged.
+	 * @param bufferSize the number of messages the ring holds, rounded up to a power of two.
+	 * @param stackTracesPerSecond the number of stack traces printed per second at most.
+	 * @param out the stream to write to.
+	 */
+	public AsyncLog(Level level, int bufferSize, int stackTracesPerSecond, PrintStream out) {
+		this.level = level;
+		int capacity = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+		this.ring = new Entry[capacity];
+		for(int i = 0; i < capacity; i++) {
+			this.ring[i] = new Entry(i);
+		}
+		this.mask = capacity - 1;
+		this.stackTracesPerSecond = stackTracesPerSecond;
+		this.out = out;
+		this.writer = new Thread(this::write, "async-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "async-log-shutdown"));
+	}
+
+	/**
+	 * @return the log shared by the whole application.
+	 */
+	public static AsyncLog getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param level a level
+	 * @return <code>true</code> if messages of the level are logged.
+	 */
+	public boolean isEnabled(Level level) {
+		return level.compareTo(this.level) >= 0;
+	}
+
+	/**
+	 * Logs a message at level DEBUG.
+	 * @param message the message
+	 */
+	public void debug(String message) {
+		log(Level.DEBUG, message, null);
+	}
+
+	/**
+	 * Logs a message at level INFO.
+	 * @param message the message
+	 */
+	public void info(String message) {
+		log(Level.INFO, message, null);
+	}
+
+	/**
+	 * Logs a message at level WARN.
+	 * @param message the message
+	 */
+	public void warn(String message) {
+		log(Level.WARN, message, null);
+	}
+
+	/**
+	 * Logs a message and an exception at level WARN.
+	 * @param message the message
+	 * @param exception the exception
+	 */
+	public void warn(String message, Throwable exception) {
+		log(Level.WARN, message, exception);
+	}
+
+	/**
+	 * Logs a message and an exception at level ERROR.
+	 * @param message the message
+	 * @param exception the exception
+	 */
+	public void error(String message, Throwable exception) {
+		log(Level.ERROR, message, exception);
+	}
+
+	/**
+	 * Puts a message into the ring without waiting, or drops it if the ring is full.
+	 * @param level the level of the message
+	 * @param message the message
+	 * @param exception an exception to log with the message; or <code>null</code>.
+	 */
+	public void log(Level level, String message, Throwable exception) {
+		if(!isEnabled(level)) {
+			return;
+		}
+		long timeMillis = System.currentTimeMillis();
+		while(true) {
+			long position = this.tail.get();
+			Entry entry = this.ring[(int) position & this.mask];
+			long sequence = entry.sequence;
+			if(sequence < position) {
+				//The writer has not taken the message of the last round yet
+				this.dropped.increment();
+				return;
+			}
+			if(sequence == position && this.tail.compareAndSet(position, position + 1)) {
+				entry.level = level;
+				entry.timeMillis = timeMillis;
+				entry.threadName = Thread.currentThread().getName();
+				entry.message = message;
+				entry.exception = exception;
+				entry.printStackTrace = exception != null && allowStackTrace(timeMillis);
+				//Publishes the fields to the writer
+				entry.sequence = position + 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of messages dropped because the ring was full.
+	 */
+	public long getDroppedMessages() {
+		return this.dropped.sum();
+	}
+
+	/**
+	 * @return the number of exceptions logged without their stack trace.
+	 */
+	public long getSuppressedStackTraces() {
+		return this.suppressedStackTraces.sum();
+	}
+
+	/**
+	 * Writes the messages in the ring and stops the writer thread, called when the JVM exits.
+	 */
+	public void close() {
+		this.closing = true;
+		LockSupport.unpark(this.writer);
+		try {
+			this.writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean allowStackTrace(long timeMillis) {
+		long second = timeMillis / 1000;
+		long windowSecond = this.stackTraceSecond.get();
+		if(second != windowSecond && this.stackTraceSecond.compareAndSet(windowSecond, second)) {
+			this.stackTracesThisSecond.set(0);
+		}
+		if(this.stackTracesThisSecond.incrementAndGet() <= this.stackTracesPerSecond) {
+			return true;
+		}
+		this.suppressedStackTraces.increment();
+		return false;
+	}
+
+	private void write() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		Date date = new Date();
+		StringBuilder line = new StringBuilder();
+		long reportedDrops = 0;
+		long idleNanos = 0;
+		while(true) {
+			int written = 0;
+			Entry entry;
+			while((entry = this.ring[(int) this.head & this.mask]).sequence == this.head + 1) {
+				date.setTime(entry.timeMillis);
+				line.setLength(0);
+				line.append(format.format(date)).append(' ').append(entry.level).append(" [")
+						.append(entry.threadName).append("] ").append(entry.message);
+				if(entry.exception != null) {
+					line.append(": ").append(entry.printStackTrace ? stackTrace(entry.exception) : entry.exception.toString());
+				}
+				this.out.println(line);
+				entry.clear();
+				//Hands the slot to the producers of the next round
+				entry.sequence = this.head + this.ring.length;
+				this.head++;
+				written++;
+			}
+			long drops = this.dropped.sum();
+			if(drops != reportedDrops) {
+				this.out.println(format.format(new Date()) + " " + Level.WARN + " [" + Thread.currentThread().getName()
+						+ "] Dropped " + (drops - reportedDrops) + " log messages, the log is too slow");
+				reportedDrops = drops;
+				written++;
+			}
+			if(written > 0) {
+				this.out.flush();
+				idleNanos = 0;
+			} else if(this.closing) {
+				return;
+			} else {
+				//Backs off while there is nothing to write
+				idleNanos = Math.min(MAX_IDLE_NANOS, Math.max(idleNanos * 2, 1000));
+				LockSupport.parkNanos(idleNanos);
+			}
+		}
+	}
+
+	private static String stackTrace(Throwable exception) {
+		StringWriter trace = new StringWriter();
+		exception.printStackTrace(new PrintWriter(trace));
+		return trace.toString().trim();
+	}
+
+	//A preallocated slot of the ring
+	private static final class Entry {
+		//position + 1 once the message of position is written, position + ring length once it is free again
+		private volatile long sequence;
+		private Level level;
+		private long timeMillis;
+		private String threadName;
+		private String message;
+		private Throwable exception;
+		private boolean printStackTrace;
+
+		private Entry(long sequence) {
+			this.sequence = sequence;
+		}
+
+		private void clear() {
+			this.threadName = null;
+			this.message = null;
+			this.exception = null;
+		}
+	}
+}
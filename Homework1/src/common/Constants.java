@@ -17,4 +17,12 @@ public class Constants {
 	public static final int MSG_BODY_GAME_WORD_INDEX = 0;
 	public static final int MSG_BODY_GAME_ATTEMPTS_INDEX = 1;
 	public static final int MSG_BODY_GAME_SCORE_INDEX = 2;	
+	public static final int MSG_BODY_LEADERBOARD_COUNT_INDEX = 2;
+	public static final int MSG_BODY_START_TIER_INDEX = 2;
+	public static final int MSG_BODY_HINT_LETTER_INDEX = 0;
+	public static final int MSG_BODY_HINT_CANDIDATES_INDEX = 1;
+	public static final String MSG_LEADERBOARD_SCORE_DELIMITER = " ";
+	public static final int BINARY_PROTOCOL_MAGIC = 0xB1A40001;
+	public static final int MAX_FRAME_SIZE = 4096;
+	public static final int TICKET_OPCODE_FLAG = 0x80;
 }
@@ -0,0 +1,143 @@
+package common;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads frames of the binary protocol, see {@link FrameWriter} for the layout.
+ * The session ticket of a frame that carries one is read before the fields.
+ * A <code>FrameReader</code> belongs to one connection and reuses the same buffer
+ * for every frame, so it must not be shared between threads.
+ * 
+ * @author Antonio
+ *
+ */
+public class FrameReader {
+	//Bits 28 to 30 of a varint, bit 31 would make it negative
+	private static final int MAX_LAST_VARINT_BYTE = 0x07;
+	private final byte[] buffer = new byte[Constants.MAX_FRAME_SIZE];
+	private int position;
+	private int length;
+	private int requestId;
+	private SessionTicket ticket;
+	
+	/**
+	 * Blocks until a complete frame has been read into the buffer.
+	 * @param inStream the stream where the frame will come from.
+	 * @return the message type of the frame.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is unknown or too large.
+	 */
+	public MessageType readFrame(DataInputStream inStream) throws IOException {
+		int opcode = inStream.readUnsignedByte();
+		boolean hasTicket = (opcode & Constants.TICKET_OPCODE_FLAG) != 0;
+		MessageType type = MessageType.fromOpcode(opcode & ~Constants.TICKET_OPCODE_FLAG);
+		if(type == null) {
+			throw new ProtocolException("Unknown opcode: " + opcode);
+		}
+		this.requestId = readVarint(inStream);
+		int frameLength = readVarint(inStream);
+		if(frameLength < 0 || frameLength > Constants.MAX_FRAME_SIZE) {
+			throw new ProtocolException("Frame exceeds " + Constants.MAX_FRAME_SIZE + " bytes");
+		}
+		inStream.readFully(this.buffer, 0, frameLength);
+		this.position = 0;
+		this.length = frameLength;
+		this.ticket = null;
+		if(hasTicket) {
+			if(frameLength < SessionTicket.SIZE) {
+				throw new ProtocolException("Frame too short for a session ticket");
+			}
+			this.ticket = new SessionTicket(readLong(0), readLong(Long.BYTES));
+			this.position = SessionTicket.SIZE;
+		}
+		return type;
+	}
+	
+	/**
+	 * @return the session ticket of the current frame; or <code>null</code> if the frame
+	 * does not carry one.
+	 */
+	public SessionTicket getTicket() {
+		return this.ticket;
+	}
+	
+	/**
+	 * @return the request id of the current frame; <code>0</code> if the frame is
+	 * not correlated with a request.
+	 */
+	public int getRequestId() {
+		return this.requestId;
+	}
+	
+	/**
+	 * @return <code>true</code> if the current frame has more fields.
+	 */
+	public boolean hasNextField() {
+		return this.position < this.length;
+	}
+	
+	/**
+	 * Decodes the next field of the current frame.
+	 * @return the field as a UTF-8 decoded <code>String</code>; or <code>null</code> if the
+	 * frame has no more fields or the field is empty.
+	 * @throws ProtocolException if the field length points outside of the frame.
+	 */
+	public String nextField() throws ProtocolException {
+		if(!hasNextField()) {
+			return null;
+		}
+		int fieldLength = nextFieldLength();
+		if(fieldLength == 0) {
+			return null;
+		}
+		String field = new String(this.buffer, this.position, fieldLength, StandardCharsets.UTF_8);
+		this.position += fieldLength;
+		return field;
+	}
+	
+	//A varint like readVarint, that must fit in the rest of the frame
+	private int nextFieldLength() throws ProtocolException {
+		int value = 0;
+		for(int shift = 0; shift < 35 && this.position < this.length; shift += 7) {
+			int b = this.buffer[this.position++] & 0xFF;
+			if(shift == 28 && b > MAX_LAST_VARINT_BYTE) {
+				break;
+			}
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				if(value > this.length - this.position) {
+					break;
+				}
+				return value;
+			}
+		}
+		throw new ProtocolException("Malformed field length");
+	}
+	
+	private long readLong(int offset) {
+		long value = 0;
+		for(int i = offset; i < offset + Long.BYTES; i++) {
+			value = (value << 8) | (this.buffer[i] & 0xFF);
+		}
+		return value;
+	}
+	
+	//Reads a non-negative int: four bytes of 7 bits, and a fifth one with the top 3 bits only
+	private static int readVarint(DataInputStream inStream) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 28; shift += 7) {
+			int b = inStream.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		int last = inStream.readUnsignedByte();
+		if(last > MAX_LAST_VARINT_BYTE) {
+			throw new ProtocolException("Malformed varint");
+		}
+		return value | (last << 28);
+	}
+}
@@ -0,0 +1,138 @@
+package common;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes frames of the binary protocol. A frame is laid out as
+ * <pre>
+ * opcode (1 byte) | request id (varint) | frame length (varint) | field length (varint) | field bytes | ...
+ * </pre>
+ * where the opcode is given by {@link MessageType#getOpcode()} and every field is
+ * UTF-8 encoded. A response carries the request id of the request it answers, which
+ * lets a client have several requests in flight; request id <code>0</code> means that
+ * the frame is not correlated with a request. An empty field is used where the text protocol sends <code>null</code>.
+ * A frame may carry a {@link SessionTicket}: then {@link Constants#TICKET_OPCODE_FLAG} is set in the
+ * opcode and the 16 bytes of the ticket come right before the first field, counted in the frame length.
+ * A request with a ticket leaves out the JSON Web Token field.
+ * The complete frame is written with a single write. A <code>FrameWriter</code> reuses
+ * its buffer and must not be shared between threads. See {@link FrameReader}.
+ * 
+ * @author Antonio
+ *
+ */
+public class FrameWriter {
+	private static final int MAX_HEADER_SIZE = 11;
+	private static final byte[] EMPTY_FIELD = new byte[0];
+	private final byte[] buffer = new byte[MAX_HEADER_SIZE + Constants.MAX_FRAME_SIZE];
+	
+	/**
+	 * Writes a frame with the given fields and flushes the stream.
+	 * @param type the message type of the frame.
+	 * @param out the <code>DataOutputStream</code>
+	 * @param fields the fields of the frame, <code>null</code> fields are sent as empty fields.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is too large.
+	 */
+	public void sendFrame(MessageType type, DataOutputStream out, String... fields) throws IOException {
+		sendFrame(type, out, 0, fields);
+	}
+	
+	/**
+	 * Writes a frame with the given request id and fields and flushes the stream.
+	 * @param type the message type of the frame.
+	 * @param out the <code>DataOutputStream</code>
+	 * @param requestId the request id of the frame.
+	 * @param fields the fields of the frame, <code>null</code> fields are sent as empty fields.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is too large.
+	 */
+	public void sendFrame(MessageType type, DataOutputStream out, int requestId, String... fields) throws IOException {
+		writeFrame(type, out, requestId, fields);
+		out.flush();
+	}
+	
+	/**
+	 * Writes a frame with the given fields without flushing the stream, so that
+	 * several frames can be sent together.
+	 * @param type the message type of the frame.
+	 * @param out the <code>DataOutputStream</code>
+	 * @param fields the fields of the frame, <code>null</code> fields are sent as empty fields.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is too large.
+	 */
+	public void writeFrame(MessageType type, DataOutputStream out, String... fields) throws IOException {
+		writeFrame(type, out, 0, fields);
+	}
+	
+	/**
+	 * Writes a frame with the given request id and fields without flushing the stream.
+	 * @param type the message type of the frame.
+	 * @param out the <code>DataOutputStream</code>
+	 * @param requestId the request id of the frame.
+	 * @param fields the fields of the frame, <code>null</code> fields are sent as empty fields.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is too large.
+	 */
+	public void writeFrame(MessageType type, DataOutputStream out, int requestId, String... fields) throws IOException {
+		writeFrame(type, out, requestId, null, fields);
+	}
+	
+	/**
+	 * Writes a frame with the given request id, session ticket and fields without flushing the stream.
+	 * @param type the message type of the frame.
+	 * @param out the <code>DataOutputStream</code>
+	 * @param requestId the request id of the frame, not negative.
+	 * @param ticket the session ticket; or <code>null</code> for a frame without a ticket.
+	 * @param fields the fields of the frame, <code>null</code> fields are sent as empty fields.
+	 * @throws IOException if a problem occurs with I/O, or if the frame is too large.
+	 * @throws IllegalArgumentException if the request id is negative, which {@link FrameReader} refuses.
+	 */
+	public void writeFrame(MessageType type, DataOutputStream out, int requestId, SessionTicket ticket, String... fields) throws IOException {
+		if(requestId < 0) {
+			throw new IllegalArgumentException("Negative request id " + requestId);
+		}
+		int position = MAX_HEADER_SIZE;
+		int opcode = type.getOpcode();
+		if(ticket != null) {
+			position = putLong(ticket.getLow(), putLong(ticket.getHigh(), position));
+			opcode |= Constants.TICKET_OPCODE_FLAG;
+		}
+		for(String field : fields) {
+			byte[] bytes = field == null ? EMPTY_FIELD : field.getBytes(StandardCharsets.UTF_8);
+			if(position + varintSize(bytes.length) + bytes.length > this.buffer.length) {
+				throw new IOException("Frame exceeds " + Constants.MAX_FRAME_SIZE + " bytes");
+			}
+			position = putVarint(bytes.length, position);
+			System.arraycopy(bytes, 0, this.buffer, position, bytes.length);
+			position += bytes.length;
+		}
+		int bodyLength = position - MAX_HEADER_SIZE;
+		int frameStart = MAX_HEADER_SIZE - 1 - varintSize(requestId) - varintSize(bodyLength);
+		this.buffer[frameStart] = (byte) opcode;
+		putVarint(bodyLength, putVarint(requestId, frameStart + 1));
+		out.write(this.buffer, frameStart, position - frameStart);
+	}
+	
+	private int putLong(long value, int position) {
+		for(int shift = Long.SIZE - 8; shift >= 0; shift -= 8) {
+			this.buffer[position++] = (byte) (value >>> shift);
+		}
+		return position;
+	}
+	
+	private int putVarint(int value, int position) {
+		while((value & ~0x7F) != 0) {
+			this.buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.buffer[position++] = (byte) value;
+		return position;
+	}
+	
+	private static int varintSize(int value) {
+		int size = 1;
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+}
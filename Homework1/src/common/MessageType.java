@@ -1,7 +1,8 @@
 package common;
 
 /**
- * Different message types.
+ * Different message types. Every type has a one byte opcode that identifies
+ * it in the binary protocol, see {@link FrameWriter}.
  * 
  * @author Antonio
  *
@@ -10,40 +11,91 @@ public enum MessageType {
 	/**
 	 * Guess message type
 	 */
-	GUESS,
+	GUESS(1),
 	
 	/**
 	 * Start game message type
 	 */
-	START,
+	START(2),
 	
 	/**
 	 * Disconnect message type
 	 */
-	DISCONNECT,
+	DISCONNECT(3),
 	
 	/**
 	 * Login message type
 	 */
-	LOGIN,
+	LOGIN(4),
 	
 	/**
 	 * Game respond message type
 	 */
-	GAME_RESPONSE,
+	GAME_RESPONSE(5),
 	
 	/**
 	 * Login success message type
 	 */
-	LOGIN_SUCCESS,
+	LOGIN_SUCCESS(6),
 	
 	/**
 	 * Login fail message type
 	 */
-	LOGIN_FAIL,
+	LOGIN_FAIL(7),
 	
 	/**
 	 * Invalid request message type
 	 */
-	INVALID_REQUEST
+	INVALID_REQUEST(8),
+	
+	/**
+	 * Leaderboard (top players) message type
+	 */
+	LEADERBOARD(9),
+	
+	/**
+	 * Leaderboard respond message type
+	 */
+	LEADERBOARD_RESPONSE(10),
+	
+	/**
+	 * Hint (best next letter) message type
+	 */
+	HINT(11),
+	
+	/**
+	 * Hint respond message type
+	 */
+	HINT_RESPONSE(12);
+	
+	private static final MessageType[] BY_OPCODE = new MessageType[256];
+	static {
+		for(MessageType type : values()) {
+			BY_OPCODE[type.opcode] = type;
+		}
+	}
+	
+	private final int opcode;
+	
+	private MessageType(int opcode) {
+		this.opcode = opcode;
+	}
+	
+	/**
+	 * @return the opcode of this message type in the binary protocol.
+	 */
+	public int getOpcode() {
+		return this.opcode;
+	}
+	
+	/**
+	 * @param opcode an opcode of the binary protocol
+	 * @return the message type with the given opcode; or <code>null</code> if unknown.
+	 */
+	public static MessageType fromOpcode(int opcode) {
+		if(opcode < 0 || opcode >= BY_OPCODE.length) {
+			return null;
+		}
+		return BY_OPCODE[opcode];
+	}
 }
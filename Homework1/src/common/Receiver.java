@@ -2,7 +2,7 @@ package common;
 
 import java.io.DataInputStream;
 import java.io.IOException;
-
+import java.net.ProtocolException;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -22,28 +22,28 @@ public class Receiver {
 	 * @throws IOException if a problem occurs with I/O.
 	 */
 	public String receiveMessage(DataInputStream inStream) throws IOException{
-		int length = inStream.readInt();
-
-		byte[] message = new byte[length];
-		int totalBytesRead = 0;
-		boolean endStream = false;
-		StringBuilder sb = new StringBuilder(length);
-
-		while (!endStream && length != 0) {
-			int bytesRead = inStream.read(message);
-			if(bytesRead != -1) {
-				totalBytesRead += bytesRead;
-				if(totalBytesRead <= length) {
-					sb.append(new String(message, 0, bytesRead, StandardCharsets.UTF_8));
-				} else {
-					//Fill to limit, don't overflow
-					sb.append(new String(message, 0, length - totalBytesRead + bytesRead, StandardCharsets.UTF_8));
-				}
-				if(sb.length() >= length) {
-					endStream = true;
-				}
-			}
+		return receiveMessage(inStream, inStream.readInt());
+	}
+	
+	/**
+	 * Receive all the incoming message bytes when the length header has
+	 * already been read from the stream.
+	 * @param inStream the stream where the bytes will come from.
+	 * @param length the already read length of the message.
+	 * @return a <code>String</code> of the UTF-8 decoded bytes.
+	 * @throws IOException if a problem occurs with I/O, or if the length is negative or
+	 * larger than {@link Constants#MAX_FRAME_SIZE}, like a frame of the binary protocol.
+	 */
+	public String receiveMessage(DataInputStream inStream, int length) throws IOException{
+		if(length < 0) {
+			throw new ProtocolException("Negative message length: " + length);
 		}
-		return sb.toString();
+		if(length > Constants.MAX_FRAME_SIZE) {
+			throw new ProtocolException("Message exceeds " + Constants.MAX_FRAME_SIZE + " bytes");
+		}
+		//Read exactly the message, the following bytes may belong to a pipelined message
+		byte[] message = new byte[length];
+		inStream.readFully(message);
+		return new String(message, StandardCharsets.UTF_8);
 	}
 }
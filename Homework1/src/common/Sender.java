@@ -8,10 +8,14 @@ import java.nio.charset.StandardCharsets;
  * A <code>Sender</code> follows a "length-value" protocol, meaning it will
  * first send the length of the bytes to send, and then send those bytes.
  * See {@link Receiver}.
+ * 
+ * The <code>DataOutputStream</code> should be buffered, so that the length and the
+ * bytes, and several messages written with {@link #writeMessage}, leave in one write.
  * @author Antonio
  *
  */
 public class Sender {
+	private static final AsyncLog LOG = AsyncLog.getShared();
 	
 	/**
 	 * Sends a message through the <code>DataOutputStream</code> as UTF-8 
@@ -21,14 +25,25 @@ public class Sender {
 	 * @param out The <code>DataOutputStream</code>
 	 */
 	public void sendMessage(String message, DataOutputStream out) {
-		byte[] byteMessage = message.getBytes(StandardCharsets.UTF_8);
 		try {
-			out.writeInt((int) byteMessage.length);
-			out.write(byteMessage);
+			writeMessage(message, out);
 			out.flush();
 		} catch(IOException e) {
-			System.err.println(e.getMessage());
-			e.printStackTrace();
+			LOG.warn("Failed to send a message", e);
 		}
 	}
+	
+	/**
+	 * Writes a message to the <code>DataOutputStream</code> as UTF-8 encoded bytes
+	 * without flushing it, so that several messages can be sent together.
+	 *
+	 * @param message The message to be written
+	 * @param out The <code>DataOutputStream</code>
+	 * @throws IOException if a problem occurs with I/O.
+	 */
+	public void writeMessage(String message, DataOutputStream out) throws IOException {
+		byte[] byteMessage = message.getBytes(StandardCharsets.UTF_8);
+		out.writeInt((int) byteMessage.length);
+		out.write(byteMessage);
+	}
 }
@@ -0,0 +1,63 @@
+package common;
+
+/**
+ * An opaque session ticket of the binary protocol. After a client has logged in, or
+ * has been authenticated with its JSON Web Token, the server answers with a ticket
+ * that the client sends instead of the token in the following frames of the same
+ * connection. A ticket is 16 random bytes, see {@link FrameWriter} for how it is sent.
+ * 
+ * @author Antonio
+ *
+ */
+public final class SessionTicket {
+	/**
+	 * The size of a ticket in bytes.
+	 */
+	public static final int SIZE = 16;
+	private final long high;
+	private final long low;
+	
+	/**
+	 * Creates a <code>SessionTicket</code>.
+	 * @param high the first 8 bytes of the ticket.
+	 * @param low the last 8 bytes of the ticket.
+	 */
+	public SessionTicket(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+	
+	/**
+	 * @return the first 8 bytes of the ticket.
+	 */
+	public long getHigh() {
+		return this.high;
+	}
+	
+	/**
+	 * @return the last 8 bytes of the ticket.
+	 */
+	public long getLow() {
+		return this.low;
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof SessionTicket)) {
+			return false;
+		}
+		SessionTicket ticket = (SessionTicket) other;
+		//Compares all bytes, so the time does not tell how much of a guessed ticket is right
+		return ((this.high ^ ticket.high) | (this.low ^ ticket.low)) == 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(this.high ^ this.low);
+	}
+	
+	@Override
+	public String toString() {
+		return "SessionTicket";
+	}
+}
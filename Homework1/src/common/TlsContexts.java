@@ -0,0 +1,116 @@
+package common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Creates the <code>SSLContext</code>s of the optional TLS transport. The server
+ * context holds the certificate of the server, the client context trusts it.
+ *
+ * A full TLS handshake costs a key exchange and a signature, which is a lot more than
+ * the rest of a short session. A client that reconnects with the same client context
+ * resumes its earlier session instead: with a session ticket in TLS 1.3 and with the
+ * session cache of the server in TLS 1.2. The contexts must therefore be created once
+ * and shared by all connections.
+ *
+ * @author Antonio
+ *
+ */
+public class TlsContexts {
+	/**
+	 * The number of sessions the server keeps for resumption.
+	 */
+	public static final int DEFAULT_SESSION_CACHE_SIZE = 10000;
+	/**
+	 * How long a session can be resumed, in seconds.
+	 */
+	public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 3600;
+	private static final String PROTOCOL = "TLS";
+	private static final String[] PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+
+	/**
+	 * Creates the server context with the default session cache.
+	 * @param keyStore the key store with the key and certificate of the server.
+	 * @param password the password of the key store and the key.
+	 * @return the context.
+	 * @throws GeneralSecurityException if the key store has no usable key.
+	 * @throws IOException if the key store could not be read.
+	 */
+	public static SSLContext forServer(Path keyStore, char[] password) throws GeneralSecurityException, IOException {
+		return forServer(keyStore, password, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+	}
+
+	/**
+	 * Creates the server context.
+	 * @param keyStore the key store with the key and certificate of the server.
+	 * @param password the password of the key store and the key.
+	 * @param sessionCacheSize the number of sessions kept for resumption.
+	 * @param sessionTimeoutSeconds how long a session can be resumed.
+	 * @return the context.
+	 * @throws GeneralSecurityException if the key store has no usable key.
+	 * @throws IOException if the key store could not be read.
+	 */
+	public static SSLContext forServer(Path keyStore, char[] password, int sessionCacheSize,
+			int sessionTimeoutSeconds) throws GeneralSecurityException, IOException {
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(load(keyStore, password), password);
+		SSLContext context = SSLContext.getInstance(PROTOCOL);
+		context.init(keyManagers.getKeyManagers(), null, null);
+		SSLSessionContext sessions = context.getServerSessionContext();
+		sessions.setSessionCacheSize(sessionCacheSize);
+		sessions.setSessionTimeout(sessionTimeoutSeconds);
+		return context;
+	}
+
+	/**
+	 * Creates the client context.
+	 * @param trustStore the trust store with the certificate of the server, or of its issuer.
+	 * @param password the password of the trust store.
+	 * @return the context.
+	 * @throws GeneralSecurityException if the trust store is not usable.
+	 * @throws IOException if the trust store could not be read.
+	 */
+	public static SSLContext forClient(Path trustStore, char[] password) throws GeneralSecurityException, IOException {
+		TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(load(trustStore, password));
+		SSLContext context = SSLContext.getInstance(PROTOCOL);
+		context.init(null, trustManagers.getTrustManagers(), null);
+		return context;
+	}
+
+	/**
+	 * @param context a context created here
+	 * @return the TLS versions to enable on a socket of the context, the ones before
+	 * TLS 1.2 are left out.
+	 */
+	public static String[] protocols(SSLContext context) {
+		List<String> supported = Arrays.asList(context.getSupportedSSLParameters().getProtocols());
+		List<String> protocols = new ArrayList<>();
+		for(String protocol : PROTOCOLS) {
+			if(supported.contains(protocol)) {
+				protocols.add(protocol);
+			}
+		}
+		return protocols.toArray(new String[0]);
+	}
+
+	private static KeyStore load(Path file, char[] password) throws GeneralSecurityException, IOException {
+		KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		try(InputStream in = Files.newInputStream(file)) {
+			keyStore.load(in, password);
+		}
+		return keyStore;
+	}
+}
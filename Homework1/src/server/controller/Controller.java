@@ -1,18 +1,35 @@
 package server.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import common.Constants;
 import server.model.AuthenticationManager;
 import server.model.HangmanGame;
+import server.model.HintSolver;
+import server.model.Leaderboard;
+import server.model.SessionStore;
+import server.model.Tier;
+import server.model.VerifiedToken;
 
 /**
  * A simple controller that handles calls from the net-layer to the model-layer.
  * Holds a <code>HangmanGame</code> for the game and a <code>AuthenticationManager</code>
- * for authentication of the client.
+ * for authentication of the client. The game is looked up in the shared
+ * <code>SessionStore</code> when the JSON Web Token is validated, so a client that
+ * reconnects with a token of the same user continues the same game.
  * 
  * @author Antonio
  *
  */
 public class Controller {
-	private final HangmanGame game = new HangmanGame();
+	private static final int DEFAULT_LEADERBOARD_SIZE = 10;
+	private static final int MAX_LEADERBOARD_SIZE = 100;
+	//Leaves room for the message type of a text message, or the ticket and field length of a frame
+	private static final int MAX_LEADERBOARD_BYTES = Constants.MAX_FRAME_SIZE - 64;
+	private final Leaderboard leaderboard = Leaderboard.getShared();
+	private final SessionStore sessions = SessionStore.getShared();
+	private HangmanGame game;
 	private AuthenticationManager authManager = new AuthenticationManager();
 	
 	/**
@@ -23,6 +40,23 @@ public class Controller {
 		return this.game.startGame();
 	}
 	
+	/**
+	 * Start a game in <code>HangmanGame</code> with a word of the given tier.
+	 * @param tier the name of the tier, EASY, MEDIUM or HARD; or <code>null</code> for any word.
+	 * @return the game respond to send to the client.
+	 * @throws Throwable if there is no such tier.
+	 */
+	public String startGame(String tier) throws Throwable {
+		if(tier == null) {
+			return this.game.startGame();
+		}
+		try {
+			return this.game.startGame(Tier.valueOf(tier.toUpperCase()));
+		} catch(IllegalArgumentException e) {
+			throw new Throwable("Choose a tier: EASY, MEDIUM or HARD!");
+		}
+	}
+	
 	/**
 	 * Makes a guess in the <code>HangmanGame</code>.
 	 * @param guess the guess
@@ -32,23 +66,94 @@ public class Controller {
 		return this.game.guess(guess);
 	}
 	
+	/**
+	 * Asks the <code>HangmanGame</code> for the best next letter.
+	 * @return the suggested letter and the number of possible words to send to the client.
+	 * The letter is empty if there is none to suggest.
+	 * @throws Throwable if no game is in progress or the word file could not be read.
+	 */
+	public String hint() throws Throwable {
+		HintSolver.Hint hint;
+		try {
+			hint = this.game.hint();
+		} catch(IOException e) {
+			throw new Throwable("Failed to read word file in server side");
+		}
+		if(hint == null) {
+			throw new Throwable("Start a new game!");
+		}
+		StringBuilder sb = new StringBuilder();
+		if(hint.hasLetter()) {
+			sb.append(hint.getLetter());
+		}
+		sb.append(Constants.MSG_BODY_DELIMITER).append(hint.getCandidates());
+		return sb.toString();
+	}
+	
+	/**
+	 * Lists the players with the highest total score on the <code>Leaderboard</code>.
+	 * @param count the number of players to list; or <code>null</code> for the default.
+	 * @return the top players to send to the client, as "player score" pairs, highest first. The
+	 * list is cut short where it would not fit in one message, see {@link Constants#MAX_FRAME_SIZE}.
+	 * @throws Throwable if the count is not a positive number.
+	 */
+	public String leaderboard(String count) throws Throwable {
+		int size = DEFAULT_LEADERBOARD_SIZE;
+		if(count != null) {
+			try {
+				size = Math.min(Integer.parseInt(count), MAX_LEADERBOARD_SIZE);
+			} catch(NumberFormatException e) {
+				size = 0;
+			}
+			if(size <= 0) {
+				throw new Throwable("Enter the number of players to list!");
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		int bytes = 0;
+		for(Leaderboard.Entry entry : this.leaderboard.topPlayers(size)) {
+			String pair = entry.getPlayer() + Constants.MSG_LEADERBOARD_SCORE_DELIMITER + entry.getScore();
+			String delimiter = sb.length() > 0 ? Constants.MSG_BODY_DELIMITER : "";
+			bytes += (delimiter + pair).getBytes(StandardCharsets.UTF_8).length;
+			if(bytes > MAX_LEADERBOARD_BYTES) {
+				break;
+			}
+			sb.append(delimiter).append(pair);
+		}
+		return sb.toString();
+	}
+	
 	/**
 	 * Try to login with <code>AuthenticationManager</code>.
 	 * @param username the username
 	 * @param password the password
-	 * @return the respond
+	 * @return the JSON Web Token of the user, with its subject and expiration time.
 	 * @throws Throwable if invalid credentials.
 	 */
-	public String login(String username, String password) throws Throwable {
+	public VerifiedToken login(String username, String password) throws Throwable {
 		return this.authManager.login(username, password);
 	}
 	
 	/**
-	 * Validate an encoded JSON Web Token.
+	 * Validate an encoded JSON Web Token and resume the game session of its user.
+	 * Must be called before the game is used, unless {@link #validSession(String)} is.
 	 * @param encodedJwt the encoded JSON Web Token
+	 * @return the JSON Web Token with the username it was issued to and its expiration time.
 	 * @throws Throwable if JSON Web Token is invalid somehow.
 	 */
-	public void validJwt(String encodedJwt) throws Throwable {
-		this.authManager.validateJwt(encodedJwt);
+	public VerifiedToken validJwt(String encodedJwt) throws Throwable {
+		VerifiedToken token = this.authManager.validateJwt(encodedJwt);
+		this.game = this.sessions.gameOf(token.getSubject());
+		return token;
+	}
+	
+	/**
+	 * Resume the game session of a user that has already been authenticated on
+	 * this connection, e.g by a session ticket. Must be called before the game is used,
+	 * unless {@link #validJwt(String)} is.
+	 * @param username the username
+	 */
+	public void validSession(String username) {
+		this.game = this.sessions.gameOf(username);
 	}
 }
@@ -0,0 +1,453 @@
+package server.integration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import common.AsyncLog;
+import server.model.Leaderboard;
+import server.model.OutcomeListener;
+
+/**
+ * An append-only journal of won and lost games that makes the scores of the
+ * {@link Leaderboard} survive a restart of the server.
+ *
+ * Game threads never touch the disk. An outcome is put on a queue and a single writer
+ * thread appends everything that is queued to the log with a <code>FileChannel</code>,
+ * then forces it to disk once for the whole batch (group commit). While the disk is busy
+ * forcing one batch, the next batch builds up in the queue, so the more games finish at
+ * the same time the more outcomes share one force.
+ *
+ * Every record of the log carries a sequence number and a CRC32. When the journal is
+ * opened, the latest snapshot is read and the records of the log that are newer than
+ * the snapshot are replayed; a torn record at the end of the log, from a crash in the
+ * middle of a write, is cut off. When the log grows past <code>compactBytes</code>, the
+ * writer thread writes a new snapshot of its own durable scores and empties the log,
+ * so replay time stays bounded.
+ *
+ * The queue holds at most <code>maxPending</code> outcomes. Game threads do not wait for
+ * the disk, so when the disk stalls long enough to fill the queue, the outcomes that do not
+ * fit are dropped and counted, see {@link #getDroppedCount()}: the leaderboard keeps them,
+ * but they are lost on a restart. Memory stays bounded however long the disk stalls.
+ *
+ * @author Antonio
+ *
+ */
+public class ScoreJournal implements OutcomeListener {
+	private static final AsyncLog LOG = AsyncLog.getShared();
+	private static final String LOG_FILE = "scores.log";
+	private static final String SNAPSHOT_FILE = "scores.snapshot";
+	private static final int SNAPSHOT_MAGIC = 0x5C0E5A01;
+	private static final byte WON = 1;
+	private static final byte LOST = 2;
+	//sequence number, outcome and length of the player name, the name follows
+	private static final int RECORD_HEADER_SIZE = 8 + 1 + 2;
+	private static final int RECORD_CRC_SIZE = 4;
+	private static final int MAX_PLAYER_BYTES = 0xFFFF;
+	private static final long DEFAULT_COMPACT_BYTES = 16 * 1024 * 1024;
+	private static final int DEFAULT_MAX_BATCH = 4096;
+	private static final int DEFAULT_MAX_PENDING = 64 * 1024;
+	private static final long POLL_MILLIS = 100;
+	private final BlockingQueue<Outcome> pending;
+	//Only touched by the writer thread once it is started
+	private final Map<String, PlayerRecord> durable = new HashMap<>();
+	private final CRC32 crc = new CRC32();
+	private final Path logPath;
+	private final Path snapshotPath;
+	private final long compactBytes;
+	private final int maxBatch;
+	private final LongAdder appended = new LongAdder();
+	private final LongAdder commits = new LongAdder();
+	private final LongAdder compactions = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private ByteBuffer batchBuffer = ByteBuffer.allocate(64 * 1024);
+	private FileChannel log;
+	private long nextSequence = 1;
+	private volatile boolean running = false;
+	private Thread writer;
+
+	/**
+	 * Creates a <code>ScoreJournal</code> in the given directory. The log is compacted
+	 * when it grows past <code>hangman.journal.compactBytes</code> bytes (default 16 MB), and
+	 * at most <code>hangman.journal.maxPending</code> outcomes (default 65536) wait to be written.
+	 * @param directory the directory of the log and snapshot files.
+	 */
+	public ScoreJournal(Path directory) {
+		this(directory, Long.getLong("hangman.journal.compactBytes", DEFAULT_COMPACT_BYTES), DEFAULT_MAX_BATCH,
+				Integer.getInteger("hangman.journal.maxPending", DEFAULT_MAX_PENDING));
+	}
+
+	/**
+	 * Creates a <code>ScoreJournal</code> in the given directory.
+	 * @param directory the directory of the log and snapshot files.
+	 * @param compactBytes the size of the log that triggers a compaction into a snapshot.
+	 * @param maxBatch the maximum number of outcomes forced to disk together.
+	 */
+	public ScoreJournal(Path directory, long compactBytes, int maxBatch) {
+		this(directory, compactBytes, maxBatch, DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * Creates a <code>ScoreJournal</code> in the given directory.
+	 * @param directory the directory of the log and snapshot files.
+	 * @param compactBytes the size of the log that triggers a compaction into a snapshot.
+	 * @param maxBatch the maximum number of outcomes forced to disk together.
+	 * @param maxPending the maximum number of outcomes waiting to be written, more are dropped.
+	 */
+	public ScoreJournal(Path directory, long compactBytes, int maxBatch, int maxPending) {
+		this.pending = new LinkedBlockingQueue<>(maxPending);
+		this.logPath = directory.resolve(LOG_FILE);
+		this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+		this.compactBytes = compactBytes;
+		this.maxBatch = maxBatch;
+	}
+
+	/**
+	 * Replays the journal into the leaderboard and starts the writer thread. From
+	 * then on every outcome recorded on the leaderboard is appended to the journal.
+	 * @param leaderboard the leaderboard to restore and to listen to.
+	 * @return the number of players restored.
+	 * @throws IOException if the journal could not be read or opened.
+	 */
+	public synchronized int open(Leaderboard leaderboard) throws IOException {
+		if(this.running) {
+			throw new IllegalStateException("Score journal already open");
+		}
+		Files.createDirectories(this.logPath.getParent());
+		long snapshotSequence = readSnapshot();
+		this.nextSequence = snapshotSequence + 1;
+		long validLength = replayLog(snapshotSequence);
+		this.log = FileChannel.open(this.logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if(this.log.size() > validLength) {
+			LOG.warn("Cut off a torn record at the end of the score journal");
+			this.log.truncate(validLength);
+			this.log.force(true);
+		}
+		this.log.position(validLength);
+		for(Map.Entry<String, PlayerRecord> player : this.durable.entrySet()) {
+			PlayerRecord record = player.getValue();
+			leaderboard.restore(player.getKey(), record.score, record.wins, record.losses);
+		}
+		this.running = true;
+		this.writer = new Thread(this::writeLoop, "score-journal");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		leaderboard.setOutcomeListener(this);
+		return this.durable.size();
+	}
+
+	/**
+	 * Queues a won game, it is written to disk by the writer thread; or drops it if the queue is full.
+	 */
+	@Override
+	public void gameWon(String player) {
+		enqueue(new Outcome(player, WON));
+	}
+
+	/**
+	 * Queues a lost game, it is written to disk by the writer thread; or drops it if the queue is full.
+	 */
+	@Override
+	public void gameLost(String player) {
+		enqueue(new Outcome(player, LOST));
+	}
+
+	/**
+	 * Writes the queued outcomes, stops the writer thread and closes the log.
+	 * @throws InterruptedException if interrupted while waiting for the writer thread.
+	 * @throws IOException if the log could not be closed.
+	 */
+	public synchronized void close() throws InterruptedException, IOException {
+		if(!this.running) {
+			return;
+		}
+		this.running = false;
+		this.writer.join();
+		this.log.close();
+	}
+
+	/**
+	 * @return the number of outcomes written to disk.
+	 */
+	public long getAppendedCount() {
+		return this.appended.sum();
+	}
+
+	/**
+	 * @return the number of batches forced to disk, one force each.
+	 */
+	public long getCommitCount() {
+		return this.commits.sum();
+	}
+
+	/**
+	 * @return the number of compactions into a snapshot.
+	 */
+	public long getCompactionCount() {
+		return this.compactions.sum();
+	}
+
+	/**
+	 * @return the number of outcomes lost because the log could not be written.
+	 */
+	public long getFailedCount() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * @return the number of outcomes dropped because too many were waiting to be written.
+	 */
+	public long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	/**
+	 * @return the number of outcomes waiting to be written.
+	 */
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+
+	private void enqueue(Outcome outcome) {
+		if(!this.pending.offer(outcome)) {
+			this.dropped.increment();
+		}
+	}
+
+	private void writeLoop() {
+		List<Outcome> batch = new ArrayList<>();
+		while(this.running || !this.pending.isEmpty()) {
+			try {
+				Outcome first = this.pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+				this.pending.drainTo(batch, this.maxBatch - 1);
+				commit(batch);
+				if(this.log.size() >= this.compactBytes) {
+					compact();
+				}
+			} catch(InterruptedException e) {
+				//Keep writing until closed
+			} catch(IOException e) {
+				LOG.error("Failed to write score journal", e);
+			}
+			batch.clear();
+		}
+	}
+
+	private void commit(List<Outcome> batch) throws IOException {
+		long batchStart = this.log.position();
+		long sequence = this.nextSequence;
+		this.batchBuffer.clear();
+		Iterator<Outcome> outcomes = batch.iterator();
+		while(outcomes.hasNext()) {
+			Outcome outcome = outcomes.next();
+			byte[] player = outcome.player.getBytes(StandardCharsets.UTF_8);
+			if(player.length > MAX_PLAYER_BYTES) {
+				this.failed.increment();
+				outcomes.remove();
+				continue;
+			}
+			ensureBatchCapacity(RECORD_HEADER_SIZE + player.length + RECORD_CRC_SIZE);
+			int recordStart = this.batchBuffer.position();
+			this.batchBuffer.putLong(sequence++);
+			this.batchBuffer.put(outcome.outcome);
+			this.batchBuffer.putShort((short) player.length);
+			this.batchBuffer.put(player);
+			this.crc.reset();
+			this.crc.update(this.batchBuffer.array(), recordStart, this.batchBuffer.position() - recordStart);
+			this.batchBuffer.putInt((int) this.crc.getValue());
+		}
+		this.batchBuffer.flip();
+		try {
+			while(this.batchBuffer.hasRemaining()) {
+				this.log.write(this.batchBuffer);
+			}
+			this.log.force(false);
+		} catch(IOException e) {
+			this.failed.add(batch.size());
+			//Do not leave a half written batch in front of the next one
+			this.log.truncate(batchStart);
+			this.log.position(batchStart);
+			throw e;
+		}
+		this.nextSequence = sequence;
+		this.commits.increment();
+		for(Outcome outcome : batch) {
+			apply(outcome.player, outcome.outcome);
+		}
+		this.appended.add(batch.size());
+	}
+
+	private void compact() throws IOException {
+		writeSnapshot(this.nextSequence - 1);
+		this.log.truncate(0);
+		this.log.position(0);
+		this.log.force(true);
+		this.compactions.increment();
+	}
+
+	private void apply(String player, byte outcome) {
+		PlayerRecord record = this.durable.get(player);
+		if(record == null) {
+			record = new PlayerRecord();
+			this.durable.put(player, record);
+		}
+		if(outcome == WON) {
+			record.score++;
+			record.wins++;
+		} else {
+			record.score--;
+			record.losses++;
+		}
+	}
+
+	//Replays the records after the snapshot, returns the length of the valid part of the log
+	private long replayLog(long snapshotSequence) throws IOException {
+		if(!Files.exists(this.logPath)) {
+			return 0;
+		}
+		long validLength = 0;
+		byte[] header = new byte[RECORD_HEADER_SIZE];
+		ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.logPath)))) {
+			while(true) {
+				in.readFully(header);
+				long sequence = headerBuffer.getLong(0);
+				byte outcome = headerBuffer.get(8);
+				byte[] player = new byte[headerBuffer.getShort(9) & 0xFFFF];
+				in.readFully(player);
+				int recordCrc = in.readInt();
+				this.crc.reset();
+				this.crc.update(header, 0, header.length);
+				this.crc.update(player, 0, player.length);
+				if(recordCrc != (int) this.crc.getValue() || (outcome != WON && outcome != LOST)) {
+					break;
+				}
+				if(sequence > snapshotSequence) {
+					apply(new String(player, StandardCharsets.UTF_8), outcome);
+					this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+				}
+				validLength += RECORD_HEADER_SIZE + player.length + RECORD_CRC_SIZE;
+			}
+		} catch(EOFException e) {
+			//End of the log, or a torn last record
+		}
+		return validLength;
+	}
+
+	//Returns the sequence number of the last record included in the snapshot, 0 if there is none
+	private long readSnapshot() throws IOException {
+		if(!Files.exists(this.snapshotPath)) {
+			return 0;
+		}
+		CRC32 snapshotCrc = new CRC32();
+		try(DataInputStream in = new DataInputStream(new CheckedInputStream(
+				new BufferedInputStream(Files.newInputStream(this.snapshotPath)), snapshotCrc))) {
+			if(in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a score snapshot: " + this.snapshotPath);
+			}
+			long lastSequence = in.readLong();
+			int players = in.readInt();
+			for(int i = 0; i < players; i++) {
+				PlayerRecord record = new PlayerRecord();
+				String player = in.readUTF();
+				record.score = in.readLong();
+				record.wins = in.readLong();
+				record.losses = in.readLong();
+				this.durable.put(player, record);
+			}
+			int expectedCrc = (int) snapshotCrc.getValue();
+			if(in.readInt() != expectedCrc) {
+				throw new IOException("Corrupt score snapshot: " + this.snapshotPath);
+			}
+			return lastSequence;
+		}
+	}
+
+	//Written next to the snapshot and moved over it, so a crash leaves the old or the new snapshot
+	private void writeSnapshot(long lastSequence) throws IOException {
+		Path tmpPath = this.snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+		CRC32 snapshotCrc = new CRC32();
+		try(FileOutputStream fileOut = new FileOutputStream(tmpPath.toFile());
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+						new BufferedOutputStream(fileOut), snapshotCrc))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeLong(lastSequence);
+			out.writeInt(this.durable.size());
+			for(Map.Entry<String, PlayerRecord> player : this.durable.entrySet()) {
+				PlayerRecord record = player.getValue();
+				out.writeUTF(player.getKey());
+				out.writeLong(record.score);
+				out.writeLong(record.wins);
+				out.writeLong(record.losses);
+			}
+			out.writeInt((int) snapshotCrc.getValue());
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		Files.move(tmpPath, this.snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory(this.snapshotPath.toAbsolutePath().getParent());
+	}
+
+	//Makes the move durable before the log is truncated; some platforms cannot open or force a directory
+	private static void syncDirectory(Path dir) {
+		try(FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			dirChannel.force(true);
+		} catch (IOException unsupported) {
+			//The move is as durable as the platform makes it
+		}
+	}
+
+	private void ensureBatchCapacity(int recordSize) {
+		if(this.batchBuffer.remaining() < recordSize) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(this.batchBuffer.capacity() * 2,
+					this.batchBuffer.position() + recordSize));
+			this.batchBuffer.flip();
+			larger.put(this.batchBuffer);
+			this.batchBuffer = larger;
+		}
+	}
+
+	private static class Outcome {
+		private final String player;
+		private final byte outcome;
+
+		private Outcome(String player, byte outcome) {
+			this.player = player;
+			this.outcome = outcome;
+		}
+	}
+
+	private static class PlayerRecord {
+		private long score;
+		private long wins;
+		private long losses;
+	}
+}
@@ -1,8 +1,19 @@
 package server.model;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import common.AsyncLog;
+
 /**
- * Handles authentication. For simplicity, credentials are not
- * encrypted and also hard coded.
+ * Handles authentication. The accounts are read from a {@link CredentialStore}, the file
+ * <code>credentials.store</code> in the working directory or the one given with
+ * <code>hangman.credentials</code>. Without such a file only the hard coded account can
+ * log in; a file that cannot be read lets no one log in. All connections share one
+ * <code>JWTHandler</code>, and with it the signing key and the cache of validated tokens.
  * 
  * @author Antonio
  *
@@ -10,38 +21,81 @@ package server.model;
 public class AuthenticationManager {
 	private static final String USERNAME = "JOHNDOE";
 	private static final String PASSWORD = "123456";
-	private final JWTHandler jwt = new JWTHandler();
+	private static final JWTHandler JWT = new JWTHandler();
+	private static final AsyncLog LOG = AsyncLog.getShared();
+	private static final String CREDENTIALS_FILE = "credentials.store";
+	private static final Path CREDENTIALS_PATH = Paths.get(System.getProperty("hangman.credentials",
+			Paths.get(System.getProperty("user.dir"), CREDENTIALS_FILE).toString()));
+	private static final boolean HAS_CREDENTIAL_STORE = Files.exists(CREDENTIALS_PATH);
+	private static final CredentialStore CREDENTIALS = HAS_CREDENTIAL_STORE ? openCredentialStore() : null;
 	
 	/**
 	 * Try to login by checking credentials and generates
 	 * a JSON Web Token with <code>JWTHandler</code> if the credentials are
-	 * correct.
+	 * correct. Usernames are not case sensitive, the token is issued to the
+	 * upper case name, so that every spelling of a name is the same player.
 	 * @param username the username
 	 * @param password the password
-	 * @return the generated JSON Web Token if successful login.
+	 * @return the generated JSON Web Token if successful login, with its subject and expiration time.
 	 * @throws Throwable if invalid credentials.
 	 */
-	public String login(String username, String password) throws Throwable {
+	public VerifiedToken login(String username, String password) throws Throwable {
 		if(!isCorrectCredentials(username, password))
 			throw new Throwable("Invalid credentials");
 		
-		return this.jwt.generateJWT(username);
+		return AuthenticationManager.JWT.generateJWT(canonicalUsername(username));
 	}
 	
 	/**
 	 * Checks if the JSON Web Token is valid or not.
 	 * @param encodedJwt The JSON Web Token
+	 * @return the JSON Web Token with the username it was issued to and its expiration time.
 	 * @throws Throwable if invalid.
 	 */
-	public void validateJwt(String encodedJwt) throws Throwable {
-		if(this.jwt.isValid(encodedJwt))
-			return;
+	public VerifiedToken validateJwt(String encodedJwt) throws Throwable {
+		VerifiedToken token = AuthenticationManager.JWT.verify(encodedJwt);
+		if(token != null)
+			return token;
 		throw new Throwable("Please login...");
 	}
 	
+	/**
+	 * @return the path of the credential store file, which may not exist.
+	 */
+	public static Path getCredentialsPath() {
+		return AuthenticationManager.CREDENTIALS_PATH;
+	}
+	
+	/**
+	 * @return the shared <code>JWTHandler</code>, e.g. to read its cache counters.
+	 */
+	public static JWTHandler getJwtHandler() {
+		return AuthenticationManager.JWT;
+	}
+	
+	private static CredentialStore openCredentialStore() {
+		try {
+			CredentialStore store = CredentialStore.open(CREDENTIALS_PATH);
+			LOG.info("Read " + store.size() + " accounts from " + CREDENTIALS_PATH);
+			return store;
+		} catch (IOException e) {
+			LOG.error("Failed to read the credential store, no one can log in", e);
+			return null;
+		}
+	}
+	
 	private boolean isCorrectCredentials(String username, String password) {
-		boolean correctUsername = username.toUpperCase().equals(AuthenticationManager.USERNAME);
-		boolean correctPassword = password.toUpperCase().equals(AuthenticationManager.PASSWORD);
+		if(AuthenticationManager.HAS_CREDENTIAL_STORE) {
+			CredentialStore store = AuthenticationManager.CREDENTIALS;
+			return store != null && store.verify(username, password);
+		}
+		boolean correctUsername = canonicalUsername(username).equals(AuthenticationManager.USERNAME);
+		boolean correctPassword = password.toUpperCase(Locale.ROOT).equals(AuthenticationManager.PASSWORD);
 		return correctUsername && correctPassword ? true : false;
 	}
+	
+	//The same as the credential store uses for its lookups
+	private static String canonicalUsername(String username) {
+		return username.toUpperCase(Locale.ROOT);
+	}
 }
@@ -0,0 +1,303 @@
+package server.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The accounts of the players in a file, as an open-addressing hash table that is
+ * memory-mapped and read in place. Nothing is deserialised when the file is opened, a
+ * lookup hashes the username and probes the slots from there, so it takes the same time
+ * for a thousand or for millions of accounts. The operating system keeps the used
+ * pages of the file in memory.
+ *
+ * Every slot is 64 bytes: the first 16 bytes of the SHA-256 digest of the username,
+ * which is not case sensitive, a random salt of 16 bytes, and the PBKDF2 hash of the
+ * password with the salt, 32 bytes. An empty slot is all zeroes. The number of PBKDF2
+ * iterations is the same for the whole file and stored in its header.
+ *
+ * The file is written by an offline tool, see <code>server.startup.CredentialStoreBuilder</code>,
+ * and replaced atomically. The server reads it with {@link #open(Path)}.
+ *
+ * @author Antonio
+ *
+ */
+public final class CredentialStore {
+	/**
+	 * The PBKDF2 iterations of a store when no other number is given.
+	 */
+	public static final int DEFAULT_ITERATIONS = 100_000;
+	private static final int MAGIC = 0xC4ED0001;
+	private static final int HEADER_SIZE = 64;
+	private static final int SLOT_SIZE = 64;
+	private static final int DIGEST_SIZE = 16;
+	private static final int SALT_SIZE = 16;
+	private static final int HASH_SIZE = 32;
+	private static final int SALT_OFFSET = DIGEST_SIZE;
+	private static final int HASH_OFFSET = SALT_OFFSET + SALT_SIZE;
+	//A mapping is at most 2 GB, the slots are mapped in segments of 1 GB
+	private static final int SLOTS_PER_SEGMENT_SHIFT = 24;
+	private static final long SLOTS_PER_SEGMENT = 1L << SLOTS_PER_SEGMENT_SHIFT;
+	private static final double MAX_LOAD_FACTOR = 0.75;
+	private static final String KEY_ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final ThreadLocal<SecretKeyFactory> KEY_FACTORIES = ThreadLocal.withInitial(() -> {
+		try {
+			return SecretKeyFactory.getInstance(KEY_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(KEY_ALGORITHM + " is not supported by this JDK", e);
+		}
+	});
+	private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported by this JDK", e);
+		}
+	});
+	private final MappedByteBuffer[] segments;
+	private final long slotMask;
+	private final int users;
+	private final int iterations;
+
+	private CredentialStore(MappedByteBuffer[] segments, long slotCount, int users, int iterations) {
+		this.segments = segments;
+		this.slotMask = slotCount - 1;
+		this.users = users;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Opens a credential store file by mapping it into memory.
+	 * @param file the file
+	 * @return the store.
+	 * @throws IOException if the file could not be read or is not a credential store.
+	 */
+	public static CredentialStore open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header) >= 0);
+			header.flip();
+			if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException("Not a credential store: " + file);
+			}
+			int iterations = header.getInt();
+			long slotCount = header.getLong();
+			int users = header.getInt();
+			if(Long.bitCount(slotCount) != 1 || iterations <= 0 || users < 0 || users > slotCount
+					|| channel.size() != HEADER_SIZE + slotCount * SLOT_SIZE) {
+				throw new IOException("Corrupt credential store: " + file);
+			}
+			return new CredentialStore(map(channel, FileChannel.MapMode.READ_ONLY, slotCount), slotCount, users, iterations);
+		}
+	}
+
+	/**
+	 * Writes a credential store file with the accounts. Every password gets its own random
+	 * salt, and the passwords are hashed in parallel. The file is replaced atomically.
+	 * @param file the file
+	 * @param usernames the usernames, not case sensitive.
+	 * @param passwords the password of every username.
+	 * @param iterations the PBKDF2 iterations of every password hash.
+	 * @return the store, opened from the written file.
+	 * @throws IOException if the file could not be written.
+	 * @throws IllegalArgumentException if a username is given twice.
+	 */
+	public static CredentialStore build(Path file, String[] usernames, String[] passwords, int iterations) throws IOException {
+		if(usernames.length != passwords.length) {
+			throw new IllegalArgumentException("One password is needed per username");
+		}
+		long slotCount = Long.highestOneBit(Math.max(1, (long) Math.ceil(usernames.length / MAX_LOAD_FACTOR)) - 1) << 1;
+		slotCount = Math.max(2, slotCount);
+		Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(iterations).putLong(slotCount).putInt(usernames.length);
+			header.clear();
+			channel.write(header, 0);
+			//Sizes the file, the slots are zeroes until written
+			channel.write(ByteBuffer.allocate(1), HEADER_SIZE + slotCount * SLOT_SIZE - 1);
+			CredentialStore store = new CredentialStore(map(channel, FileChannel.MapMode.READ_WRITE, slotCount),
+					slotCount, usernames.length, iterations);
+			SecureRandom random = new SecureRandom();
+			IntStream.range(0, usernames.length).parallel().forEach(i -> {
+				byte[] digest = digestOf(usernames[i]);
+				byte[] salt = new byte[SALT_SIZE];
+				synchronized(random) {
+					random.nextBytes(salt);
+				}
+				byte[] hash = hash(passwords[i].toCharArray(), salt, iterations);
+				synchronized(store) {
+					store.insert(digest, salt, hash, usernames[i]);
+				}
+			});
+			for(MappedByteBuffer segment : store.segments) {
+				segment.force();
+			}
+		} catch(IOException | RuntimeException e) {
+			Files.deleteIfExists(tmpFile);
+			throw e;
+		}
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return open(file);
+	}
+
+	/**
+	 * Checks the password of a user. An unknown user takes as long as a wrong password,
+	 * so the time does not tell which usernames exist.
+	 * @param username the username, not case sensitive.
+	 * @param password the password
+	 * @return <code>true</code> if the user exists and the password is correct.
+	 */
+	public boolean verify(String username, String password) {
+		long slot = find(digestOf(username));
+		byte[] salt = new byte[SALT_SIZE];
+		byte[] expected = new byte[HASH_SIZE];
+		//The password of an unknown user is hashed too, with a salt of zeroes
+		if(slot >= 0) {
+			read(slot, SALT_OFFSET, salt);
+			read(slot, HASH_OFFSET, expected);
+		}
+		byte[] actual = hash(password.toCharArray(), salt, this.iterations);
+		return MessageDigest.isEqual(expected, actual) && slot >= 0;
+	}
+
+	/**
+	 * @param username the username, not case sensitive.
+	 * @return <code>true</code> if the store has an account for the username.
+	 */
+	public boolean contains(String username) {
+		return find(digestOf(username)) >= 0;
+	}
+
+	/**
+	 * @return the number of accounts.
+	 */
+	public int size() {
+		return this.users;
+	}
+
+	/**
+	 * @return the PBKDF2 iterations of the password hashes.
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * @return the size of the file in bytes.
+	 */
+	public long fileBytes() {
+		return HEADER_SIZE + (this.slotMask + 1) * SLOT_SIZE;
+	}
+
+	//Returns the slot of the digest, or -1 if the digest is not in the table
+	private long find(byte[] digest) {
+		long high = longAt(digest, 0);
+		long low = longAt(digest, 8);
+		for(long slot = high & this.slotMask; ; slot = (slot + 1) & this.slotMask) {
+			MappedByteBuffer segment = this.segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+			int offset = slotOffset(slot);
+			long slotHigh = segment.getLong(offset);
+			long slotLow = segment.getLong(offset + 8);
+			if(slotHigh == high && slotLow == low) {
+				return slot;
+			}
+			if(slotHigh == 0 && slotLow == 0) {
+				return -1;
+			}
+		}
+	}
+
+	private void insert(byte[] digest, byte[] salt, byte[] hash, String username) {
+		if(find(digest) >= 0) {
+			throw new IllegalArgumentException("The username " + username + " is given twice");
+		}
+		long slot = longAt(digest, 0) & this.slotMask;
+		while(!isEmpty(slot)) {
+			slot = (slot + 1) & this.slotMask;
+		}
+		write(slot, 0, digest);
+		write(slot, SALT_OFFSET, salt);
+		write(slot, HASH_OFFSET, hash);
+	}
+
+	private boolean isEmpty(long slot) {
+		MappedByteBuffer segment = this.segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+		int offset = slotOffset(slot);
+		return segment.getLong(offset) == 0 && segment.getLong(offset + 8) == 0;
+	}
+
+	private void read(long slot, int field, byte[] bytes) {
+		MappedByteBuffer segment = this.segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+		int offset = slotOffset(slot) + field;
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = segment.get(offset + i);
+		}
+	}
+
+	private void write(long slot, int field, byte[] bytes) {
+		MappedByteBuffer segment = this.segments[(int) (slot >>> SLOTS_PER_SEGMENT_SHIFT)];
+		int offset = slotOffset(slot) + field;
+		for(int i = 0; i < bytes.length; i++) {
+			segment.put(offset + i, bytes[i]);
+		}
+	}
+
+	private static long longAt(byte[] bytes, int offset) {
+		long value = 0;
+		for(int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (bytes[i] & 0xFF);
+		}
+		return value;
+	}
+
+	private static int slotOffset(long slot) {
+		return (int) (slot & (SLOTS_PER_SEGMENT - 1)) * SLOT_SIZE;
+	}
+
+	private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long slotCount) throws IOException {
+		int segmentCount = (int) ((slotCount + SLOTS_PER_SEGMENT - 1) >>> SLOTS_PER_SEGMENT_SHIFT);
+		MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+		for(int i = 0; i < segmentCount; i++) {
+			long firstSlot = (long) i << SLOTS_PER_SEGMENT_SHIFT;
+			long slots = Math.min(SLOTS_PER_SEGMENT, slotCount - firstSlot);
+			segments[i] = channel.map(mode, HEADER_SIZE + firstSlot * SLOT_SIZE, slots * SLOT_SIZE);
+		}
+		return segments;
+	}
+
+	private static byte[] digestOf(String username) {
+		MessageDigest digest = DIGESTS.get();
+		byte[] full = digest.digest(username.toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+		byte[] truncated = new byte[DIGEST_SIZE];
+		System.arraycopy(full, 0, truncated, 0, DIGEST_SIZE);
+		return truncated;
+	}
+
+	private static byte[] hash(char[] password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_SIZE * 8);
+		try {
+			return KEY_FACTORIES.get().generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Failed to hash a password", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package server.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The empirical difficulty of every word of a {@link WordIndex}: how often a game
+ * with the word is won, and how many of its attempts are left when the game ends.
+ * The statistics are computed offline by simulating games, see
+ * <code>server.startup.DifficultySimulator</code>.
+ *
+ * The index is stored in a compact file next to the word file, two bytes per word,
+ * together with the checksum of the word index it was computed for. A file that was
+ * computed for other words is rejected when read, so a changed word file never gets
+ * the difficulties of the old words.
+ *
+ * @author Antonio
+ *
+ */
+public final class DifficultyIndex {
+	private static final int MAGIC = 0xD1FF0001;
+	private static final String FILE_EXTENSION = ".difficulty";
+	private static final double WIN_RATE_WEIGHT = 0.75;
+	//Unsigned bytes, 255 means 1.0
+	private final byte[] winRates;
+	private final byte[] attemptsLeftRatios;
+
+	private DifficultyIndex(byte[] winRates, byte[] attemptsLeftRatios) {
+		this.winRates = winRates;
+		this.attemptsLeftRatios = attemptsLeftRatios;
+	}
+
+	/**
+	 * Creates a <code>DifficultyIndex</code> from simulated statistics.
+	 * @param winRates the share of won games for every word, 0 to 1.
+	 * @param attemptsLeftRatios the mean share of the attempts left when a game with the word
+	 * ended, 0 to 1.
+	 * @return the index.
+	 */
+	public static DifficultyIndex of(double[] winRates, double[] attemptsLeftRatios) {
+		if(winRates.length != attemptsLeftRatios.length) {
+			throw new IllegalArgumentException("One statistic of each kind is needed per word");
+		}
+		byte[] packedWinRates = new byte[winRates.length];
+		byte[] packedAttemptsLeft = new byte[winRates.length];
+		for(int i = 0; i < winRates.length; i++) {
+			packedWinRates[i] = pack(winRates[i]);
+			packedAttemptsLeft[i] = pack(attemptsLeftRatios[i]);
+		}
+		return new DifficultyIndex(packedWinRates, packedAttemptsLeft);
+	}
+
+	/**
+	 * @param wordFile a word file
+	 * @return the path of the difficulty index of the word file.
+	 */
+	public static Path pathFor(Path wordFile) {
+		String name = wordFile.getFileName().toString();
+		int extension = name.lastIndexOf('.');
+		return wordFile.resolveSibling((extension > 0 ? name.substring(0, extension) : name) + FILE_EXTENSION);
+	}
+
+	/**
+	 * Reads a difficulty index file.
+	 * @param file the file
+	 * @param words the word index the difficulties should belong to.
+	 * @return the index.
+	 * @throws IOException if the file could not be read, is corrupt, or was computed for other words.
+	 */
+	public static DifficultyIndex read(Path file, WordIndex words) throws IOException {
+		CRC32 crc = new CRC32();
+		try(DataInputStream in = new DataInputStream(new CheckedInputStream(
+				new BufferedInputStream(Files.newInputStream(file)), crc))) {
+			if(in.readInt() != MAGIC) {
+				throw new IOException("Not a difficulty index: " + file);
+			}
+			int size = in.readInt();
+			long checksum = in.readLong();
+			if(size != words.size() || checksum != words.checksum()) {
+				throw new IOException("Difficulty index " + file + " was computed for other words");
+			}
+			byte[] winRates = new byte[size];
+			byte[] attemptsLeftRatios = new byte[size];
+			in.readFully(winRates);
+			in.readFully(attemptsLeftRatios);
+			int expectedCrc = (int) crc.getValue();
+			if(in.readInt() != expectedCrc) {
+				throw new IOException("Corrupt difficulty index: " + file);
+			}
+			return new DifficultyIndex(winRates, attemptsLeftRatios);
+		}
+	}
+
+	/**
+	 * Writes the index to a file. The file is replaced atomically.
+	 * @param file the file
+	 * @param words the word index the difficulties belong to.
+	 * @throws IOException if the file could not be written.
+	 */
+	public void write(Path file, WordIndex words) throws IOException {
+		if(words.size() != size()) {
+			throw new IllegalArgumentException("The index has " + size() + " words, not " + words.size());
+		}
+		Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		CRC32 crc = new CRC32();
+		try(DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tmpFile)), crc))) {
+			out.writeInt(MAGIC);
+			out.writeInt(size());
+			out.writeLong(words.checksum());
+			out.write(this.winRates);
+			out.write(this.attemptsLeftRatios);
+			out.writeInt((int) crc.getValue());
+		}
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the number of words.
+	 */
+	public int size() {
+		return this.winRates.length;
+	}
+
+	/**
+	 * @param index the index of the word
+	 * @return the share of simulated games with the word that were won, 0 to 1.
+	 */
+	public double winRate(int index) {
+		return unpack(this.winRates[index]);
+	}
+
+	/**
+	 * @param index the index of the word
+	 * @return the mean share of the attempts that were left when a simulated game with the
+	 * word ended, 0 to 1.
+	 */
+	public double attemptsLeftRatio(int index) {
+		return unpack(this.attemptsLeftRatios[index]);
+	}
+
+	/**
+	 * @param index the index of the word
+	 * @return the difficulty of the word, from 0 (always won without a miss) to 1 (never won).
+	 * Mostly the share of lost games, the attempts left tell apart words with the same win rate.
+	 */
+	public double difficulty(int index) {
+		return 1 - (WIN_RATE_WEIGHT * winRate(index) + (1 - WIN_RATE_WEIGHT) * attemptsLeftRatio(index));
+	}
+
+	private static byte pack(double ratio) {
+		return (byte) Math.round(Math.max(0, Math.min(1, ratio)) * 255);
+	}
+
+	private static double unpack(byte packed) {
+		return (packed & 0xFF) / 255.0;
+	}
+}
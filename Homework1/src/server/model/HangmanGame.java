@@ -3,41 +3,73 @@ package server.model;
 import java.io.IOException;
 import java.util.Arrays;
 
+import common.AsyncLog;
 import common.Constants;
 //import java.util.HashSet;
 
 /**
- * Hangman game logic.
+ * Hangman game logic. A game belongs to a player session (see {@link SessionStore})
+ * and may be used by several connections of the same player, so the game is synchronized.
+ * Won and lost games of a player are recorded on the shared {@link Leaderboard}, and the
+ * score a game reports is the total score of the player there, so it survives a restart of
+ * the server or the eviction of the session.
  * @author Antonio
  *
  */
 public class HangmanGame {
-	private final WordReader wordReader = new WordReader();
+	private static final AsyncLog LOG = AsyncLog.getShared();
+	private final WordReader wordReader = WordReader.getShared();
+	private final Leaderboard leaderboard = Leaderboard.getShared();
+	private final String player;
 	//private HashSet<Character> guessedLetters = new HashSet<>();
 	private char[] currentGuessWord;
+	private final StringBuilder missedLetters = new StringBuilder();
 	private char[] word;
 	private int totalAttempts;
 	private int attemptsLeft;
+	//The score of a game without a known player, a player's score is kept by the leaderboard
 	private int score = 0;
 	private boolean decrementNextScore = false;
 
+	/**
+	 * Creates a game that is not played by a known player, its score is not
+	 * recorded on the leaderboard.
+	 */
+	public HangmanGame() {
+		this(null);
+	}
+
+	/**
+	 * Creates a game of the given player.
+	 * @param player the player whose won and lost games are recorded on the leaderboard.
+	 */
+	public HangmanGame(String player) {
+		this.player = player;
+	}
+
 	/**
 	 * Start a a game by setting up the game and checking if previous
 	 * round was won. If it was not won, the score decreases.
 	 * 
 	 * @return the game data to be sent to the client.
 	 */
-	public String startGame() {
+	public synchronized String startGame() {
+		return startGame((Tier) null);
+	}
+
+	/**
+	 * Start a game with a random word of the given tier, see {@link WordTiers}.
+	 * Otherwise the same as {@link #startGame()}.
+	 * 
+	 * @param tier the tier of the word; or <code>null</code> for any word.
+	 * @return the game data to be sent to the client.
+	 */
+	public synchronized String startGame(Tier tier) {
 		try {
-			setUpGame();
-			if(!this.decrementNextScore) {
-				this.decrementNextScore = true;
-			} else {
-				this.score--;
-			}
-			return gameToClient();
+			WordTiers tiers = this.wordReader.getTiers();
+			return startGame(tiers.getIndex().wordChars(tiers.randomIndex(tier)));
 		} catch(IOException e) {
-			e.printStackTrace();
+			LOG.error("Failed to read the word file", e);
 			StringBuilder sb = new StringBuilder();
 			sb.append("Failed to read word file in server side");
 			appendGameStatus(sb);
@@ -45,6 +77,23 @@ public class HangmanGame {
 		}
 	}
 
+	/**
+	 * Start a game with the given word instead of a random word, e.g. to simulate games.
+	 * Otherwise the same as {@link #startGame()}.
+	 * 
+	 * @param word the upper case word to guess.
+	 * @return the game data to be sent to the client.
+	 */
+	public synchronized String startGame(char[] word) {
+		setUpGame(word);
+		if(!this.decrementNextScore) {
+			this.decrementNextScore = true;
+		} else {
+			recordLoss();
+		}
+		return gameToClient();
+	}
+
 	/**
 	 * Makes a guess, either by guessing a letter (single char) or for the
 	 * whole word. If the guess is correct, the remaining attempts remain the
@@ -61,7 +110,7 @@ public class HangmanGame {
 	 * attempts and the total score. If the game is over it will return the correct word with the
 	 * updated status.
 	 */
-	public String guess(String message) {
+	public synchronized String guess(String message) {
 		if(this.attemptsLeft == 0) {
 			StringBuilder sb = new StringBuilder();
 			sb.append("Start a new game! ");
@@ -85,7 +134,7 @@ public class HangmanGame {
 		if(!successGuess) {
 			this.attemptsLeft--;
 			if(gameOver()) {
-				this.score--;
+				recordLoss();
 				this.decrementNextScore = false;
 				return gameOverToClient();
 			}
@@ -93,19 +142,65 @@ public class HangmanGame {
 		
 		if(gameIsWon()) {
 			this.attemptsLeft = 0;
-			this.score++;
+			recordWin();
 			this.decrementNextScore = false;	
 		}
 		
 		return gameToClient();
 	}
 
-	private void setUpGame() throws IOException {
-		this.word = this.wordReader.randomWord().toCharArray();
+	/**
+	 * Suggests the best next letter for the current game, see {@link HintSolver}.
+	 * Asking for a hint does not cost an attempt.
+	 * 
+	 * @return the hint; or <code>null</code> if no game is in progress.
+	 * @throws IOException if the word file could not be read.
+	 */
+	public synchronized HintSolver.Hint hint() throws IOException {
+		if(this.attemptsLeft == 0) {
+			return null;
+		}
+		return this.wordReader.getSolver().bestLetter(this.currentGuessWord, this.missedLetters);
+	}
+
+	/**
+	 * @return the word with the letters that are not guessed yet hidden.
+	 */
+	public synchronized char[] getMaskedWord() {
+		if(this.currentGuessWord == null) {
+			return new char[0];
+		}
+		return this.currentGuessWord.clone();
+	}
+
+	/**
+	 * @return the letters that were guessed but are not in the word.
+	 */
+	public synchronized String getMissedLetters() {
+		return this.missedLetters.toString();
+	}
+
+	/**
+	 * @return the remaining attempts, 0 when the game is over.
+	 */
+	public synchronized int getAttemptsLeft() {
+		return this.attemptsLeft;
+	}
+
+	/**
+	 * @return <code>true</code> if the whole word has been guessed.
+	 */
+	public synchronized boolean isWon() {
+		return this.word != null && gameIsWon();
+	}
+
+	private void setUpGame(char[] word) {
+		this.word = word;
 		this.totalAttempts = this.word.length;
 		this.attemptsLeft = this.totalAttempts;
 		this.currentGuessWord = new char[this.word.length];
-		Arrays.fill(this.currentGuessWord, '_');
+		Arrays.fill(this.currentGuessWord, HintSolver.HIDDEN);
+		this.missedLetters.setLength(0);
 	}
 
 	private boolean guessLetter(char letter) {
@@ -117,6 +212,9 @@ public class HangmanGame {
 				successGuess = true;
 			}
 		}
+		if(!successGuess && this.missedLetters.indexOf(String.valueOf(letter)) < 0) {
+			this.missedLetters.append(letter);
+		}
 		return successGuess;
 	}
 
@@ -129,6 +227,26 @@ public class HangmanGame {
 		}
 	}
 	
+	private void recordWin() {
+		if(this.player == null) {
+			this.score++;
+		} else {
+			this.leaderboard.recordWin(this.player);
+		}
+	}
+
+	private void recordLoss() {
+		if(this.player == null) {
+			this.score--;
+		} else {
+			this.leaderboard.recordLoss(this.player);
+		}
+	}
+
+	private long totalScore() {
+		return this.player == null ? this.score : this.leaderboard.scoreOf(this.player);
+	}
+
 	private boolean gameIsWon() {
 		return Arrays.equals(this.currentGuessWord, this.word);
 	}
@@ -165,6 +283,6 @@ public class HangmanGame {
 	}
 	
 	private void appendGameStatus(StringBuilder sb) {
-		sb.append(Constants.MSG_BODY_DELIMITER+this.attemptsLeft+Constants.MSG_BODY_DELIMITER+this.score);
+		sb.append(Constants.MSG_BODY_DELIMITER+this.attemptsLeft+Constants.MSG_BODY_DELIMITER+totalScore());
 	}
 }
@@ -0,0 +1,413 @@
+package server.model;
+
+import java.util.Arrays;
+
+/**
+ * Finds the best next letter to guess in a game of hangman, given the masked word
+ * and the letters that missed, over the words of a {@link WordIndex}.
+ *
+ * The candidates are the words of the index that are consistent with the game:
+ * same length, the revealed letters at their positions, none of the revealed letters
+ * at a hidden position (a guessed letter reveals all its occurrences) and none of
+ * the missed letters. To find them quickly the words are grouped by length, and every
+ * group has one bitset per position and letter, with a bit set for every word that has
+ * the letter at the position, plus one bitset per letter for the words containing it.
+ * The candidate set of a game is then a few ANDs over <code>long[]</code>s.
+ *
+ * The best letter is the one whose guess tells the most about the word, i.e. has the
+ * highest entropy over the candidates. For a small candidate set the entropy is exact:
+ * the candidates are split by the positions the letter would reveal. The candidates
+ * without the letter are one part, the positions are only found for the candidates
+ * with it, one letter at a time into an array that is reused for every letter. For a large set
+ * only whether the letter is in the word is counted, which is a cheap popcount per letter.
+ *
+ * @author Antonio
+ *
+ */
+public final class HintSolver {
+	/**
+	 * The char of a letter that is not revealed yet in a masked word.
+	 */
+	public static final char HIDDEN = '_';
+	private static final int EXACT_ENTROPY_MAX_CANDIDATES = 2048;
+	private static final int MAX_EXACT_WORD_LENGTH = 64;
+	private static final double LOG_2 = Math.log(2);
+	private final WordIndex index;
+	private final short[] letterIds = new short[Character.MAX_VALUE + 1];
+	private final char[] letters;
+	private final LengthGroup[] groups;
+
+	private HintSolver(WordIndex index, char[] letters, LengthGroup[] groups) {
+		this.index = index;
+		this.letters = letters;
+		this.groups = groups;
+		Arrays.fill(this.letterIds, (short) -1);
+		for(int i = 0; i < letters.length; i++) {
+			this.letterIds[letters[i]] = (short) i;
+		}
+	}
+
+	/**
+	 * Builds the bitsets of a word index.
+	 * @param index the word index
+	 * @return a <code>HintSolver</code> over the words of the index.
+	 */
+	public static HintSolver build(WordIndex index) {
+		short[] letterIds = new short[Character.MAX_VALUE + 1];
+		Arrays.fill(letterIds, (short) -1);
+		char[] letters = new char[64];
+		int letterCount = 0;
+		int[] wordsOfLength = new int[1];
+		for(int i = 0; i < index.size(); i++) {
+			char[] word = index.wordChars(i);
+			if(word.length >= wordsOfLength.length) {
+				wordsOfLength = Arrays.copyOf(wordsOfLength, word.length + 1);
+			}
+			wordsOfLength[word.length]++;
+			for(char letter : word) {
+				if(letterIds[letter] < 0) {
+					if(letterCount == letters.length) {
+						letters = Arrays.copyOf(letters, letters.length * 2);
+					}
+					letterIds[letter] = (short) letterCount;
+					letters[letterCount++] = letter;
+				}
+			}
+		}
+		LengthGroup[] groups = new LengthGroup[wordsOfLength.length];
+		for(int length = 1; length < groups.length; length++) {
+			if(wordsOfLength[length] > 0) {
+				groups[length] = new LengthGroup(length, wordsOfLength[length], letterCount);
+			}
+		}
+		for(int i = 0; i < index.size(); i++) {
+			char[] word = index.wordChars(i);
+			if(word.length > 0) {
+				groups[word.length].add(word, letterIds);
+			}
+		}
+		return new HintSolver(index, Arrays.copyOf(letters, letterCount), groups);
+	}
+
+	/**
+	 * @return the word index this solver was built over.
+	 */
+	public WordIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Finds the best next letter.
+	 * @param pattern the masked word, {@link #HIDDEN} where the letter is not revealed.
+	 * @param misses the letters that were guessed but are not in the word.
+	 * @return the best letter and the number of candidate words.
+	 */
+	public Hint bestLetter(char[] pattern, CharSequence misses) {
+		LengthGroup group = groupOf(pattern.length);
+		boolean[] guessed = new boolean[this.letters.length];
+		long[] candidates = group == null ? null : candidates(group, pattern, misses, guessed);
+		int candidateCount = candidates == null ? 0 : bitCount(candidates);
+		if(candidateCount == 0) {
+			return new Hint(HIDDEN, 0, 0);
+		}
+		boolean exact = candidateCount <= EXACT_ENTROPY_MAX_CANDIDATES && pattern.length <= MAX_EXACT_WORD_LENGTH
+				&& group.wordLetters != null;
+		int[] hidden = exact ? hiddenPositions(pattern) : null;
+		long[] masks = exact ? new long[candidateCount] : null;
+		int bestLetter = -1;
+		double bestEntropy = -1;
+		int bestHits = 0;
+		for(int letter = 0; letter < this.letters.length; letter++) {
+			if(guessed[letter] || group.contains[letter] == null) {
+				continue;
+			}
+			int hits = exact ? revealMasks(group, candidates, hidden, letter, masks)
+					: andCount(candidates, group.contains[letter]);
+			if(hits == 0) {
+				continue;
+			}
+			double entropy = exact ? revealEntropy(masks, hits, candidateCount)
+					: binaryEntropy((double) hits / candidateCount);
+			if(entropy > bestEntropy || (entropy == bestEntropy && hits > bestHits)) {
+				bestLetter = letter;
+				bestEntropy = entropy;
+				bestHits = hits;
+			}
+		}
+		if(bestLetter < 0) {
+			return new Hint(HIDDEN, candidateCount, 0);
+		}
+		return new Hint(this.letters[bestLetter], candidateCount, bestEntropy);
+	}
+
+	/**
+	 * Counts the words that are consistent with a game.
+	 * @param pattern the masked word, {@link #HIDDEN} where the letter is not revealed.
+	 * @param misses the letters that were guessed but are not in the word.
+	 * @return the number of candidate words.
+	 */
+	public int countCandidates(char[] pattern, CharSequence misses) {
+		LengthGroup group = groupOf(pattern.length);
+		if(group == null) {
+			return 0;
+		}
+		long[] candidates = candidates(group, pattern, misses, new boolean[this.letters.length]);
+		return candidates == null ? 0 : bitCount(candidates);
+	}
+
+	/**
+	 * @return the number of bytes used by the bitsets.
+	 */
+	public long memoryBytes() {
+		long bytes = this.letterIds.length * 2L + this.letters.length * 2L;
+		for(LengthGroup group : this.groups) {
+			if(group != null) {
+				bytes += group.memoryBytes();
+			}
+		}
+		return bytes;
+	}
+
+	private LengthGroup groupOf(int length) {
+		if(length <= 0 || length >= this.groups.length) {
+			return null;
+		}
+		return this.groups[length];
+	}
+
+	//Marks the revealed and missed letters as guessed, returns null if no word can match
+	private long[] candidates(LengthGroup group, char[] pattern, CharSequence misses, boolean[] guessed) {
+		long[] candidates = new long[group.longs];
+		Arrays.fill(candidates, -1L);
+		if(group.size % 64 != 0) {
+			candidates[candidates.length - 1] = (1L << (group.size % 64)) - 1;
+		}
+		for(int position = 0; position < pattern.length; position++) {
+			if(pattern[position] == HIDDEN) {
+				continue;
+			}
+			int letter = this.letterIds[pattern[position]];
+			if(letter < 0 || !and(candidates, group.at(position, letter))) {
+				return null;
+			}
+			guessed[letter] = true;
+		}
+		for(int position = 0; position < pattern.length; position++) {
+			if(pattern[position] != HIDDEN) {
+				continue;
+			}
+			for(int letter = 0; letter < guessed.length; letter++) {
+				if(guessed[letter]) {
+					andNot(candidates, group.at(position, letter));
+				}
+			}
+		}
+		for(int i = 0; i < misses.length(); i++) {
+			int letter = this.letterIds[Character.toUpperCase(misses.charAt(i))];
+			if(letter >= 0) {
+				guessed[letter] = true;
+				andNot(candidates, group.contains[letter]);
+			}
+		}
+		return candidates;
+	}
+
+	private static int[] hiddenPositions(char[] pattern) {
+		int[] hidden = new int[pattern.length];
+		int count = 0;
+		for(int position = 0; position < pattern.length; position++) {
+			if(pattern[position] == HIDDEN) {
+				hidden[count++] = position;
+			}
+		}
+		return Arrays.copyOf(hidden, count);
+	}
+
+	//For every candidate with the letter, the hidden positions that guessing it would reveal; returns how many have it
+	private static int revealMasks(LengthGroup group, long[] candidates, int[] hidden, int letter, long[] masks) {
+		long[] contains = group.contains[letter];
+		byte[] wordLetters = group.wordLetters;
+		int count = 0;
+		for(int i = 0; i < candidates.length; i++) {
+			long bits = candidates[i] & contains[i];
+			while(bits != 0) {
+				int first = ((i << 6) + Long.numberOfTrailingZeros(bits)) * group.length;
+				bits &= bits - 1;
+				long mask = 0;
+				for(int position : hidden) {
+					if((wordLetters[first + position] & 0xFF) == letter) {
+						mask |= 1L << position;
+					}
+				}
+				masks[count++] = mask;
+			}
+		}
+		return count;
+	}
+
+	//Splits the candidates by the positions the letter would reveal, sorts the masks of the candidates with it
+	private static double revealEntropy(long[] masks, int hits, int candidateCount) {
+		Arrays.sort(masks, 0, hits);
+		//The letter is at a hidden position of every candidate that has it, so the rest is the only empty mask
+		int missing = candidateCount - hits;
+		double sum = missing > 1 ? missing * Math.log(missing) : 0;
+		int run = 1;
+		for(int i = 1; i <= hits; i++) {
+			if(i < hits && masks[i] == masks[i - 1]) {
+				run++;
+			} else {
+				sum += run * Math.log(run);
+				run = 1;
+			}
+		}
+		return (Math.log(candidateCount) - sum / candidateCount) / LOG_2;
+	}
+
+	private static double binaryEntropy(double p) {
+		if(p <= 0 || p >= 1) {
+			return 0;
+		}
+		return -(p * Math.log(p) + (1 - p) * Math.log(1 - p)) / LOG_2;
+	}
+
+	//A missing bitset is empty, so the result is empty too
+	private static boolean and(long[] candidates, long[] bits) {
+		if(bits == null) {
+			return false;
+		}
+		for(int i = 0; i < candidates.length; i++) {
+			candidates[i] &= bits[i];
+		}
+		return true;
+	}
+
+	private static void andNot(long[] candidates, long[] bits) {
+		if(bits == null) {
+			return;
+		}
+		for(int i = 0; i < candidates.length; i++) {
+			candidates[i] &= ~bits[i];
+		}
+	}
+
+	private static int andCount(long[] candidates, long[] bits) {
+		int count = 0;
+		for(int i = 0; i < candidates.length; i++) {
+			count += Long.bitCount(candidates[i] & bits[i]);
+		}
+		return count;
+	}
+
+	private static int bitCount(long[] bits) {
+		int count = 0;
+		for(long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * A suggested letter.
+	 */
+	public static final class Hint {
+		private final char letter;
+		private final int candidates;
+		private final double entropy;
+
+		private Hint(char letter, int candidates, double entropy) {
+			this.letter = letter;
+			this.candidates = candidates;
+			this.entropy = entropy;
+		}
+
+		/**
+		 * @return <code>true</code> if there is a letter left to suggest.
+		 */
+		public boolean hasLetter() {
+			return this.letter != HIDDEN;
+		}
+
+		/**
+		 * @return the suggested letter; or {@link HintSolver#HIDDEN} if there is none.
+		 */
+		public char getLetter() {
+			return this.letter;
+		}
+
+		/**
+		 * @return the number of words that are consistent with the game.
+		 */
+		public int getCandidates() {
+			return this.candidates;
+		}
+
+		/**
+		 * @return the expected information of guessing the letter, in bits.
+		 */
+		public double getEntropy() {
+			return this.entropy;
+		}
+	}
+
+	//The words of one length, numbered 0 to size - 1 in index order
+	private static final class LengthGroup {
+		private final int length;
+		private final int size;
+		private final int longs;
+		private final int letterCount;
+		//[position * letterCount + letter], null where no word has the letter at the position
+		private final long[][] at;
+		//[letter], null where no word has the letter
+		private final long[][] contains;
+		//[word * length + position], the letters of the words; null if there are too many letters for a byte
+		private final byte[] wordLetters;
+		private int added = 0;
+
+		private LengthGroup(int length, int size, int letterCount) {
+			this.length = length;
+			this.size = size;
+			this.longs = (size + 63) >>> 6;
+			this.letterCount = letterCount;
+			this.at = new long[length * letterCount][];
+			this.contains = new long[letterCount][];
+			this.wordLetters = letterCount <= 256 ? new byte[size * length] : null;
+		}
+
+		private void add(char[] word, short[] letterIds) {
+			int wordIndex = this.added++;
+			int slot = wordIndex >>> 6;
+			long bit = 1L << wordIndex;
+			for(int position = 0; position < this.length; position++) {
+				int letter = letterIds[word[position]];
+				int atIndex = position * this.letterCount + letter;
+				if(this.at[atIndex] == null) {
+					this.at[atIndex] = new long[this.longs];
+				}
+				this.at[atIndex][slot] |= bit;
+				if(this.contains[letter] == null) {
+					this.contains[letter] = new long[this.longs];
+				}
+				this.contains[letter][slot] |= bit;
+				if(this.wordLetters != null) {
+					this.wordLetters[wordIndex * this.length + position] = (byte) letter;
+				}
+			}
+		}
+
+		private long[] at(int position, int letter) {
+			return this.at[position * this.letterCount + letter];
+		}
+
+		private long memoryBytes() {
+			long bitsets = 0;
+			for(long[] bits : this.at) {
+				bitsets += bits == null ? 0 : 1;
+			}
+			for(long[] bits : this.contains) {
+				bitsets += bits == null ? 0 : 1;
+			}
+			long letterBytes = this.wordLetters == null ? 0 : this.wordLetters.length;
+			return bitsets * (16 + 8L * this.longs) + 8L * (this.at.length + this.contains.length) + letterBytes;
+		}
+	}
+}
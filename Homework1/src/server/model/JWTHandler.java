@@ -10,24 +10,34 @@ import io.jsonwebtoken.security.Keys;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+
+import common.AsyncLog;
 
 /**
  * This class creates, encodes, decodes, and validates JSON Web Tokens.
+ * Validated tokens are remembered in a {@link VerifiedTokenCache} until they
+ * expire, so only the first validation of a token verifies its signature.
  * 
  * @author Antonio
  *
  */
 public class JWTHandler {
+	private static final AsyncLog LOG = AsyncLog.getShared();
 	private final Key SIGNED_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
 	private final SignatureAlgorithm SIGN_ALGORITHM = SignatureAlgorithm.HS256;
 	private static final long TTL_MILLIS = 600000; //TEN MIN
+	private static final int MAX_CACHED_TOKENS = 100000;
+	private static final long REJECTED_TTL_MILLIS = 60000;
+	private final VerifiedTokenCache cache = new VerifiedTokenCache(MAX_CACHED_TOKENS, REJECTED_TTL_MILLIS);
+	private final LongAdder failures = new LongAdder();
 	
 	/**
 	 * Generates a simple JSON Web Token
 	 * @param username the username to put in the JWT for information
-	 * @return the signed and encoded JWT
+	 * @return the signed and encoded JWT, with its subject and expiration time
 	 */
-	public String generateJWT(String username) {
+	public VerifiedToken generateJWT(String username) {
 		long nowMillis = System.currentTimeMillis();
 		Date now = new Date(nowMillis);
 					
@@ -36,28 +46,78 @@ public class JWTHandler {
 				.setIssuedAt(now)
 				.signWith(SIGNED_KEY, SIGN_ALGORITHM);
 		
-	    long expMillis = nowMillis + JWTHandler.TTL_MILLIS;
+	    //The expiration is encoded in whole seconds, like it is decoded again
+	    long expMillis = (nowMillis + JWTHandler.TTL_MILLIS) / 1000 * 1000;
 	    Date exp = new Date(expMillis);
 	    builder.setExpiration(exp);
 	    
-	    return builder.compact();
+	    return new VerifiedToken(builder.compact(), username, expMillis);
 	}
 	
 	/**
-	 * Decodes and checks if the encoded JSON Web Token is valid.
+	 * Checks if the encoded JSON Web Token is valid. A token that has been
+	 * validated before is answered from the cache without decoding it.
 	 * @param encodedJwt The encoded JWT
 	 * @return true if valid; false otherwise
 	 */
 	public boolean isValid(String encodedJwt) {
+		return verify(encodedJwt) != null;
+	}
+	
+	/**
+	 * Validates the encoded JSON Web Token and returns it with its subject, i.e the
+	 * username given to {@link #generateJWT(String)}, and its expiration time. A token
+	 * that has been validated before is answered from the cache without decoding it.
+	 * @param encodedJwt The encoded JWT
+	 * @return the verified token if it is valid; <code>null</code> otherwise.
+	 */
+	public VerifiedToken verify(String encodedJwt) {
+		long nowMillis = System.currentTimeMillis();
+		VerifiedToken cached = this.cache.lookup(encodedJwt, nowMillis);
+		if(cached != null) {
+			if(cached == VerifiedTokenCache.REJECTED) {
+				this.failures.increment();
+				return null;
+			}
+			return cached;
+		}
 		try {
-			   Jws<Claims> jws = decodeJwt(encodedJwt); 
-			   return isExpDateValid(jws.getBody().getExpiration());
-		   } catch(JwtException exc) {
-			   exc.printStackTrace();
-			   return false;
-		   }	
+			Claims claims = decodeJwt(encodedJwt).getBody();
+			long expMillis = claims.getExpiration().getTime();
+			if(nowMillis < expMillis && claims.getId() != null) {
+				VerifiedToken token = new VerifiedToken(encodedJwt, claims.getId(), expMillis);
+				this.cache.putVerified(encodedJwt, token);
+				return token;
+			}
+		} catch(JwtException | IllegalArgumentException exc) {
+			//Invalid token, remembered below
+			LOG.log(AsyncLog.Level.DEBUG, "Rejected a JSON Web Token", exc);
+		}
+		this.cache.putRejected(encodedJwt, nowMillis);
+		this.failures.increment();
+		return null;
 	}
 	
+	/**
+	 * @return the number of validations of invalid or expired tokens.
+	 */
+	public long getValidationFailures() {
+		return this.failures.sum();
+	}
+	
+	/**
+	 * @return the number of validations answered by the cache, including rejected tokens.
+	 */
+	public long getCacheHits() {
+		return this.cache.getHits() + this.cache.getRejectedHits();
+	}
+	
+	/**
+	 * @return the number of validations that had to decode and verify the token.
+	 */
+	public long getCacheMisses() {
+		return this.cache.getMisses();
+	}
 	
 	//This will throw an exception if the jwt is invalid
 	private Jws<Claims> decodeJwt(String jwt) {
@@ -68,14 +128,4 @@ public class JWTHandler {
 	    return jws;
 	}
 	
-	private static boolean isExpDateValid(Date exp) {
-		long nowMillis = System.currentTimeMillis();
-		Date now = new Date(nowMillis);
-		if(now.before(exp)) {
-			return true;
-		} else {
-			return false;
-		}
-	}
-	
 }
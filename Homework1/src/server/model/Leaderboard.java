@@ -0,0 +1,208 @@
+package server.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A server wide leaderboard of the total score of every player. Every won game
+ * adds one to the score of the player and every lost or abandoned game subtracts one,
+ * like the score of a <code>HangmanGame</code>, but the leaderboard keeps counting
+ * across games, sessions and connections.
+ *
+ * The leaderboard takes no lock. The current score of a player is an immutable
+ * {@link Entry} behind an <code>AtomicReference</code> that is replaced with a
+ * compare-and-set, and all current entries are also kept in a concurrent skip list
+ * sorted by score. So an update only touches the player's own reference and a
+ * few skip list nodes, and the top players are read from the head of the skip list
+ * without sorting all players. Totals are kept in <code>LongAdder</code>s, which
+ * stripe the counter over cells so that many threads can count without contention.
+ *
+ * An {@link OutcomeListener} can be set to be told about every won and lost game,
+ * e.g. to make the scores durable. Scores that are restored with {@link #restore} are
+ * not passed to the listener.
+ *
+ * @author Antonio
+ *
+ */
+public class Leaderboard {
+	private static final Leaderboard SHARED = new Leaderboard();
+	private final Map<String, AtomicReference<Entry>> players = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+	private final LongAdder wins = new LongAdder();
+	private final LongAdder losses = new LongAdder();
+	private volatile OutcomeListener outcomeListener = null;
+
+	/**
+	 * @return the <code>Leaderboard</code> shared by all games of the server.
+	 */
+	public static Leaderboard getShared() {
+		return Leaderboard.SHARED;
+	}
+
+	/**
+	 * Records a won game, the score of the player is increased by one.
+	 * @param player the player
+	 */
+	public void recordWin(String player) {
+		this.wins.increment();
+		addToScore(player, 1);
+		OutcomeListener listener = this.outcomeListener;
+		if(listener != null) {
+			listener.gameWon(player);
+		}
+	}
+
+	/**
+	 * Records a lost or abandoned game, the score of the player is decreased by one.
+	 * @param player the player
+	 */
+	public void recordLoss(String player) {
+		this.losses.increment();
+		addToScore(player, -1);
+		OutcomeListener listener = this.outcomeListener;
+		if(listener != null) {
+			listener.gameLost(player);
+		}
+	}
+
+	/**
+	 * Restores the score and games of a player, e.g. from a journal when the server starts.
+	 * @param player the player
+	 * @param score the score to add to the player
+	 * @param wonGames the number of won games to add to the totals
+	 * @param lostGames the number of lost games to add to the totals
+	 */
+	public void restore(String player, long score, long wonGames, long lostGames) {
+		this.wins.add(wonGames);
+		this.losses.add(lostGames);
+		addToScore(player, score);
+	}
+
+	/**
+	 * Sets the listener that is told about every won and lost game.
+	 * @param outcomeListener the listener; or <code>null</code> for none.
+	 */
+	public void setOutcomeListener(OutcomeListener outcomeListener) {
+		this.outcomeListener = outcomeListener;
+	}
+
+	/**
+	 * Adds to the score of a player.
+	 * @param player the player
+	 * @param delta the points to add, may be negative.
+	 */
+	public void addToScore(String player, long delta) {
+		AtomicReference<Entry> current = this.players.computeIfAbsent(player,
+				newPlayer -> new AtomicReference<>(new Entry(newPlayer, 0, 0)));
+		Entry previous;
+		Entry updated;
+		do {
+			previous = current.get();
+			updated = new Entry(player, previous.score + delta, previous.version + 1);
+		} while(!current.compareAndSet(previous, updated));
+		this.ranking.add(updated);
+		//A concurrent update may have replaced our entry before it was added, then it is stale
+		if(current.get() != updated) {
+			this.ranking.remove(updated);
+		}
+		this.ranking.remove(previous);
+	}
+
+	/**
+	 * @param player the player
+	 * @return the total score of the player, 0 if the player has not played.
+	 */
+	public long scoreOf(String player) {
+		AtomicReference<Entry> current = this.players.get(player);
+		return current == null ? 0 : current.get().score;
+	}
+
+	/**
+	 * Returns the players with the highest scores, highest first. Players with the same
+	 * score are ordered by name.
+	 * @param count the maximum number of players to return.
+	 * @return the top players.
+	 */
+	public List<Entry> topPlayers(int count) {
+		List<Entry> top = new ArrayList<>(Math.min(count, 64));
+		for(Entry entry : this.ranking) {
+			if(top.size() >= count) {
+				break;
+			}
+			//Skips entries that are being replaced by a concurrent update
+			if(this.players.get(entry.player).get() == entry) {
+				top.add(entry);
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * @return the number of players on the leaderboard.
+	 */
+	public int playerCount() {
+		return this.players.size();
+	}
+
+	/**
+	 * @return the number of games won by all players.
+	 */
+	public long getWins() {
+		return this.wins.sum();
+	}
+
+	/**
+	 * @return the number of games lost or abandoned by all players.
+	 */
+	public long getLosses() {
+		return this.losses.sum();
+	}
+
+	/**
+	 * The score of a player at one point in time. Ordered by score, highest first, then by
+	 * player name and then by version, so entries of the same player never compare equal.
+	 */
+	public static final class Entry implements Comparable<Entry> {
+		private final String player;
+		private final long score;
+		private final long version;
+
+		private Entry(String player, long score, long version) {
+			this.player = player;
+			this.score = score;
+			this.version = version;
+		}
+
+		/**
+		 * @return the player
+		 */
+		public String getPlayer() {
+			return this.player;
+		}
+
+		/**
+		 * @return the total score of the player
+		 */
+		public long getScore() {
+			return this.score;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byScore = Long.compare(other.score, this.score);
+			if(byScore != 0) {
+				return byScore;
+			}
+			int byPlayer = this.player.compareTo(other.player);
+			if(byPlayer != 0) {
+				return byPlayer;
+			}
+			return Long.compare(other.version, this.version);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package server.model;
+
+/**
+ * Listens for finished games recorded on the {@link Leaderboard}.
+ * @author Antonio
+ *
+ */
+public interface OutcomeListener {
+	/**
+	 * Called when a player has won a game.
+	 * @param player the player
+	 */
+	public void gameWon(String player);
+
+	/**
+	 * Called when a player has lost or abandoned a game.
+	 * @param player the player
+	 */
+	public void gameLost(String player);
+}
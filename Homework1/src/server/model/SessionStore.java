@@ -0,0 +1,188 @@
+package server.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A server wide store of game sessions, keyed by the player, i.e the subject of
+ * the JSON Web Token. When a client reconnects and presents a token for the same
+ * player, it resumes the same <code>HangmanGame</code> instead of starting over.
+ *
+ * The store is bounded both in time and size. A session that has not been used
+ * for <code>ttlMillis</code> expires, and when the store is full the least recently
+ * used session is evicted. To avoid one global lock the store is split into segments,
+ * each an access ordered LRU map with its own lock and an equal share of the capacity.
+ *
+ * @author Antonio
+ *
+ */
+public class SessionStore {
+	private static final int SEGMENTS = 16;
+	private static final int DEFAULT_MAX_SESSIONS = 100000;
+	private static final long DEFAULT_TTL_SECONDS = 600;
+	private static final SessionStore SHARED = new SessionStore(
+			Integer.getInteger("hangman.sessions.max", DEFAULT_MAX_SESSIONS),
+			Long.getLong("hangman.sessions.ttlSeconds", DEFAULT_TTL_SECONDS) * 1000);
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long ttlMillis;
+	private final LongAdder resumed = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+
+	/**
+	 * Creates a <code>SessionStore</code>.
+	 * @param maxSessions the maximum number of sessions kept.
+	 * @param ttlMillis how long an unused session is kept, in milliseconds.
+	 */
+	public SessionStore(int maxSessions, long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		int perSegment = Math.max(1, maxSessions / SEGMENTS);
+		for(int i = 0; i < SEGMENTS; i++) {
+			this.segments[i] = new Segment(perSegment);
+		}
+	}
+
+	/**
+	 * @return the <code>SessionStore</code> shared by all connections. Its size and time to
+	 * live are given by the system properties <code>hangman.sessions.max</code> and
+	 * <code>hangman.sessions.ttlSeconds</code>.
+	 */
+	public static SessionStore getShared() {
+		return SessionStore.SHARED;
+	}
+
+	/**
+	 * Returns the game of the player, creating a new session if the player has none.
+	 * @param player the player
+	 * @return the game of the player.
+	 */
+	public HangmanGame gameOf(String player) {
+		return gameOf(player, HangmanGame::new);
+	}
+
+	/**
+	 * Returns the game of the player, creating a new session if the player has none.
+	 * @param player the player
+	 * @param newGame creates the game of a new session.
+	 * @return the game of the player.
+	 */
+	public HangmanGame gameOf(String player, Function<String, HangmanGame> newGame) {
+		Segment segment = segmentOf(player);
+		long nowMillis = System.currentTimeMillis();
+		synchronized(segment) {
+			segment.expireOlderThan(nowMillis - this.ttlMillis);
+			Session session = segment.get(player);
+			if(session != null) {
+				session.lastAccessMillis = nowMillis;
+				this.resumed.increment();
+				return session.game;
+			}
+			session = new Session(newGame.apply(player), nowMillis);
+			segment.put(player, session);
+			this.created.increment();
+			return session.game;
+		}
+	}
+
+	/**
+	 * Removes the session of the player.
+	 * @param player the player
+	 */
+	public void remove(String player) {
+		Segment segment = segmentOf(player);
+		synchronized(segment) {
+			segment.remove(player);
+		}
+	}
+
+	/**
+	 * @return the number of sessions currently kept.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : this.segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of times a player got an existing session back.
+	 */
+	public long getResumedCount() {
+		return this.resumed.sum();
+	}
+
+	/**
+	 * @return the number of sessions created.
+	 */
+	public long getCreatedCount() {
+		return this.created.sum();
+	}
+
+	/**
+	 * @return the number of sessions evicted because the store was full.
+	 */
+	public long getEvictedCount() {
+		return this.evicted.sum();
+	}
+
+	/**
+	 * @return the number of sessions dropped because they were unused for too long.
+	 */
+	public long getExpiredCount() {
+		return this.expired.sum();
+	}
+
+	private Segment segmentOf(String player) {
+		int hash = player.hashCode();
+		return this.segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+	}
+
+	private static class Session {
+		private final HangmanGame game;
+		private long lastAccessMillis;
+
+		private Session(HangmanGame game, long lastAccessMillis) {
+			this.game = game;
+			this.lastAccessMillis = lastAccessMillis;
+		}
+	}
+
+	//Guarded by its own monitor; iteration order is least recently used first
+	private class Segment extends LinkedHashMap<String, Session> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		private Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		private void expireOlderThan(long oldestAllowedMillis) {
+			Iterator<Session> iterator = values().iterator();
+			while(iterator.hasNext()) {
+				if(iterator.next().lastAccessMillis >= oldestAllowedMillis) {
+					return;
+				}
+				iterator.remove();
+				expired.increment();
+			}
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+			if(size() > this.capacity) {
+				evicted.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package server.model;
+
+/**
+ * How hard the word of a game is, see {@link WordTiers}.
+ * @author Antonio
+ *
+ */
+public enum Tier {
+	/**
+	 * The easiest third of the words.
+	 */
+	EASY,
+
+	/**
+	 * The middle third of the words.
+	 */
+	MEDIUM,
+
+	/**
+	 * The hardest third of the words.
+	 */
+	HARD
+}
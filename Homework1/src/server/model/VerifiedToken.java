@@ -0,0 +1,42 @@
+package server.model;
+
+/**
+ * A JSON Web Token that was signed or validated by the {@link JWTHandler}, with the
+ * subject and expiration time it was signed with, so that they are not decoded or
+ * looked up again.
+ *
+ * @author Antonio
+ *
+ */
+public class VerifiedToken {
+	private final String encodedJwt;
+	private final String subject;
+	private final long expMillis;
+
+	VerifiedToken(String encodedJwt, String subject, long expMillis) {
+		this.encodedJwt = encodedJwt;
+		this.subject = subject;
+		this.expMillis = expMillis;
+	}
+
+	/**
+	 * @return the encoded JWT.
+	 */
+	public String getEncodedJwt() {
+		return this.encodedJwt;
+	}
+
+	/**
+	 * @return the subject of the token, i.e the username.
+	 */
+	public String getSubject() {
+		return this.subject;
+	}
+
+	/**
+	 * @return the expiration time of the token in milliseconds.
+	 */
+	public long getExpMillis() {
+		return this.expMillis;
+	}
+}
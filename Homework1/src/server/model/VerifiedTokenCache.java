@@ -0,0 +1,221 @@
+package server.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent cache of JSON Web Tokens that have already been validated
+ * by the {@link JWTHandler}. Verified tokens are kept until their expiration time so
+ * that repeated requests with the same token skip the signature verification. Tokens
+ * that failed validation are kept for a short while in a negative cache so that
+ * garbage tokens are rejected without parsing them again.
+ *
+ * Both caches are split in segments, each an access ordered <code>LinkedHashMap</code>
+ * under its own lock that drops its least recently used entry when it is full, so an
+ * insert into a full cache costs the same as any other. A rejected token can be anything
+ * a client sent, so the negative cache keeps a fixed-size digest of it instead of the token.
+ *
+ * @author Antonio
+ *
+ */
+class VerifiedTokenCache {
+	/**
+	 * Returned by {@link #lookup} for a token that is known to be invalid.
+	 */
+	static final VerifiedToken REJECTED = new VerifiedToken(null, null, 0);
+	private static final int SEGMENTS = 16;
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(VerifiedTokenCache::newDigest);
+	private final SegmentedLruMap<String, VerifiedToken> verified;
+	private final SegmentedLruMap<TokenDigest, Long> rejected;
+	private final long rejectedTtlMillis;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder rejectedHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a <code>VerifiedTokenCache</code>.
+	 * @param maxEntries the maximum number of entries in each of the verified and negative cache.
+	 * @param rejectedTtlMillis how long a rejected token is remembered.
+	 */
+	VerifiedTokenCache(int maxEntries, long rejectedTtlMillis) {
+		this.verified = new SegmentedLruMap<>(maxEntries);
+		this.rejected = new SegmentedLruMap<>(maxEntries);
+		this.rejectedTtlMillis = rejectedTtlMillis;
+	}
+
+	/**
+	 * Looks up the token in the cache.
+	 * @param encodedJwt the encoded JWT
+	 * @param nowMillis the current time in milliseconds
+	 * @return the verified token if it is not expired, {@link #REJECTED} if the token
+	 * is known to be invalid; or <code>null</code> if the token is not cached.
+	 */
+	VerifiedToken lookup(String encodedJwt, long nowMillis) {
+		VerifiedToken token = this.verified.get(encodedJwt);
+		if(token != null) {
+			if(nowMillis < token.getExpMillis()) {
+				this.hits.increment();
+				return token;
+			}
+			//Expired, it is rejected from now on without a full validation
+			this.verified.remove(encodedJwt);
+			putRejected(encodedJwt, nowMillis);
+			this.rejectedHits.increment();
+			return REJECTED;
+		}
+		TokenDigest digest = TokenDigest.of(encodedJwt);
+		Long rejectedUntil = this.rejected.get(digest);
+		if(rejectedUntil != null) {
+			if(nowMillis < rejectedUntil) {
+				this.rejectedHits.increment();
+				return REJECTED;
+			}
+			this.rejected.remove(digest);
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Remembers a token with a verified signature.
+	 * @param encodedJwt the encoded JWT
+	 * @param token the token with its subject and expiration time
+	 */
+	void putVerified(String encodedJwt, VerifiedToken token) {
+		this.verified.put(encodedJwt, token);
+	}
+
+	/**
+	 * Remembers a token that failed validation.
+	 * @param encodedJwt the encoded JWT
+	 * @param nowMillis the current time in milliseconds
+	 */
+	void putRejected(String encodedJwt, long nowMillis) {
+		this.rejected.put(TokenDigest.of(encodedJwt), nowMillis + this.rejectedTtlMillis);
+	}
+
+	/**
+	 * @return the number of lookups answered by a verified token.
+	 */
+	long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups answered by the negative cache, or by an expired verified token.
+	 */
+	long getRejectedHits() {
+		return this.rejectedHits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that required a full validation.
+	 */
+	long getMisses() {
+		return this.misses.sum();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(DIGEST_ALGORITHM + " is required by every JRE", e);
+		}
+	}
+
+	//A map of at most about maxEntries entries in segments, each evicts its least recently used entry
+	private static final class SegmentedLruMap<K, V> {
+		private final List<Map<K, V>> segments = new ArrayList<>(SEGMENTS);
+
+		private SegmentedLruMap(int maxEntries) {
+			int segmentEntries = Math.max(1, maxEntries / SEGMENTS);
+			for(int i = 0; i < SEGMENTS; i++) {
+				this.segments.add(new LruSegment<>(segmentEntries));
+			}
+		}
+
+		private V get(K key) {
+			Map<K, V> segment = segmentOf(key);
+			synchronized(segment) {
+				return segment.get(key);
+			}
+		}
+
+		private void put(K key, V value) {
+			Map<K, V> segment = segmentOf(key);
+			synchronized(segment) {
+				segment.put(key, value);
+			}
+		}
+
+		private void remove(K key) {
+			Map<K, V> segment = segmentOf(key);
+			synchronized(segment) {
+				segment.remove(key);
+			}
+		}
+
+		private Map<K, V> segmentOf(K key) {
+			int hash = key.hashCode();
+			return this.segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+		}
+	}
+
+	private static final class LruSegment<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int maxEntries;
+
+		private LruSegment(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > this.maxEntries;
+		}
+	}
+
+	//The first 128 bits of the SHA-256 of a token
+	private static final class TokenDigest {
+		private final long high;
+		private final long low;
+
+		private TokenDigest(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		private static TokenDigest of(String encodedJwt) {
+			byte[] digest = DIGEST.get().digest(encodedJwt.getBytes(StandardCharsets.UTF_8));
+			long high = 0;
+			long low = 0;
+			for(int i = 0; i < Long.BYTES; i++) {
+				high = (high << 8) | (digest[i] & 0xff);
+				low = (low << 8) | (digest[Long.BYTES + i] & 0xff);
+			}
+			return new TokenDigest(high, low);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof TokenDigest)) {
+				return false;
+			}
+			TokenDigest digest = (TokenDigest) other;
+			return this.high == digest.high && this.low == digest.low;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) this.high;
+		}
+	}
+}
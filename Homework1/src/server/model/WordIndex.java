@@ -0,0 +1,215 @@
+package server.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable index of upper case words. One <code>WordIndex</code> is shared by
+ * all games, see {@link WordReader}.
+ *
+ * To keep very large dictionaries small, the words are not kept as separate
+ * <code>String</code>s. All words are UTF-8 encoded back to back in one byte array
+ * (the arena) and an offset table points out where every word starts, so a word is
+ * found in O(1) by its index and decoded straight into the <code>char[]</code> of a game.
+ *
+ * @author Antonio
+ *
+ */
+public final class WordIndex {
+	private static final int STRING_OVERHEAD_BYTES = 56;
+	private final byte[] arena;
+	private final int[] offsets;
+
+	private WordIndex(byte[] arena, int[] offsets) {
+		this.arena = arena;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * @return the number of words in the index.
+	 */
+	public int size() {
+		return this.offsets.length - 1;
+	}
+
+	/**
+	 * @return the index of a random word.
+	 */
+	public int randomIndex() {
+		return ThreadLocalRandom.current().nextInt(size());
+	}
+
+	/**
+	 * @param index the index of the word
+	 * @return the number of chars in the word at the given index.
+	 */
+	public int wordLength(int index) {
+		int length = 0;
+		for(int i = this.offsets[index]; i < this.offsets[index + 1]; i++) {
+			int b = this.arena[i] & 0xFF;
+			if(b < 0x80 || b >= 0xC0) {
+				length += b >= 0xF0 ? 2 : 1;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Decodes the word at the given index into a new <code>char[]</code>.
+	 * @param index the index of the word
+	 * @return the chars of the word.
+	 */
+	public char[] wordChars(int index) {
+		char[] word = new char[wordLength(index)];
+		decode(this.arena, this.offsets[index], this.offsets[index + 1], word);
+		return word;
+	}
+
+	/**
+	 * @param index the index of the word
+	 * @return the word at the given index as a <code>String</code>.
+	 */
+	public String wordAt(int index) {
+		return new String(wordChars(index));
+	}
+
+	/**
+	 * @return a random word of the index.
+	 */
+	public String randomWord() {
+		return wordAt(randomIndex());
+	}
+
+	/**
+	 * @return a checksum of the words and their order, to tell if data computed for a
+	 * <code>WordIndex</code> belongs to this one.
+	 */
+	public long checksum() {
+		CRC32 crc = new CRC32();
+		crc.update(this.arena, 0, this.arena.length);
+		for(int offset : this.offsets) {
+			crc.update(offset >>> 24);
+			crc.update(offset >>> 16);
+			crc.update(offset >>> 8);
+			crc.update(offset);
+		}
+		return (crc.getValue() << 32) | size();
+	}
+
+	/**
+	 * @return the number of bytes used by the arena and the offset table.
+	 */
+	public long memoryBytes() {
+		return this.arena.length + 4L * this.offsets.length;
+	}
+
+	/**
+	 * @return a short report of the memory used by this index compared to a list of
+	 * <code>String</code>s with the same words.
+	 */
+	public String memoryReport() {
+		long stringListBytes = 0;
+		for(int i = 0; i < size(); i++) {
+			stringListBytes += STRING_OVERHEAD_BYTES + wordLength(i);
+		}
+		return String.format("%d words in %d KB (%.1f bytes/word), about %d KB as a list of Strings",
+				size(), memoryBytes() / 1024, (double) memoryBytes() / Math.max(1, size()), stringListBytes / 1024);
+	}
+
+	//Decodes UTF-8 from the arena, the bytes were encoded by the Builder so they are well formed
+	private static void decode(byte[] bytes, int from, int to, char[] dest) {
+		int position = 0;
+		int i = from;
+		while(i < to) {
+			int b = bytes[i++] & 0xFF;
+			if(b < 0x80) {
+				dest[position++] = (char) b;
+			} else if(b < 0xE0) {
+				dest[position++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+			} else if(b < 0xF0) {
+				dest[position++] = (char) (((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+			} else {
+				int codePoint = ((b & 0x07) << 18) | ((bytes[i++] & 0x3F) << 12)
+						| ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F);
+				dest[position++] = Character.highSurrogate(codePoint);
+				dest[position++] = Character.lowSurrogate(codePoint);
+			}
+		}
+	}
+
+	/**
+	 * Builds a <code>WordIndex</code> one word at a time. Words are upper cased and
+	 * appended to a growing arena without creating a <code>String</code> per word.
+	 */
+	static class Builder {
+		private byte[] arena = new byte[1 << 16];
+		private int[] offsets = new int[1 << 12];
+		private int arenaSize = 0;
+		private int wordCount = 0;
+
+		/**
+		 * Adds a word, given as chars, in upper case. Blank words are ignored.
+		 * @param chars the buffer holding the word.
+		 * @param from the index of the first char.
+		 * @param to the index after the last char.
+		 */
+		void addWord(char[] chars, int from, int to) {
+			while(from < to && Character.isWhitespace(chars[from])) from++;
+			while(to > from && Character.isWhitespace(chars[to - 1])) to--;
+			if(from == to) {
+				return;
+			}
+			ensureArenaCapacity(4 * (to - from));
+			for(int i = from; i < to; i++) {
+				int codePoint = Character.codePointAt(chars, i, to);
+				if(Character.isSupplementaryCodePoint(codePoint)) {
+					i++;
+				}
+				putCodePoint(Character.toUpperCase(codePoint));
+			}
+			if(this.wordCount + 2 > this.offsets.length) {
+				this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+			}
+			this.offsets[++this.wordCount] = this.arenaSize;
+		}
+
+		/**
+		 * @return the number of words added so far.
+		 */
+		int size() {
+			return this.wordCount;
+		}
+
+		/**
+		 * @return an immutable <code>WordIndex</code> of the added words, trimmed to size.
+		 */
+		WordIndex build() {
+			return new WordIndex(Arrays.copyOf(this.arena, this.arenaSize), Arrays.copyOf(this.offsets, this.wordCount + 1));
+		}
+
+		private void putCodePoint(int codePoint) {
+			if(codePoint < 0x80) {
+				this.arena[this.arenaSize++] = (byte) codePoint;
+			} else if(codePoint < 0x800) {
+				this.arena[this.arenaSize++] = (byte) (0xC0 | (codePoint >> 6));
+				this.arena[this.arenaSize++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if(codePoint < 0x10000) {
+				this.arena[this.arenaSize++] = (byte) (0xE0 | (codePoint >> 12));
+				this.arena[this.arenaSize++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				this.arena[this.arenaSize++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else {
+				this.arena[this.arenaSize++] = (byte) (0xF0 | (codePoint >> 18));
+				this.arena[this.arenaSize++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				this.arena[this.arenaSize++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				this.arena[this.arenaSize++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+		}
+
+		private void ensureArenaCapacity(int extra) {
+			if(this.arenaSize + extra > this.arena.length) {
+				this.arena = Arrays.copyOf(this.arena, Math.max(this.arena.length * 2, this.arenaSize + extra));
+			}
+		}
+	}
+}
@@ -1,44 +1,251 @@
 package server.model;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Random;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import common.AsyncLog;
 
 /**
  * Reads words from a specific word text file for the hangman game.
  * See {@link HangmanGame}.
  * 
+ * The words are read once into a packed {@link WordIndex} that is shared by all games.
+ * When the word file changes, a new index is read and swapped in atomically;
+ * games that are picking a word meanwhile keep using the old index. The word file
+ * can be changed with the system property <code>hangman.words</code>.
+ * 
+ * The {@link HintSolver} of the index is built the first time a hint is asked for,
+ * and from then on rebuilt together with the index when the word file changes.
+ * If a {@link DifficultyIndex} for the words lies next to the word file, it is read too.
+ * The words are also split into {@link WordTiers} when they are read.
+ * 
  * @author Antonio
  *
  */
 public class WordReader {
-	private static final String WORD_FILE_PATH = "\\src\\server\\resources\\words.txt";
-	private static final String WORD_FILE_TOTAL_PATH = System.getProperty("user.dir") + WordReader.WORD_FILE_PATH;
-	private ArrayList<String> wordLines;
+	private static final AsyncLog LOG = AsyncLog.getShared();
+	private static final Path WORD_FILE_TOTAL_PATH = Paths.get(System.getProperty("hangman.words",
+			Paths.get(System.getProperty("user.dir"), "src", "server", "resources", "words.txt").toString()));
+	private static final WordReader SHARED = new WordReader(WORD_FILE_TOTAL_PATH);
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final int MAX_WORD_LENGTH = 256;
+	private final Path path;
+	private volatile WordIndex index;
+	private volatile HintSolver solver;
+	private volatile DifficultyIndex difficulty;
+	private volatile WordTiers tiers;
+	private volatile FileTime loadedModifiedTime;
+	private ScheduledExecutorService watcher;
+	
+	/**
+	 * Creates a <code>WordReader</code> for the given word file. The file is not
+	 * read until it is needed or {@link #load()} is called.
+	 * @param path the path to the word file.
+	 */
+	public WordReader(Path path) {
+		this.path = path;
+	}
+	
+	/**
+	 * @return the <code>WordReader</code> shared by all games.
+	 */
+	public static WordReader getShared() {
+		return WordReader.SHARED;
+	}
+	
+	/**
+	 * @return the path of the word file.
+	 */
+	public Path getPath() {
+		return this.path;
+	}
 	
 	/**
-	 * Open, reads, and stores the words and picks a random word.
-	 * If called again and the words are already read it will not open
-	 * the file again.
+	 * Picks a random word. If the words are not read yet, they are read first.
 	 * @return a random word from the word text file.
 	 * @throws IOException if some error with I/O occurs.
 	 */
 	public String randomWord() throws IOException {
-		Random rand = new Random();
-		if(this.wordLines != null) {
-			return this.wordLines.get(rand.nextInt(this.wordLines.size()));
-		}
-		this.wordLines = new ArrayList<String>();
-		File file = new File(WordReader.WORD_FILE_TOTAL_PATH);
-		BufferedReader reader = new BufferedReader(new FileReader(file));
-		String word;
-		while((word = reader.readLine()) != null) {
-			this.wordLines.add(word.toUpperCase());
-		}
-		reader.close();
-		return this.wordLines.get(rand.nextInt(this.wordLines.size()));
+		return getIndex().randomWord();
+	}
+	
+	/**
+	 * @return the current word index; read from the file if not read yet.
+	 * @throws IOException if some error with I/O occurs.
+	 */
+	public WordIndex getIndex() throws IOException {
+		WordIndex current = this.index;
+		if(current != null) {
+			return current;
+		}
+		return load();
+	}
+	
+	/**
+	 * @return the difficulty tiers of the current words; read from the file if not read yet.
+	 * @throws IOException if some error with I/O occurs.
+	 */
+	public WordTiers getTiers() throws IOException {
+		WordTiers current = this.tiers;
+		if(current != null) {
+			return current;
+		}
+		load();
+		return this.tiers;
+	}
+	
+	/**
+	 * @return the difficulty index of the current words; or <code>null</code> if there
+	 * is none for them.
+	 */
+	public DifficultyIndex getDifficulty() {
+		return this.difficulty;
+	}
+	
+	/**
+	 * @return the hint solver of the current word index; built if not built yet.
+	 * @throws IOException if some error with I/O occurs.
+	 */
+	public HintSolver getSolver() throws IOException {
+		HintSolver current = this.solver;
+		if(current != null && current.getIndex() == this.index) {
+			return current;
+		}
+		synchronized(this) {
+			WordIndex words = load();
+			if(this.solver == null || this.solver.getIndex() != words) {
+				this.solver = HintSolver.build(words);
+			}
+			return this.solver;
+		}
+	}
+	
+	/**
+	 * Reads the word file unless it has already been read.
+	 * @return the word index.
+	 * @throws IOException if some error with I/O occurs.
+	 */
+	public synchronized WordIndex load() throws IOException {
+		if(this.index == null) {
+			reload();
+		}
+		return this.index;
+	}
+	
+	/**
+	 * Reads the word file again if it was modified since it was last read.
+	 * @return <code>true</code> if a new index was swapped in.
+	 * @throws IOException if some error with I/O occurs.
+	 */
+	public synchronized boolean reloadIfModified() throws IOException {
+		FileTime modifiedTime = Files.getLastModifiedTime(this.path);
+		if(this.index != null && modifiedTime.equals(this.loadedModifiedTime)) {
+			return false;
+		}
+		reload();
+		return true;
+	}
+	
+	/**
+	 * Starts a background thread that checks the word file for changes.
+	 * @param intervalSeconds seconds between the checks.
+	 */
+	public synchronized void startWatching(long intervalSeconds) {
+		if(this.watcher != null) {
+			return;
+		}
+		this.watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "word-file-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.watcher.scheduleWithFixedDelay(() -> {
+			try {
+				if(reloadIfModified()) {
+					LOG.info("Reloaded " + this.index.size() + " words from " + this.path);
+				}
+			} catch (IOException e) {
+				LOG.warn("Failed to reload word file", e);
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+	
+	private void reload() throws IOException {
+		FileTime modifiedTime = Files.getLastModifiedTime(this.path);
+		WordIndex.Builder builder = new WordIndex.Builder();
+		try(Reader reader = Files.newBufferedReader(this.path, StandardCharsets.UTF_8)) {
+			char[] buffer = new char[READ_BUFFER_SIZE];
+			char[] line = new char[MAX_WORD_LENGTH];
+			//A line longer than a word may be is skipped whole, a part of it is not a word of the file;
+			//whitespace after the word, e.g. the '\r' of a line break, does not count
+			int lineLength = 0;
+			boolean overlong = false;
+			int skipped = 0;
+			int read;
+			while((read = reader.read(buffer)) != -1) {
+				for(int i = 0; i < read; i++) {
+					if(buffer[i] == '\n') {
+						if(overlong) {
+							skipped++;
+						} else {
+							builder.addWord(line, 0, lineLength);
+						}
+						lineLength = 0;
+						overlong = false;
+					} else if(lineLength < line.length) {
+						line[lineLength++] = buffer[i];
+					} else if(!Character.isWhitespace(buffer[i])) {
+						overlong = true;
+					}
+				}
+			}
+			if(overlong) {
+				skipped++;
+			} else {
+				builder.addWord(line, 0, lineLength);
+			}
+			if(skipped > 0) {
+				LOG.warn("Skipped " + skipped + " lines longer than " + MAX_WORD_LENGTH + " characters in " + this.path);
+			}
+		}
+		if(builder.size() == 0) {
+			throw new IOException("No words in " + this.path);
+		}
+		WordIndex loaded = builder.build();
+		LOG.info("Word index: " + loaded.memoryReport());
+		HintSolver loadedSolver = this.solver == null ? null : HintSolver.build(loaded);
+		DifficultyIndex loadedDifficulty = readDifficulty(loaded);
+		WordTiers loadedTiers = WordTiers.build(loaded, loadedDifficulty);
+		LOG.info("Word tiers (" + (loadedTiers.isSimulated() ? "simulated" : "estimated") + "): "
+				+ loadedTiers.size(Tier.EASY) + " easy, " + loadedTiers.size(Tier.MEDIUM) + " medium, "
+				+ loadedTiers.size(Tier.HARD) + " hard");
+		this.index = loaded;
+		this.solver = loadedSolver;
+		this.difficulty = loadedDifficulty;
+		this.tiers = loadedTiers;
+		this.loadedModifiedTime = modifiedTime;
+	}
+	
+	private DifficultyIndex readDifficulty(WordIndex words) {
+		Path difficultyFile = DifficultyIndex.pathFor(this.path);
+		if(!Files.exists(difficultyFile)) {
+			return null;
+		}
+		try {
+			DifficultyIndex loaded = DifficultyIndex.read(difficultyFile, words);
+			LOG.info("Read difficulty of " + loaded.size() + " words from " + difficultyFile);
+			return loaded;
+		} catch (IOException e) {
+			LOG.warn("Ignoring difficulty index: " + e.getMessage());
+			return null;
+		}
 	}
 }
@@ -0,0 +1,142 @@
+package server.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The words of a {@link WordIndex} split into difficulty tiers, built once when
+ * the words are loaded. The words are ranked by difficulty and every tier is a
+ * contiguous range of one array of word indexes, so picking a random word of a tier
+ * is one random number and one array read, without allocating.
+ *
+ * The difficulty of a word is the simulated one of a {@link DifficultyIndex} when there
+ * is one for the words. Otherwise it is estimated from the word itself: the rarity of
+ * its distinct letters, in bits of how few words contain each letter, summed up and
+ * divided by the length of the word, i.e the number of attempts. Long words with a few
+ * common letters are easy, short words with many rare letters are hard.
+ *
+ * @author Antonio
+ *
+ */
+public final class WordTiers {
+	private final WordIndex index;
+	private final boolean simulated;
+	//Word indexes from the easiest to the hardest word
+	private final int[] ranked;
+	//The first position in ranked of every tier, and the end of the last one
+	private final int[] tierStarts;
+
+	private WordTiers(WordIndex index, boolean simulated, int[] ranked) {
+		this.index = index;
+		this.simulated = simulated;
+		this.ranked = ranked;
+		Tier[] tiers = Tier.values();
+		this.tierStarts = new int[tiers.length + 1];
+		for(int tier = 0; tier <= tiers.length; tier++) {
+			this.tierStarts[tier] = (int) ((long) ranked.length * tier / tiers.length);
+		}
+	}
+
+	/**
+	 * Ranks the words of an index and splits them into tiers.
+	 * @param index the word index
+	 * @param difficulty the simulated difficulty of the words; or <code>null</code> to estimate it.
+	 * @return the tiers of the index.
+	 */
+	public static WordTiers build(WordIndex index, DifficultyIndex difficulty) {
+		boolean simulated = difficulty != null && difficulty.size() == index.size();
+		float[] scores = simulated ? simulatedScores(difficulty) : estimatedScores(index);
+		//Sorts the words by score, the non-negative float bits sort like the floats
+		long[] keyed = new long[scores.length];
+		for(int i = 0; i < scores.length; i++) {
+			keyed[i] = ((long) Float.floatToIntBits(Math.max(0, scores[i])) << 32) | i;
+		}
+		Arrays.sort(keyed);
+		int[] ranked = new int[keyed.length];
+		for(int i = 0; i < keyed.length; i++) {
+			ranked[i] = (int) keyed[i];
+		}
+		return new WordTiers(index, simulated, ranked);
+	}
+
+	/**
+	 * @return the word index the tiers were built over.
+	 */
+	public WordIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Picks a random word of a tier.
+	 * @param tier the tier; or <code>null</code> for any word.
+	 * @return the index of the word in the word index.
+	 */
+	public int randomIndex(Tier tier) {
+		if(tier == null) {
+			return this.index.randomIndex();
+		}
+		int from = this.tierStarts[tier.ordinal()];
+		int to = this.tierStarts[tier.ordinal() + 1];
+		if(from == to) {
+			return this.index.randomIndex();
+		}
+		return this.ranked[ThreadLocalRandom.current().nextInt(from, to)];
+	}
+
+	/**
+	 * @param tier the tier
+	 * @return the number of words in the tier.
+	 */
+	public int size(Tier tier) {
+		return this.tierStarts[tier.ordinal() + 1] - this.tierStarts[tier.ordinal()];
+	}
+
+	/**
+	 * @return <code>true</code> if the tiers are based on a simulated difficulty index.
+	 */
+	public boolean isSimulated() {
+		return this.simulated;
+	}
+
+	private static float[] simulatedScores(DifficultyIndex difficulty) {
+		float[] scores = new float[difficulty.size()];
+		for(int i = 0; i < scores.length; i++) {
+			scores[i] = (float) difficulty.difficulty(i);
+		}
+		return scores;
+	}
+
+	private static float[] estimatedScores(WordIndex index) {
+		int[] wordsWithLetter = new int[Character.MAX_VALUE + 1];
+		for(int i = 0; i < index.size(); i++) {
+			char[] word = index.wordChars(i);
+			for(int position = 0; position < word.length; position++) {
+				if(firstOccurrence(word, position)) {
+					wordsWithLetter[word[position]]++;
+				}
+			}
+		}
+		double log2 = Math.log(2);
+		float[] scores = new float[index.size()];
+		for(int i = 0; i < index.size(); i++) {
+			char[] word = index.wordChars(i);
+			double rarity = 0;
+			for(int position = 0; position < word.length; position++) {
+				if(firstOccurrence(word, position)) {
+					rarity += Math.log((double) index.size() / wordsWithLetter[word[position]]) / log2;
+				}
+			}
+			scores[i] = (float) (rarity / Math.max(1, word.length));
+		}
+		return scores;
+	}
+
+	private static boolean firstOccurrence(char[] word, int position) {
+		for(int i = 0; i < position; i++) {
+			if(word[i] == word[position]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,44 +1,77 @@
 package server.net;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.net.ProtocolException;
 import java.net.Socket;
 
+import common.AsyncLog;
 import common.Constants;
+import common.FrameReader;
+import common.FrameWriter;
 import common.MessageType;
 import common.Receiver;
 import common.Sender;
+import common.SessionTicket;
 import server.controller.Controller;
+import server.model.VerifiedToken;
 
 /**
  * A <code>ClientHandler</code> which will handle the input -and output streams
  * from and to a client and interpret messages.
- * 
+ *
+ * The protocol is negotiated when the client connects. A client that starts
+ * with {@link Constants#BINARY_PROTOCOL_MAGIC} instead of a length header gets
+ * the magic echoed back and then talks the binary protocol (see {@link FrameWriter});
+ * any other client talks the "##"-delimited text protocol. Binary responses
+ * carry the request id of the request they answer.
+ *
+ * When a binary client has logged in, or has been authenticated with its JSON Web Token
+ * for the first time on the connection, the response carries a {@link SessionTicket}.
+ * The client may then send the ticket instead of the token, which is much shorter and
+ * is checked without looking up the token. The tickets are dropped with the connection.
+ *
+ * Requests may be pipelined. Responses are written to a buffered stream and only
+ * flushed when no more requests are already buffered from the client, so a batch
+ * of pipelined requests is answered with one write.
+ *
+ * The connection, its bytes and the time to handle every request are recorded in the
+ * shared {@link ServerMetrics}.
+ *
  * @author Antonio
  *
  */
 public class ClientHandler implements Runnable{
+	private static final AsyncLog LOG = AsyncLog.getShared();
 	private volatile boolean isConnected = false;
 	private final Socket socket;
 	private DataOutputStream toClient;
 	private DataInputStream fromClient;
+	private boolean binaryProtocol = false;
+	private int currentRequestId = 0;
 	private final Sender sender = new Sender();
 	private final Receiver receiver = new Receiver();
+	private final FrameReader frameReader = new FrameReader();
+	private final FrameWriter frameWriter = new FrameWriter();
 	private final Controller controller = new Controller();
-	
+	private final ServerMetrics metrics = ServerMetrics.getShared();
+	private final SessionTickets tickets = new SessionTickets();
+	private SessionTicket issuedTicket = null;
+
 	/**
 	 * Creates a <code>ClientHandler</code>
-	 * 
+	 *
 	 * @param socket The socket where the client is connected to
 	 */
 	ClientHandler(Socket socket){
 		this.isConnected = true;
 		this.socket = socket;
 	}
-	
+
 	/**
 	 * This thread will receive communication from one client, translate it, and
 	 * return a response to the same client
@@ -46,94 +79,204 @@ public class ClientHandler implements Runnable{
 	@Override
 	public void run() {
 		try {
-			this.toClient = new DataOutputStream(this.socket.getOutputStream());
-			this.fromClient = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
-			
+			this.toClient = new DataOutputStream(new BufferedOutputStream(
+					new CountingOutputStream(this.socket.getOutputStream(), this.metrics)));
+			this.fromClient = new DataInputStream(new BufferedInputStream(
+					new CountingInputStream(this.socket.getInputStream(), this.metrics)));
+
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
-		while(this.isConnected) {
+		this.metrics.connectionOpened();
+		try {
+			ClientMessage clientMessage = negotiateProtocol();
+			while(this.isConnected) {
+				long start = System.nanoTime();
+				handleMessage(clientMessage);
+				this.metrics.requestHandled(clientMessage.command, System.nanoTime() - start);
+				if(this.isConnected) {
+					if(this.fromClient.available() == 0) {
+						this.toClient.flush();
+					}
+					clientMessage = nextMessage();
+				}
+			}
+		} catch (IOException e) {
+			LOG.info("Client disconnected");
+			this.isConnected = false;
+		} finally {
+			closeSocket();
+			this.tickets.clear();
+			this.metrics.connectionClosed();
+		}
+	}
+
+	private ClientMessage negotiateProtocol() throws IOException {
+		int header = this.fromClient.readInt();
+		if(header == Constants.BINARY_PROTOCOL_MAGIC) {
+			this.binaryProtocol = true;
+			this.toClient.writeInt(Constants.BINARY_PROTOCOL_MAGIC);
+			this.toClient.flush();
+			return nextMessage();
+		}
+		return new ClientMessage(this.receiver.receiveMessage(this.fromClient, header));
+	}
+
+	private ClientMessage nextMessage() throws IOException {
+		if(this.binaryProtocol) {
+			return new ClientMessage(this.frameReader, this.fromClient);
+		}
+		return new ClientMessage(this.receiver.receiveMessage(this.fromClient));
+	}
+
+	private void handleMessage(ClientMessage clientMessage) {
+		this.currentRequestId = clientMessage.requestId;
+		String respond;
+		switch (clientMessage.command) {
+		case START:
 			try {
-				String message = receiver.receiveMessage(this.fromClient);
-				ClientMessage clientMessage = new ClientMessage(message);
-				String respond;
-				switch (clientMessage.command) {
-				case "START":
-					try {
-						if(clientMessage.encodedJwt == null) {
-							sendToClient(MessageType.INVALID_REQUEST, "Please login!");
-							break;
-						}
-						this.controller.validJwt(clientMessage.encodedJwt);
-						respond = this.controller.startGame();
-						sendToClient(MessageType.GAME_RESPONSE, respond);
-					} catch(Throwable e) {
-						sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
-					}	
-					break;
-				case "GUESS":
-					try {
-						if(clientMessage.encodedJwt == null) {
-							sendToClient(MessageType.INVALID_REQUEST, "Please login and start a game!");
-							break;
-						}
-						this.controller.validJwt(clientMessage.encodedJwt);
-						respond = this.controller.makeGuess(clientMessage.body);
-						sendToClient(MessageType.GAME_RESPONSE, respond);
-					} catch(Throwable e) {
-						sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
-					}	
+				if(!clientMessage.hasCredentials()) {
+					sendToClient(MessageType.INVALID_REQUEST, "Please login!");
 					break;
-				case "DISCONNECT":
-					disconnect();
+				}
+				authenticate(clientMessage);
+				respond = this.controller.startGame(clientMessage.body);
+				sendToClient(MessageType.GAME_RESPONSE, respond);
+			} catch(Throwable e) {
+				sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
+			}
+			break;
+		case GUESS:
+			try {
+				if(!clientMessage.hasCredentials()) {
+					sendToClient(MessageType.INVALID_REQUEST, "Please login and start a game!");
 					break;
-				case "LOGIN":
-					String username = clientMessage.username;
-					String password = clientMessage.password;
-					try {
-						String encodedJwt = this.controller.login(username, password);
-						sendToClient(MessageType.LOGIN_SUCCESS, encodedJwt);
-					} catch (Throwable e) {
-						sendToClient(MessageType.LOGIN_FAIL, e.getMessage());
-					}
+				}
+				authenticate(clientMessage);
+				respond = this.controller.makeGuess(clientMessage.body);
+				sendToClient(MessageType.GAME_RESPONSE, respond);
+			} catch(Throwable e) {
+				sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
+			}
+			break;
+		case HINT:
+			try {
+				if(!clientMessage.hasCredentials()) {
+					sendToClient(MessageType.INVALID_REQUEST, "Please login and start a game!");
 					break;
-				default:
+				}
+				authenticate(clientMessage);
+				respond = this.controller.hint();
+				sendToClient(MessageType.HINT_RESPONSE, respond);
+			} catch(Throwable e) {
+				sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
+			}
+			break;
+		case LEADERBOARD:
+			try {
+				if(!clientMessage.hasCredentials()) {
+					sendToClient(MessageType.INVALID_REQUEST, "Please login!");
 					break;
 				}
-			} catch (IOException e) {
-				System.out.println("Client disconnected");
-				//e.printStackTrace();
-				this.isConnected = false;
+				authenticate(clientMessage);
+				respond = this.controller.leaderboard(clientMessage.body);
+				sendToClient(MessageType.LEADERBOARD_RESPONSE, respond);
+			} catch(Throwable e) {
+				sendToClient(MessageType.INVALID_REQUEST, e.getMessage());
+			}
+			break;
+		case DISCONNECT:
+			disconnect();
+			break;
+		case LOGIN:
+			String username = clientMessage.username;
+			String password = clientMessage.password;
+			try {
+				VerifiedToken token = this.controller.login(username, password);
+				if(this.binaryProtocol) {
+					issueTicket(token);
+				}
+				sendToClient(MessageType.LOGIN_SUCCESS, token.getEncodedJwt());
+			} catch (Throwable e) {
+				sendToClient(MessageType.LOGIN_FAIL, e.getMessage());
 			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	//Resumes the session of the user of the ticket or token of the message
+	private void authenticate(ClientMessage clientMessage) throws Throwable {
+		if(clientMessage.ticket != null) {
+			String username = this.tickets.usernameOf(clientMessage.ticket, System.currentTimeMillis());
+			if(username == null) {
+				this.metrics.ticketRejected();
+				throw new Throwable("Please login...");
+			}
+			this.controller.validSession(username);
+			return;
+		}
+		VerifiedToken token = this.controller.validJwt(clientMessage.encodedJwt);
+		if(this.binaryProtocol && !this.tickets.hasTicket(token.getSubject())) {
+			issueTicket(token);
 		}
-		
 	}
-	
+
+	//The ticket is sent with the next response
+	private void issueTicket(VerifiedToken token) {
+		this.issuedTicket = this.tickets.issue(token.getSubject(), token.getExpMillis());
+	}
+
 	private void disconnect() {
 		try {
 			this.socket.close();
 			this.isConnected = false;
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOG.warn("Failed to close a client socket", e);
 		}
 	}
-	
+
+	private void closeSocket() {
+		try {
+			this.socket.close();
+		} catch (IOException e) {
+			//Already closed
+		}
+	}
+
 	private void sendToClient(MessageType msgType, String msg) {
-		this.sender.sendMessage(msgType+Constants.MSG_DELIMITER+msg, this.toClient);
+		try {
+			if(this.binaryProtocol) {
+				this.frameWriter.writeFrame(msgType, this.toClient, this.currentRequestId, this.issuedTicket, msg);
+				this.issuedTicket = null;
+			} else {
+				this.sender.writeMessage(msgType+Constants.MSG_DELIMITER+msg, this.toClient);
+			}
+		} catch (IOException e) {
+			this.isConnected = false;
+			closeSocket();
+		}
 	}
-	
-	private class ClientMessage{
-		private String command;
+
+	static class ClientMessage{
+		private MessageType command;
+		private int requestId = 0;
 		private String encodedJwt = null;
+		private SessionTicket ticket = null;
 		private String body = null;
 		private String username = null;
 		private String password = null;
 		private String[] splittedMessage;
-		
-		private ClientMessage(String clientMessage) {
+
+		/**
+		 * Parses a message of the text protocol.
+		 * @param clientMessage the received message.
+		 */
+		ClientMessage(String clientMessage) {
 			this.splittedMessage = clientMessage.split(Constants.MSG_DELIMITER);
-			this.command = this.splittedMessage[Constants.MSG_TYPE_INDEX];
-			switch (MessageType.valueOf(this.command)) {
+			this.command = MessageType.valueOf(this.splittedMessage[Constants.MSG_TYPE_INDEX]);
+			switch (this.command) {
 			case LOGIN:
 				this.body = getParameter(Constants.MSG_BODY_INDEX);
 				String[] credentials = this.body.split(Constants.MSG_BODY_DELIMITER);
@@ -143,24 +286,82 @@ public class ClientHandler implements Runnable{
 			case DISCONNECT:
 				break;
 			case START:
+				setEncodedJwt();
+				this.body = getParameter(Constants.MSG_BODY_START_TIER_INDEX);
+				break;
+			case HINT:
 				setEncodedJwt();
 				break;
 			case GUESS:
 				setEncodedJwt();
 				this.body = getParameter(Constants.MSG_BODY_GUESS_INDEX);
 				break;
+			case LEADERBOARD:
+				setEncodedJwt();
+				this.body = getParameter(Constants.MSG_BODY_LEADERBOARD_COUNT_INDEX);
+				break;
 			default:
 				break;
-			}	
+			}
 		}
-		
+
+		/**
+		 * Reads and parses the next frame of the binary protocol. The command is
+		 * given by the opcode, so only the fields are decoded. A frame with a session
+		 * ticket has no JSON Web Token field.
+		 * @param frameReader the <code>FrameReader</code> of the connection.
+		 * @param inStream the stream of the connection.
+		 * @throws IOException if the frame could not be read.
+		 */
+		ClientMessage(FrameReader frameReader, DataInputStream inStream) throws IOException {
+			this.command = frameReader.readFrame(inStream);
+			this.requestId = frameReader.getRequestId();
+			this.ticket = frameReader.getTicket();
+			switch (this.command) {
+			case LOGIN:
+				this.username = frameReader.nextField();
+				this.password = frameReader.nextField();
+				break;
+			case START:
+				readCredentials(frameReader);
+				this.body = frameReader.nextField();
+				break;
+			case HINT:
+				readCredentials(frameReader);
+				break;
+			case GUESS:
+				readCredentials(frameReader);
+				this.body = frameReader.nextField();
+				break;
+			case LEADERBOARD:
+				readCredentials(frameReader);
+				this.body = frameReader.nextField();
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * @return <code>true</code> if the message has a JSON Web Token or a session ticket.
+		 */
+		boolean hasCredentials() {
+			return this.encodedJwt != null || this.ticket != null;
+		}
+
+		private void readCredentials(FrameReader frameReader) throws ProtocolException {
+			if(this.ticket == null) {
+				this.encodedJwt = frameReader.nextField();
+			}
+		}
+
 		private void setEncodedJwt() {
 			if(this.splittedMessage[Constants.MSG_JWT_INDEX].equals("null")) {
 				return;
 			}
 			this.encodedJwt = this.splittedMessage[Constants.MSG_JWT_INDEX];
 		}
-		
+
 		private String getParameter(int index) {
 			if(index >= this.splittedMessage.length) {
 				return null;
@@ -0,0 +1,161 @@
+package server.net;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import common.AsyncLog;
+
+/**
+ * Runs the <code>ClientHandler</code> of every accepted connection according to
+ * an {@link ExecutionMode}. Before a connection is handed over it has to pass the
+ * admission control, which allows at most <code>maxConnections</code> connections
+ * to be served or waiting at the same time. A connection that is not admitted
+ * should be answered with a "server busy" message and closed by the caller, see
+ * {@link HangmanServer}. An admitted connection that waits for a handler thread for
+ * longer than <code>MAX_QUEUE_WAIT_MILLIS</code>, behind handlers that are all busy
+ * with other clients, is rejected the same way by the thread that takes it, instead
+ * of being served long after its client gave up.
+ *
+ * @author Antonio
+ *
+ */
+public class ConnectionExecutor {
+	/**
+	 * The number of handler threads in <code>BOUNDED_POOL</code> mode, unless given otherwise.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 256;
+	/**
+	 * The maximum number of connections served or waiting at the same time, unless given otherwise.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+	private static final AsyncLog LOG = AsyncLog.getShared();
+	private static final long MAX_QUEUE_WAIT_MILLIS = 2000;
+	private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+	private final ExecutionMode mode;
+	private final ExecutorService executor;
+	private final Semaphore admissions;
+	private final int maxConnections;
+
+	/**
+	 * Creates a <code>ConnectionExecutor</code>.
+	 * @param mode how the connections are run
+	 * @param poolSize the number of threads used in <code>BOUNDED_POOL</code> mode, ignored otherwise.
+	 * @param maxConnections the maximum number of connections that are served or waiting at
+	 * the same time; any connection above this is rejected.
+	 */
+	public ConnectionExecutor(ExecutionMode mode, int poolSize, int maxConnections) {
+		if(poolSize < 1 || maxConnections < 1) {
+			throw new IllegalArgumentException("Pool size and max connections must be positive");
+		}
+		ExecutorService virtualExecutor = mode == ExecutionMode.VIRTUAL_THREADS ? createVirtualExecutor() : null;
+		if(mode == ExecutionMode.VIRTUAL_THREADS && virtualExecutor == null) {
+			LOG.warn("Virtual threads are not supported by this JDK, using " + ExecutionMode.BOUNDED_POOL);
+			mode = ExecutionMode.BOUNDED_POOL;
+		}
+		this.mode = mode;
+		this.maxConnections = maxConnections;
+		this.admissions = new Semaphore(maxConnections);
+		switch (mode) {
+		case BOUNDED_POOL:
+			int backlog = Math.max(1, maxConnections - poolSize);
+			this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(backlog), new HandlerThreadFactory());
+			break;
+		case VIRTUAL_THREADS:
+			this.executor = virtualExecutor;
+			break;
+		default:
+			this.executor = null;
+			break;
+		}
+	}
+
+	/**
+	 * Tries to admit the connection and, if admitted, runs the given handler.
+	 * @param handler the handler of the connection.
+	 * @param rejection rejects the connection; run instead of the handler if the connection
+	 * waited for a handler thread for too long.
+	 * @return <code>true</code> if the connection was admitted; <code>false</code> if
+	 * the server is busy and the connection should be rejected.
+	 */
+	public boolean execute(Runnable handler, Runnable rejection) {
+		if(!this.admissions.tryAcquire()) {
+			return false;
+		}
+		long admittedMillis = System.currentTimeMillis();
+		Runnable admitted = () -> {
+			try {
+				if(System.currentTimeMillis() - admittedMillis > MAX_QUEUE_WAIT_MILLIS) {
+					rejection.run();
+				} else {
+					handler.run();
+				}
+			} finally {
+				this.admissions.release();
+			}
+		};
+		try {
+			if(this.executor == null) {
+				Thread clientHandlerThread = new Thread(admitted);
+				clientHandlerThread.setPriority(Thread.MAX_PRIORITY);
+				clientHandlerThread.start();
+			} else {
+				this.executor.execute(admitted);
+			}
+			return true;
+		} catch(RejectedExecutionException | OutOfMemoryError exc) {
+			this.admissions.release();
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of connections currently served or waiting to be served.
+	 */
+	public int activeConnections() {
+		return this.maxConnections - this.admissions.availablePermits();
+	}
+
+	/**
+	 * @return the mode in use; may differ from the requested mode if it was not supported.
+	 */
+	public ExecutionMode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * Stops accepting new handlers. Running handlers are not interrupted.
+	 */
+	public void shutdown() {
+		if(this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
+	private static ExecutorService createVirtualExecutor() {
+		try {
+			Method factory = java.util.concurrent.Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY);
+			return (ExecutorService) factory.invoke(null);
+		} catch(ReflectiveOperationException | RuntimeException unsupported) {
+			return null;
+		}
+	}
+
+	private static class HandlerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "client-handler-" + this.threadNumber.incrementAndGet());
+			thread.setPriority(Thread.MAX_PRIORITY);
+			return thread;
+		}
+	}
+}
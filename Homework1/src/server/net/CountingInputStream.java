@@ -0,0 +1,47 @@
+package server.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An <code>InputStream</code> that adds the number of bytes read to the {@link ServerMetrics}.
+ * It should be wrapped by a buffered stream, so that bytes are counted once per read from
+ * the socket.
+ *
+ * @author Antonio
+ *
+ */
+class CountingInputStream extends FilterInputStream {
+	private final ServerMetrics metrics;
+
+	CountingInputStream(InputStream in, ServerMetrics metrics) {
+		super(in);
+		this.metrics = metrics;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if(b >= 0) {
+			this.metrics.bytesRead(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if(read > 0) {
+			this.metrics.bytesRead(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		this.metrics.bytesRead(skipped);
+		return skipped;
+	}
+}
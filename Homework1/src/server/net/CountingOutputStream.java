@@ -0,0 +1,35 @@
+package server.net;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An <code>OutputStream</code> that adds the number of bytes written to the {@link ServerMetrics}.
+ * It should be wrapped by a buffered stream, so that bytes are counted once per write to
+ * the socket.
+ *
+ * @author Antonio
+ *
+ */
+class CountingOutputStream extends FilterOutputStream {
+	private final ServerMetrics metrics;
+
+	CountingOutputStream(OutputStream out, ServerMetrics metrics) {
+		super(out);
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.out.write(b);
+		this.metrics.bytesWritten(1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		//Not the byte by byte write of FilterOutputStream
+		this.out.write(b, off, len);
+		this.metrics.bytesWritten(len);
+	}
+}
@@ -0,0 +1,26 @@
+package server.net;
+
+/**
+ * The different ways a {@link ConnectionExecutor} can run the
+ * <code>ClientHandler</code> of an accepted connection.
+ * 
+ * @author Antonio
+ *
+ */
+public enum ExecutionMode {
+	/**
+	 * A new platform thread for every connection (the original behaviour).
+	 */
+	THREAD_PER_CONNECTION,
+	
+	/**
+	 * A fixed pool of platform threads with a bounded backlog of waiting connections.
+	 */
+	BOUNDED_POOL,
+	
+	/**
+	 * A virtual thread for every connection. Requires a JDK with virtual threads,
+	 * otherwise <code>BOUNDED_POOL</code> is used instead.
+	 */
+	VIRTUAL_THREADS
+}
@@ -1,30 +1,87 @@
 package server.net;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 
+import javax.management.JMException;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+
+import common.AsyncLog;
+import common.Constants;
+import common.MessageType;
+import common.Sender;
+import common.TlsContexts;
+
 /**
  * The class <code>HangmanServer</code> will run in a specified port and manage
- * new clients by creating new client sockets and starting a new thread to the
- * {@link ClientHandler}.
+ * new clients by creating new client sockets and handing a {@link ClientHandler}
+ * to the {@link ConnectionExecutor}. Connections that are not admitted by the
+ * executor are answered with a "server busy" message and closed right away, as are
+ * connections that waited too long to be served. Rejected connections are closed
+ * without lingering, so a client that does not read does not hold up the server.
+ * The {@link ServerMetrics} of the server are registered over JMX when it is run.
+ * 
+ * With an <code>SSLContext</code>, see {@link #setSslContext(SSLContext)}, the server
+ * listens on an <code>SSLServerSocket</code> instead. The handshake of a connection is
+ * made by its <code>ClientHandler</code> on the first read, not by the accepting thread.
  * 
  * @author Antonio
  *
  */
 public class HangmanServer {
+	private static final AsyncLog LOG = AsyncLog.getShared();
 	private static final int TIMEOUT_TEN_MIN = 600000;
 	private static final int LINGER_TIME = 5000;
+	private static final String SERVER_BUSY = "Server busy, try again later!";
+	private final Sender sender = new Sender();
+	private final ServerMetrics metrics = ServerMetrics.getShared();
+	private final ConnectionExecutor connectionExecutor;
+	private boolean tcpNoDelay = !"false".equalsIgnoreCase(System.getProperty("hangman.tcpNoDelay"));
+	private SSLContext sslContext = null;
 	
 	private int port = 8080;
 	
 	/**
-	 * Creates a <code>HangmanServer</code>
+	 * Creates a <code>HangmanServer</code> with a bounded pool of client handler threads.
 	 * @param port The port where the server will be started on.
 	 */
 	public HangmanServer(int port) {
+		this(port, new ConnectionExecutor(ExecutionMode.BOUNDED_POOL, ConnectionExecutor.DEFAULT_POOL_SIZE,
+				ConnectionExecutor.DEFAULT_MAX_CONNECTIONS));
+	}
+	
+	/**
+	 * Creates a <code>HangmanServer</code>
+	 * @param port The port where the server will be started on.
+	 * @param connectionExecutor The executor that runs the client handlers.
+	 */
+	public HangmanServer(int port, ConnectionExecutor connectionExecutor) {
 		this.port = port;
+		this.connectionExecutor = connectionExecutor;
+	}
+	
+	/**
+	 * Sets <code>TCP_NODELAY</code> on new client sockets. It is enabled by default,
+	 * or as given by the system property <code>hangman.tcpNoDelay</code>, since responses
+	 * are already coalesced by the <code>ClientHandler</code>.
+	 * @param tcpNoDelay <code>true</code> to disable Nagle's algorithm.
+	 */
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+	
+	/**
+	 * Makes the server talk TLS, must be called before the server is run.
+	 * @param sslContext the server context, see {@link TlsContexts#forServer}; or <code>null</code>
+	 * for plaintext.
+	 */
+	public void setSslContext(SSLContext sslContext) {
+		this.sslContext = sslContext;
 	}
 	
 	/**
@@ -33,26 +90,64 @@ public class HangmanServer {
 	 */
 	public void run() {
 		try {
-			System.out.println("Server socket on port: " + this.port);
-			ServerSocket listeningSocket = new ServerSocket(this.port); 
+			System.out.println("Server socket on port: " + this.port + " (" + this.connectionExecutor.getMode() + ")"
+					+ (this.sslContext != null ? " with TLS" : ""));
+			registerMetrics();
+			ServerSocket listeningSocket = createServerSocket();
 			while(true) {
 				Socket clientSocket = listeningSocket.accept();
+				this.metrics.connectionAccepted();
 				startClientHandler(clientSocket);
 			}
 			
 		} catch(IOException exc) {
-			System.err.println("Caught exception from HangmanServer:");
-			exc.printStackTrace();
+			LOG.error("Caught exception from HangmanServer", exc);
 		}
 		
 	}
 	
+	private ServerSocket createServerSocket() throws IOException {
+		if(this.sslContext == null) {
+			return new ServerSocket(this.port);
+		}
+		SSLServerSocket listeningSocket = (SSLServerSocket) this.sslContext.getServerSocketFactory().createServerSocket(this.port);
+		listeningSocket.setEnabledProtocols(TlsContexts.protocols(this.sslContext));
+		return listeningSocket;
+	}
+	
+	private void registerMetrics() {
+		try {
+			this.metrics.register();
+		} catch (JMException e) {
+			LOG.warn("Could not register the server metrics: " + e.getMessage());
+		}
+	}
+	
 	private void startClientHandler(Socket clientSocket) throws SocketException {
 		clientSocket.setSoLinger(true, LINGER_TIME);
 		clientSocket.setSoTimeout(TIMEOUT_TEN_MIN);
+		clientSocket.setTcpNoDelay(this.tcpNoDelay);
 		ClientHandler handler = new ClientHandler(clientSocket);
-		Thread clientHandlerThread = new Thread(handler);
-		clientHandlerThread.setPriority(Thread.MAX_PRIORITY);
-		clientHandlerThread.start();
+		if(!this.connectionExecutor.execute(handler, () -> rejectClient(clientSocket))) {
+			rejectClient(clientSocket);
+		}
+	}
+	
+	private void rejectClient(Socket clientSocket) {
+		this.metrics.connectionRejected();
+		try {
+			//The message is sent in the background, closing does not wait for the client to take it
+			clientSocket.setSoLinger(false, 0);
+			if(this.sslContext != null) {
+				//Answering would make the accepting thread wait for the handshake
+				clientSocket.close();
+				return;
+			}
+			DataOutputStream toClient = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+			this.sender.sendMessage(MessageType.INVALID_REQUEST + Constants.MSG_DELIMITER + SERVER_BUSY, toClient);
+			clientSocket.close();
+		} catch (IOException e) {
+			//The client is dropped either way
+		}
 	}
 }
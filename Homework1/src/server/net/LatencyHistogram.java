@@ -0,0 +1,103 @@
+package server.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket histogram of latencies. Bucket <code>i</code> counts the latencies
+ * below <code>2^i</code> microseconds that do not fit a lower bucket, the last bucket
+ * also counts everything above. Recording is one <code>LongAdder</code> increment per
+ * bucket and sum, so it never blocks and does not contend between threads. The
+ * percentiles are only as exact as the buckets, i.e they are the upper bound of the
+ * bucket the percentile falls into.
+ *
+ * @author Antonio
+ *
+ */
+class LatencyHistogram {
+	/**
+	 * The number of buckets, the last one counts everything from about 9 minutes.
+	 */
+	static final int BUCKETS = 31;
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder totalNanos = new LongAdder();
+
+	LatencyHistogram() {
+		for(int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a latency.
+	 * @param nanos the latency in nanoseconds
+	 */
+	void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+		this.buckets[bucket].increment();
+		this.totalNanos.add(nanos);
+	}
+
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the upper bound of the bucket in microseconds, exclusive.
+	 */
+	static long upperBoundMicros(int bucket) {
+		return 1L << bucket;
+	}
+
+	/**
+	 * @return the number of latencies in every bucket.
+	 */
+	long[] counts() {
+		long[] counts = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets[i].sum();
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the number of recorded latencies.
+	 */
+	long count() {
+		long count = 0;
+		for(LongAdder bucket : this.buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the mean latency in microseconds; or <code>0</code> if none was recorded.
+	 */
+	double meanMicros() {
+		long count = count();
+		return count == 0 ? 0 : this.totalNanos.sum() / 1000.0 / count;
+	}
+
+	/**
+	 * @param percentile the percentile, 0 to 100
+	 * @return the upper bound of the bucket of the percentile in microseconds; or <code>0</code>
+	 * if none was recorded.
+	 */
+	long percentileMicros(double percentile) {
+		long[] counts = counts();
+		long count = 0;
+		for(long bucketCount : counts) {
+			count += bucketCount;
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= rank && seen > 0) {
+				return upperBoundMicros(i);
+			}
+		}
+		return upperBoundMicros(BUCKETS - 1);
+	}
+}
@@ -0,0 +1,203 @@
+package server.net;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import common.AsyncLog;
+import common.MessageType;
+import server.model.AuthenticationManager;
+
+/**
+ * Counters and latency histograms of the server, shared by all connections and
+ * exposed over JMX, see {@link ServerMetricsMXBean}. Everything on the request path
+ * is recorded into <code>LongAdder</code>s, so recording never takes a lock and does not
+ * make the threads of different connections contend. The values are only summed up when
+ * they are read.
+ *
+ * @author Antonio
+ *
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+	private static final MessageType[] TYPES = MessageType.values();
+	private static final ServerMetrics SHARED = new ServerMetrics();
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder closed = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder ticketFailures = new LongAdder();
+	private final LatencyHistogram[] latencies = new LatencyHistogram[TYPES.length];
+
+	/**
+	 * Creates a <code>ServerMetrics</code>. The server records into the shared one, see {@link #getShared()}.
+	 */
+	public ServerMetrics() {
+		for(int i = 0; i < TYPES.length; i++) {
+			this.latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return the <code>ServerMetrics</code> that all connections record into.
+	 */
+	public static ServerMetrics getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server, unless they are already registered.
+	 * @throws JMException if the metrics could not be registered.
+	 */
+	public synchronized void register() throws JMException {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("hangman:type=HangmanServer");
+		if(!mBeanServer.isRegistered(name)) {
+			mBeanServer.registerMBean(this, name);
+		}
+	}
+
+	void connectionAccepted() {
+		this.accepted.increment();
+	}
+
+	void connectionRejected() {
+		this.rejected.increment();
+	}
+
+	void connectionOpened() {
+		this.opened.increment();
+	}
+
+	void connectionClosed() {
+		this.closed.increment();
+	}
+
+	void bytesRead(long bytes) {
+		this.bytesIn.add(bytes);
+	}
+
+	void bytesWritten(long bytes) {
+		this.bytesOut.add(bytes);
+	}
+
+	void ticketRejected() {
+		this.ticketFailures.increment();
+	}
+
+	/**
+	 * Records a handled request.
+	 * @param type the message type of the request
+	 * @param nanos how long it took to handle the request
+	 */
+	void requestHandled(MessageType type, long nanos) {
+		this.latencies[type.ordinal()].record(nanos);
+	}
+
+	@Override
+	public long getActiveConnections() {
+		return this.opened.sum() - this.closed.sum();
+	}
+
+	@Override
+	public long getAcceptedConnections() {
+		return this.accepted.sum();
+	}
+
+	@Override
+	public long getRejectedConnections() {
+		return this.rejected.sum();
+	}
+
+	@Override
+	public long getClosedConnections() {
+		return this.closed.sum();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return this.bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return this.bytesOut.sum();
+	}
+
+	@Override
+	public long getJwtValidationFailures() {
+		return AuthenticationManager.getJwtHandler().getValidationFailures();
+	}
+
+	@Override
+	public long getJwtCacheHits() {
+		return AuthenticationManager.getJwtHandler().getCacheHits();
+	}
+
+	@Override
+	public long getTicketValidationFailures() {
+		return this.ticketFailures.sum();
+	}
+
+	@Override
+	public long getLogMessagesDropped() {
+		return AsyncLog.getShared().getDroppedMessages();
+	}
+
+	@Override
+	public long getLogStackTracesSuppressed() {
+		return AsyncLog.getShared().getSuppressedStackTraces();
+	}
+
+	@Override
+	public Map<String, Long> getRequestCounts() {
+		return perType(LatencyHistogram::count);
+	}
+
+	@Override
+	public Map<String, Double> getMeanLatencyMicros() {
+		return perType(LatencyHistogram::meanMicros);
+	}
+
+	@Override
+	public Map<String, Long> getP50LatencyMicros() {
+		return perType(histogram -> histogram.percentileMicros(50));
+	}
+
+	@Override
+	public Map<String, Long> getP99LatencyMicros() {
+		return perType(histogram -> histogram.percentileMicros(99));
+	}
+
+	@Override
+	public Map<String, long[]> getLatencyHistograms() {
+		return perType(LatencyHistogram::counts);
+	}
+
+	@Override
+	public long[] getLatencyBucketBoundsMicros() {
+		long[] bounds = new long[LatencyHistogram.BUCKETS];
+		for(int i = 0; i < bounds.length; i++) {
+			bounds[i] = LatencyHistogram.upperBoundMicros(i);
+		}
+		return bounds;
+	}
+
+	private <T> Map<String, T> perType(Function<LatencyHistogram, T> value) {
+		Map<String, T> values = new LinkedHashMap<>();
+		for(MessageType type : TYPES) {
+			LatencyHistogram histogram = this.latencies[type.ordinal()];
+			if(histogram.count() > 0) {
+				values.put(type.name(), value.apply(histogram));
+			}
+		}
+		return values;
+	}
+}
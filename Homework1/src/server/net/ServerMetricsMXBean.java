@@ -0,0 +1,102 @@
+package server.net;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link ServerMetrics}, registered by the
+ * <code>HangmanServer</code> under <code>hangman:type=HangmanServer</code>. The metrics are
+ * shared by all servers in the JVM.
+ * The maps are keyed by the name of the <code>MessageType</code> and only hold the
+ * types that have been requested. Latencies are the time from a request being read to
+ * its response being written, in microseconds, and as exact as the histogram buckets.
+ *
+ * @author Antonio
+ *
+ */
+public interface ServerMetricsMXBean {
+	/**
+	 * @return the number of connections that are served right now.
+	 */
+	long getActiveConnections();
+
+	/**
+	 * @return the number of accepted connections since the server started.
+	 */
+	long getAcceptedConnections();
+
+	/**
+	 * @return the number of connections that were rejected because the server was busy.
+	 */
+	long getRejectedConnections();
+
+	/**
+	 * @return the number of served connections that have been closed.
+	 */
+	long getClosedConnections();
+
+	/**
+	 * @return the number of bytes read from clients.
+	 */
+	long getBytesIn();
+
+	/**
+	 * @return the number of bytes written to clients.
+	 */
+	long getBytesOut();
+
+	/**
+	 * @return the number of JSON Web Tokens that failed validation.
+	 */
+	long getJwtValidationFailures();
+
+	/**
+	 * @return the number of token validations answered by the cache of validated tokens.
+	 */
+	long getJwtCacheHits();
+
+	/**
+	 * @return the number of session tickets that were unknown or expired.
+	 */
+	long getTicketValidationFailures();
+
+	/**
+	 * @return the number of log messages dropped because the log could not keep up.
+	 */
+	long getLogMessagesDropped();
+
+	/**
+	 * @return the number of exceptions logged without their stack trace.
+	 */
+	long getLogStackTracesSuppressed();
+
+	/**
+	 * @return the number of requests of every message type.
+	 */
+	Map<String, Long> getRequestCounts();
+
+	/**
+	 * @return the mean latency of every message type.
+	 */
+	Map<String, Double> getMeanLatencyMicros();
+
+	/**
+	 * @return the median (50th percentile) latency of every message type.
+	 */
+	Map<String, Long> getP50LatencyMicros();
+
+	/**
+	 * @return the 99th percentile latency of every message type.
+	 */
+	Map<String, Long> getP99LatencyMicros();
+
+	/**
+	 * @return the number of requests in every latency bucket, for every message type.
+	 * See {@link #getLatencyBucketBoundsMicros()}.
+	 */
+	Map<String, long[]> getLatencyHistograms();
+
+	/**
+	 * @return the exclusive upper bound of every latency bucket.
+	 */
+	long[] getLatencyBucketBoundsMicros();
+}
@@ -0,0 +1,93 @@
+package server.net;
+
+import java.security.SecureRandom;
+
+import common.SessionTicket;
+
+/**
+ * The session tickets issued on one connection, see {@link SessionTicket}. A ticket
+ * stands for the user of the JSON Web Token it was issued for and expires with it,
+ * so a client with a ticket does not send and re-validate the token in every frame.
+ * The tickets are only known to the connection that issued them and are dropped
+ * with it. A connection rarely has more than one user, so the tickets are kept in
+ * a few slots and the oldest one is replaced when all are taken.
+ *
+ * Not thread safe, it is only used by the thread of the <code>ClientHandler</code>.
+ *
+ * @author Antonio
+ *
+ */
+class SessionTickets {
+	private static final int MAX_TICKETS = 4;
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private final SessionTicket[] tickets = new SessionTicket[MAX_TICKETS];
+	private final String[] usernames = new String[MAX_TICKETS];
+	private final long[] expMillis = new long[MAX_TICKETS];
+	private int nextSlot = 0;
+
+	/**
+	 * Issues a new ticket for a user.
+	 * @param username the username
+	 * @param expMillis when the ticket expires, i.e when the JSON Web Token of the user does.
+	 * @return the ticket.
+	 */
+	SessionTicket issue(String username, long expMillis) {
+		int slot = slotOf(username);
+		if(slot < 0) {
+			slot = this.nextSlot;
+			this.nextSlot = (this.nextSlot + 1) % MAX_TICKETS;
+		}
+		SessionTicket ticket = new SessionTicket(RANDOM.nextLong(), RANDOM.nextLong());
+		this.tickets[slot] = ticket;
+		this.usernames[slot] = username;
+		this.expMillis[slot] = expMillis;
+		return ticket;
+	}
+
+	/**
+	 * @param username the username
+	 * @return <code>true</code> if the user has a ticket on this connection.
+	 */
+	boolean hasTicket(String username) {
+		return slotOf(username) >= 0;
+	}
+
+	/**
+	 * Looks up the user of a ticket. An expired ticket is dropped.
+	 * @param ticket the ticket sent by the client
+	 * @param nowMillis the current time in milliseconds
+	 * @return the username; or <code>null</code> if the ticket is unknown or expired.
+	 */
+	String usernameOf(SessionTicket ticket, long nowMillis) {
+		for(int slot = 0; slot < MAX_TICKETS; slot++) {
+			if(ticket.equals(this.tickets[slot])) {
+				if(nowMillis < this.expMillis[slot]) {
+					return this.usernames[slot];
+				}
+				this.tickets[slot] = null;
+				this.usernames[slot] = null;
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Drops all tickets, when the connection is closed.
+	 */
+	void clear() {
+		for(int slot = 0; slot < MAX_TICKETS; slot++) {
+			this.tickets[slot] = null;
+			this.usernames[slot] = null;
+		}
+	}
+
+	private int slotOf(String username) {
+		for(int slot = 0; slot < MAX_TICKETS; slot++) {
+			if(username.equals(this.usernames[slot])) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,70 @@
+package server.startup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import server.model.AuthenticationManager;
+import server.model.CredentialStore;
+
+/**
+ * An offline tool that writes the {@link CredentialStore} the server reads the accounts
+ * from. The accounts are read from a text file with one <code>username:password</code>
+ * per line; empty lines and lines starting with <code>#</code> are skipped. The passwords
+ * are salted and hashed on all cores, so the plain text file is only needed while building.
+ *
+ * Run with: <code>java server.startup.CredentialStoreBuilder accountsFile [storeFile] [iterations]</code>.
+ * The store is written to where the server looks for it, see <code>hangman.credentials</code>,
+ * unless another file is given.
+ *
+ * @author Antonio
+ *
+ */
+public class CredentialStoreBuilder {
+	private static final String SEPARATOR = ":";
+	private static final String COMMENT = "#";
+
+	/**
+	 * Builds the credential store.
+	 * @param args the accounts file, and optionally the store file and the PBKDF2 iterations.
+	 * @throws IOException if the accounts file could not be read or the store could not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: java server.startup.CredentialStoreBuilder accountsFile [storeFile] [iterations]");
+			return;
+		}
+		Path output = args.length > 1 ? Paths.get(args[1]) : AuthenticationManager.getCredentialsPath();
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : CredentialStore.DEFAULT_ITERATIONS;
+		List<String> usernames = new ArrayList<>();
+		List<String> passwords = new ArrayList<>();
+		try(BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while((line = in.readLine()) != null) {
+				lineNumber++;
+				if(line.trim().isEmpty() || line.startsWith(COMMENT)) {
+					continue;
+				}
+				int separator = line.indexOf(SEPARATOR);
+				if(separator <= 0) {
+					throw new IOException("Line " + lineNumber + " is not username" + SEPARATOR + "password");
+				}
+				usernames.add(line.substring(0, separator).trim());
+				passwords.add(line.substring(separator + 1));
+			}
+		}
+
+		long start = System.nanoTime();
+		CredentialStore store = CredentialStore.build(output, usernames.toArray(new String[0]),
+				passwords.toArray(new String[0]), iterations);
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Wrote %d accounts (%d iterations) in %.1f s to %s, %d KB%n", store.size(),
+				store.getIterations(), elapsedSeconds, output, store.fileBytes() / 1024);
+	}
+}
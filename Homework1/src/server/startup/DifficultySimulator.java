@@ -0,0 +1,189 @@
+package server.startup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+import server.model.DifficultyIndex;
+import server.model.HangmanGame;
+import server.model.HintSolver;
+import server.model.WordIndex;
+import server.model.WordReader;
+
+/**
+ * An offline tool that ranks the words of the word file by how hard they are. Every
+ * word is played a number of times through the real <code>HangmanGame</code> by a
+ * reference player, and the share of won games and of attempts left is written to a
+ * {@link DifficultyIndex} next to the word file, where the server reads it at startup.
+ *
+ * The reference player guesses the letter of the {@link HintSolver} most of the time,
+ * and otherwise a random letter, so that the games of one word differ and a word that
+ * is only easy for a perfect player is not ranked as easy.
+ *
+ * The words are split into ranges that are played in parallel on a <code>ForkJoinPool</code>.
+ * Every worker thread plays on its own <code>HangmanGame</code>, the solver and the word
+ * index are only read, and every range writes the statistics of its own words only.
+ * The games of one word mostly go through the same states, so the hints of a word are
+ * remembered while the word is played.
+ *
+ * Run with: <code>java server.startup.DifficultySimulator [gamesPerWord] [outputFile]</code>.
+ * The word file is chosen with <code>hangman.words</code> like for the server, and the
+ * share of random guesses with <code>hangman.simulator.randomGuessRate</code> (default 0.25).
+ *
+ * @author Antonio
+ *
+ */
+public class DifficultySimulator {
+	private static final int DEFAULT_GAMES_PER_WORD = 20;
+	private static final double DEFAULT_RANDOM_GUESS_RATE = 0.25;
+	private static final int WORDS_PER_TASK = 64;
+	private static final ThreadLocal<HangmanGame> GAMES = ThreadLocal.withInitial(HangmanGame::new);
+	private final WordIndex words;
+	private final HintSolver solver;
+	private final int gamesPerWord;
+	private final double randomGuessRate;
+	private final double[] winRates;
+	private final double[] attemptsLeftRatios;
+
+	private DifficultySimulator(WordIndex words, HintSolver solver, int gamesPerWord, double randomGuessRate) {
+		this.words = words;
+		this.solver = solver;
+		this.gamesPerWord = gamesPerWord;
+		this.randomGuessRate = randomGuessRate;
+		this.winRates = new double[words.size()];
+		this.attemptsLeftRatios = new double[words.size()];
+	}
+
+	/**
+	 * Simulates the games and writes the difficulty index.
+	 * @param args optional number of games per word and the file to write.
+	 * @throws IOException if the word file could not be read or the index could not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		int gamesPerWord = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES_PER_WORD;
+		WordReader wordReader = WordReader.getShared();
+		Path output = args.length > 1 ? Paths.get(args[1]) : DifficultyIndex.pathFor(wordReader.getPath());
+		double randomGuessRate = Double.parseDouble(System.getProperty("hangman.simulator.randomGuessRate",
+				String.valueOf(DEFAULT_RANDOM_GUESS_RATE)));
+		WordIndex words = wordReader.load();
+		DifficultySimulator simulator = new DifficultySimulator(words, wordReader.getSolver(), gamesPerWord, randomGuessRate);
+
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		long start = System.nanoTime();
+		pool.invoke(simulator.new PlayWords(0, words.size()));
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+		DifficultyIndex difficulty = DifficultyIndex.of(simulator.winRates, simulator.attemptsLeftRatios);
+		difficulty.write(output, words);
+
+		long games = (long) words.size() * gamesPerWord;
+		System.out.printf("Played %d games in %.1f s (%.0f games/s) on %d threads%n", games, elapsedSeconds,
+				games / elapsedSeconds, pool.getParallelism());
+		System.out.printf("Mean win rate %.3f%n", Arrays.stream(simulator.winRates).average().orElse(0));
+		printDeciles(difficulty);
+		System.out.println("Wrote " + output);
+	}
+
+	private static void printDeciles(DifficultyIndex difficulty) {
+		double[] sorted = new double[difficulty.size()];
+		for(int i = 0; i < sorted.length; i++) {
+			sorted[i] = difficulty.difficulty(i);
+		}
+		Arrays.sort(sorted);
+		StringBuilder sb = new StringBuilder("Difficulty deciles:");
+		for(int decile = 1; decile < 10; decile++) {
+			sb.append(String.format(" %.2f", sorted[sorted.length * decile / 10]));
+		}
+		System.out.println(sb);
+	}
+
+	private void playWord(int index) {
+		HangmanGame game = GAMES.get();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] word = this.words.wordChars(index);
+		Map<String, Character> hints = new HashMap<>();
+		int won = 0;
+		double attemptsLeftSum = 0;
+		for(int i = 0; i < this.gamesPerWord; i++) {
+			game.startGame(word);
+			int attemptsLeft = game.getAttemptsLeft();
+			while(game.getAttemptsLeft() > 0) {
+				char letter = nextLetter(game, random, hints);
+				if(letter == HintSolver.HIDDEN) {
+					break;
+				}
+				attemptsLeft = game.getAttemptsLeft();
+				game.guess(String.valueOf(letter));
+			}
+			//A won game ends with no attempts left, the attempts before the last guess are kept
+			if(game.isWon()) {
+				won++;
+				attemptsLeftSum += (double) attemptsLeft / word.length;
+			}
+		}
+		this.winRates[index] = (double) won / this.gamesPerWord;
+		this.attemptsLeftRatios[index] = attemptsLeftSum / this.gamesPerWord;
+	}
+
+	private char nextLetter(HangmanGame game, ThreadLocalRandom random, Map<String, Character> hints) {
+		char[] masked = game.getMaskedWord();
+		String misses = game.getMissedLetters();
+		if(random.nextDouble() < this.randomGuessRate) {
+			char letter = randomUnguessedLetter(masked, misses, random);
+			if(letter != HintSolver.HIDDEN) {
+				return letter;
+			}
+		}
+		String state = new String(masked) + misses;
+		Character hinted = hints.get(state);
+		if(hinted == null) {
+			hinted = this.solver.bestLetter(masked, misses).getLetter();
+			hints.put(state, hinted);
+		}
+		if(hinted != HintSolver.HIDDEN) {
+			return hinted;
+		}
+		return randomUnguessedLetter(masked, misses, random);
+	}
+
+	private static char randomUnguessedLetter(char[] masked, String misses, ThreadLocalRandom random) {
+		String revealed = new String(masked);
+		char[] unguessed = new char[26];
+		int count = 0;
+		for(char letter = 'A'; letter <= 'Z'; letter++) {
+			if(misses.indexOf(letter) < 0 && revealed.indexOf(letter) < 0) {
+				unguessed[count++] = letter;
+			}
+		}
+		return count == 0 ? HintSolver.HIDDEN : unguessed[random.nextInt(count)];
+	}
+
+	//Plays the words from (inclusive) to (exclusive), splitting the range until it is small
+	private class PlayWords extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		private PlayWords(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.to - this.from <= WORDS_PER_TASK) {
+				for(int i = this.from; i < this.to; i++) {
+					playWord(i);
+				}
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new PlayWords(this.from, middle), new PlayWords(middle, this.to));
+		}
+	}
+}
@@ -1,24 +1,101 @@
 package server.startup;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.net.ssl.SSLContext;
+
+import common.TlsContexts;
+import server.integration.ScoreJournal;
+import server.model.Leaderboard;
+import server.model.WordReader;
+import server.net.ConnectionExecutor;
+import server.net.ExecutionMode;
 import server.net.HangmanServer;
 
 /**
  * Just a server starter. Starts the <code>HangmanServer</code> at 
  * port 5000.
  * 
+ * The way connections are executed can be changed with the system properties
+ * <code>hangman.executor</code> (see {@link ExecutionMode}), <code>hangman.poolSize</code>
+ * and <code>hangman.maxConnections</code>. The word file is read before the server
+ * starts and checked for changes every <code>hangman.wordReloadSeconds</code> seconds.
+ * Scores are restored from, and journaled to, the directory <code>hangman.journal.dir</code>
+ * (default <code>journal</code> in the working directory).
+ * 
+ * The server talks TLS if <code>hangman.tls.keyStore</code> names a key store with the key
+ * and certificate of the server, with the password <code>hangman.tls.keyStorePassword</code>.
+ * The sessions kept for resumption are set with <code>hangman.tls.sessionCacheSize</code> and
+ * <code>hangman.tls.sessionTimeoutSeconds</code>.
+ * 
  * @author Antonio
  *
  */
 public class ServerStarter {
 	private static final int PORT = 5000;
+	private static final int DEFAULT_WORD_RELOAD_SECONDS = 30;
 	
 	/**
 	 * Start the <code>HangmanServer</code>
 	 * @param args Not used
 	 */
 	public static void main(String[] args) {
-		HangmanServer server = new HangmanServer(PORT);
+		ExecutionMode mode = ExecutionMode.valueOf(System.getProperty("hangman.executor", 
+				ExecutionMode.BOUNDED_POOL.toString()).toUpperCase());
+		int poolSize = Integer.getInteger("hangman.poolSize", ConnectionExecutor.DEFAULT_POOL_SIZE);
+		int maxConnections = Integer.getInteger("hangman.maxConnections", ConnectionExecutor.DEFAULT_MAX_CONNECTIONS);
+		loadWords();
+		openScoreJournal();
+		HangmanServer server = new HangmanServer(PORT, new ConnectionExecutor(mode, poolSize, maxConnections));
+		String keyStore = System.getProperty("hangman.tls.keyStore");
+		if(keyStore != null) {
+			try {
+				server.setSslContext(createSslContext(Paths.get(keyStore)));
+			} catch (GeneralSecurityException | IOException e) {
+				System.err.println("Failed to read TLS key store: " + e.getMessage());
+				return;
+			}
+		}
 		server.run();
 	}
+	
+	private static SSLContext createSslContext(Path keyStore) throws GeneralSecurityException, IOException {
+		char[] password = System.getProperty("hangman.tls.keyStorePassword", "").toCharArray();
+		int sessionCacheSize = Integer.getInteger("hangman.tls.sessionCacheSize", TlsContexts.DEFAULT_SESSION_CACHE_SIZE);
+		int sessionTimeout = Integer.getInteger("hangman.tls.sessionTimeoutSeconds", TlsContexts.DEFAULT_SESSION_TIMEOUT_SECONDS);
+		return TlsContexts.forServer(keyStore, password, sessionCacheSize, sessionTimeout);
+	}
+	
+	private static void openScoreJournal() {
+		Path directory = Paths.get(System.getProperty("hangman.journal.dir",
+				Paths.get(System.getProperty("user.dir"), "journal").toString()));
+		ScoreJournal journal = new ScoreJournal(directory);
+		try {
+			System.out.println("Restored scores of " + journal.open(Leaderboard.getShared()) + " players");
+		} catch (IOException e) {
+			System.err.println("Failed to open score journal, scores will not be saved: " + e.getMessage());
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				journal.close();
+			} catch (InterruptedException | IOException e) {
+				System.err.println("Failed to close score journal: " + e.getMessage());
+			}
+		}));
+	}
+	
+	private static void loadWords() {
+		WordReader wordReader = WordReader.getShared();
+		try {
+			System.out.println("Loaded " + wordReader.load().size() + " words");
+		} catch (IOException e) {
+			System.err.println("Failed to read word file: " + e.getMessage());
+		}
+		wordReader.startWatching(Integer.getInteger("hangman.wordReloadSeconds", DEFAULT_WORD_RELOAD_SECONDS));
+	}
 
 }
@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import common.FrameCodec;
+import common.MessageType;
+
+/**
+ * Measures the framing of the messages of one read, a batch of GUESS requests the way a
+ * pipelining client sends them, and the encoding of a game response. The batch is read
+ * at once, or in chunks of a few bytes so that most frames are split between reads. Every
+ * benchmark is measured with the {@link FrameCodec} and with the text framing it replaced,
+ * "length###TYPE##body", which decoded the read bytes to a String and split everything
+ * received so far again on every read.
+ *
+ * Run with the GC profiler, see {@link RunBenchmarks}, the allocation per batch is in
+ * <code>gc.alloc.rate.norm</code>.
+ *
+ * @author Antonio
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+	private static final String RESPONSE = "_ A _ _ E _ &4&12";
+	private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	@Param({"8", "64"})
+	private int frames;
+	@Param({"4096", "7"})
+	private int chunkBytes;
+	private final FrameCodec codec = new FrameCodec();
+	private final TextFraming textFraming = new TextFraming();
+	private final ByteBuffer response = ByteBuffer.allocate(FrameCodec.LENGTH_BYTES + 1 + RESPONSE.length());
+	private ByteBuffer binaryBatch;
+	private int binaryBatchBytes;
+	private byte[] textBatch;
+
+	/**
+	 * Encodes the batches of requests with both framings.
+	 */
+	@Setup
+	public void setUp() {
+		this.binaryBatch = ByteBuffer.allocate(this.frames * FrameCodec.maxFrameBytes("A"));
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < this.frames; i++) {
+			String guess = String.valueOf(LETTERS.charAt(i % LETTERS.length()));
+			this.codec.encode(MessageType.GUESS, guess, this.binaryBatch);
+			text.append(TextFraming.frame(MessageType.GUESS + TextFraming.TYPE_DELIMITER + guess));
+		}
+		this.binaryBatch.flip();
+		this.binaryBatchBytes = this.binaryBatch.limit();
+		this.textBatch = text.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes the batch with the <code>FrameCodec</code>, on the read buffer.
+	 * @param blackhole consumes the messages
+	 * @throws ProtocolException never, the frames are valid.
+	 */
+	@Benchmark
+	public void decodeFrames(Blackhole blackhole) throws ProtocolException {
+		ByteBuffer batch = this.binaryBatch;
+		for(int start = 0; start < this.binaryBatchBytes; start += this.chunkBytes) {
+			batch.limit(Math.min(this.binaryBatchBytes, start + this.chunkBytes)).position(start);
+			while(this.codec.decode(batch)) {
+				blackhole.consume(this.codec.getType());
+				blackhole.consume(this.codec.getBody().charAt(0));
+			}
+		}
+	}
+
+	/**
+	 * Decodes the batch with the text framing, like the server did before the <code>FrameCodec</code>.
+	 * @param blackhole consumes the messages
+	 */
+	@Benchmark
+	public void decodeText(Blackhole blackhole) {
+		for(int start = 0; start < this.textBatch.length; start += this.chunkBytes) {
+			int length = Math.min(this.textBatch.length - start, this.chunkBytes);
+			this.textFraming.addReceivedMessage(new String(this.textBatch, start, length));
+			String message;
+			while((message = this.textFraming.nextMessage()) != null) {
+				String[] parts = message.split(TextFraming.TYPE_DELIMITER);
+				blackhole.consume(MessageType.valueOf(parts[0]));
+				blackhole.consume(parts[1].charAt(0));
+			}
+		}
+	}
+
+	/**
+	 * Encodes a game response with the <code>FrameCodec</code> into a reused buffer.
+	 * @return the encoded response.
+	 */
+	@Benchmark
+	public ByteBuffer encodeFrame() {
+		this.response.clear();
+		this.codec.encode(MessageType.GAME_RESPONSE, RESPONSE, this.response);
+		return this.response;
+	}
+
+	/**
+	 * Encodes a game response with the text framing, like the server did before the <code>FrameCodec</code>.
+	 * @return the encoded response.
+	 */
+	@Benchmark
+	public ByteBuffer encodeText() {
+		String message = MessageType.GAME_RESPONSE + TextFraming.TYPE_DELIMITER + RESPONSE;
+		return ByteBuffer.wrap(TextFraming.frame(message).getBytes());
+	}
+
+	//The text framing of MessageDivider, as it was before the FrameCodec
+	private static final class TextFraming {
+		private static final String LENGTH_DELIMITER = "###";
+		private static final String TYPE_DELIMITER = "##";
+		private final StringBuilder receivedChars = new StringBuilder();
+		private final Queue<String> messages = new ArrayDeque<>();
+
+		private static String frame(String message) {
+			return Integer.toString(message.length()) + LENGTH_DELIMITER + message;
+		}
+
+		private synchronized void addReceivedMessage(String received) {
+			this.receivedChars.append(received);
+			while(extractCompleteMessage());
+		}
+
+		private synchronized String nextMessage() {
+			return this.messages.poll();
+		}
+
+		private boolean extractCompleteMessage() {
+			String[] split = this.receivedChars.toString().split(LENGTH_DELIMITER);
+			if(split.length < 2) {
+				return false;
+			}
+			int length = Integer.parseInt(split[0]);
+			if(split[1].length() >= length) {
+				this.messages.add(split[1].substring(0, length));
+				this.receivedChars.delete(0, split[0].length() + LENGTH_DELIMITER.length() + length);
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import common.FrameCodec;
+import common.MessageType;
+import server.net.BufferPool;
+import server.net.HangmanServer;
+
+/**
+ * Measures the memory of the server per connected client, with many clients that are
+ * connected but idle, and again after some of them played. The clients are opened by a
+ * second JVM, so that only the memory of the server is measured: the used heap after a
+ * full collection and the direct memory, minus the same before the clients connected,
+ * and the metrics of the buffer pools of the server.
+ *
+ * The clients connect from several loopback addresses, 127.0.0.1, 127.0.0.2 and so on,
+ * since one address runs out of ephemeral ports before 100000 connections. Both JVMs need
+ * a file descriptor per connection, so the limit of open files (<code>ulimit -n</code>)
+ * must be above the number of clients.
+ *
+ * The server is started in-process and reads its word file relative to the working
+ * directory, like <code>server.startup.ServerStarter</code>.
+ *
+ * Run with: <code>java benchmark.IdleConnectionsBenchmark [clients] [activePercent]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class IdleConnectionsBenchmark {
+	private static final String HOST = "127.0.0.1";
+	private static final int PORT = 5320;
+	private static final int CONNECTIONS_PER_ADDRESS = 25000;
+	private static final String CLIENTS_MODE = "clients";
+	private static final String EXIT = "exit";
+	private static final long SETTLE_MILLIS = 1000;
+
+	/**
+	 * Runs the measurement, or the clients in the second JVM.
+	 * @param args optional number of clients and the percentage of them that play.
+	 * @throws Exception if the server or the clients could not be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length > 0 && args[0].equals(CLIENTS_MODE)) {
+			runClients(Integer.parseInt(args[1]));
+			return;
+		}
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int activePercent = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		HangmanServer server = new HangmanServer(PORT, Integer.getInteger("hangman.reactors", 1));
+		Thread serverThread = new Thread(server::run, "hangman-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		Thread.sleep(300);
+
+		Memory baseline = Memory.measure();
+		Process clientProcess = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+				"-cp", System.getProperty("java.class.path"), IdleConnectionsBenchmark.class.getName(),
+				CLIENTS_MODE, Integer.toString(clients))
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		BufferedReader fromClients = new BufferedReader(new InputStreamReader(clientProcess.getInputStream()));
+		PrintWriter toClients = new PrintWriter(clientProcess.getOutputStream(), true);
+		int connected = Integer.parseInt(fromClients.readLine());
+		settle();
+
+		System.out.printf("%-8s %10s %10s %10s %12s %s%n", "phase", "clients", "heap MB", "direct MB", "bytes/client", "buffer pools");
+		baseline.print("baseline", 0, baseline, server);
+		Memory.measure().print("idle", connected, baseline, server);
+		int active = (int) ((long) connected * activePercent / 100);
+		toClients.println(active);
+		fromClients.readLine();
+		settle();
+		Memory.measure().print("played", connected, baseline, server);
+		System.out.println(active + " of the clients played, the peak is the most buffer memory borrowed at once");
+		toClients.println(EXIT);
+		clientProcess.waitFor(1, TimeUnit.MINUTES);
+		System.exit(0);
+	}
+
+	//Waits for the server to register the clients and to set up their games in the background
+	private static void settle() throws InterruptedException {
+		Thread.sleep(SETTLE_MILLIS);
+		ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
+		Thread.sleep(SETTLE_MILLIS);
+	}
+
+	//The second JVM: connects the clients, prints how many, and plays with some of them when told to
+	private static void runClients(int clients) throws IOException {
+		List<SocketChannel> channels = new ArrayList<>(clients);
+		try {
+			for(int i = 0; i < clients; i++) {
+				SocketChannel channel = SocketChannel.open();
+				channels.add(channel);
+				channel.bind(new InetSocketAddress("127.0.0." + (1 + i / CONNECTIONS_PER_ADDRESS), 0));
+				channel.connect(new InetSocketAddress(HOST, PORT));
+			}
+		} catch(IOException e) {
+			channels.remove(channels.size() - 1).close();
+			System.err.println("Connected " + channels.size() + " of " + clients + " clients: " + e);
+		}
+		System.out.println(channels.size());
+		System.out.flush();
+		BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+		String command;
+		while((command = commands.readLine()) != null && !command.equals(EXIT)) {
+			play(channels.subList(0, Math.min(channels.size(), Integer.parseInt(command))));
+			System.out.println("done");
+			System.out.flush();
+		}
+		for(SocketChannel channel : channels) {
+			channel.close();
+		}
+	}
+
+	//Starts a game on every channel at once, then reads the responses
+	private static void play(List<SocketChannel> channels) throws IOException {
+		FrameCodec codec = new FrameCodec();
+		ByteBuffer buffer = ByteBuffer.allocate(FrameCodec.MAX_PAYLOAD_BYTES);
+		for(SocketChannel channel : channels) {
+			buffer.clear();
+			codec.encode(MessageType.START, "", buffer);
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		for(SocketChannel channel : channels) {
+			do {
+				buffer.clear();
+				if(channel.read(buffer) < 0) {
+					throw new IOException("Server closed the connection");
+				}
+				buffer.flip();
+			} while(!codec.decode(buffer));
+		}
+	}
+
+	//The memory of this JVM at one point
+	private static final class Memory {
+		private final long heapBytes;
+		private final long directBytes;
+
+		private Memory(long heapBytes, long directBytes) {
+			this.heapBytes = heapBytes;
+			this.directBytes = directBytes;
+		}
+
+		private static Memory measure() throws InterruptedException {
+			for(int i = 0; i < 3; i++) {
+				System.gc();
+				Thread.sleep(100);
+			}
+			long direct = 0;
+			for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+				if(pool.getName().equals("direct")) {
+					direct = pool.getMemoryUsed();
+				}
+			}
+			return new Memory(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), direct);
+		}
+
+		private void print(String phase, int clients, Memory baseline, HangmanServer server) {
+			long bytes = this.heapBytes - baseline.heapBytes + this.directBytes - baseline.directBytes;
+			StringBuilder pools = new StringBuilder();
+			for(BufferPool pool : server.getBufferPools()) {
+				pools.append('[').append(pool).append(']');
+			}
+			System.out.printf("%-8s %10d %10.1f %10.1f %12s %s%n", phase, clients, this.heapBytes / 1e6,
+					this.directBytes / 1e6, clients == 0 ? "-" : Long.toString(bytes / clients), pools);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package benchmark;
+
+import server.net.HangmanServer;
+
+/**
+ * Measures how the server scales with the number of reactors, from one selector loop
+ * up to one per core (or the given number). For every number of reactors a server is
+ * started in-process on its own port and the same clients of the {@link SoakBenchmark}
+ * are run against it.
+ *
+ * Run with: <code>java benchmark.ReactorBenchmark [secondsPerRow] [clients] [maxReactors]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class ReactorBenchmark {
+	private static final int FIRST_PORT = 5310;
+	private static final int PIPELINE_DEPTH = 8;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args optional seconds per row, number of clients and the most reactors.
+	 * @throws Exception if a server could not be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int maxReactors = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d clients, %d cores%n", clients, Runtime.getRuntime().availableProcessors());
+		System.out.printf("%8s %14s %10s%n", "reactors", "responses/s", "failed");
+		int port = FIRST_PORT;
+		for(int reactors = 1; ; reactors = Math.min(reactors * 2, maxReactors)) {
+			Thread serverThread = new Thread(new HangmanServer(port, reactors)::run, "hangman-server-" + reactors);
+			serverThread.setDaemon(true);
+			serverThread.start();
+			Thread.sleep(300);
+			SoakBenchmark.Result result = SoakBenchmark.run(port++, clients, PIPELINE_DEPTH, seconds);
+			System.out.printf("%8d %14.0f %10d%n", reactors, result.responsesPerSecond, result.failedClients);
+			if(reactors >= maxReactors) {
+				break;
+			}
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,188 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.Constants;
+import common.FrameCodec;
+import common.MessageType;
+import server.net.ExecutionMode;
+import server.net.HangmanServer;
+
+/**
+ * A soak test of the server with a growing number of clients. Every client plays on its
+ * own blocking connection: it starts a game, guesses the letters of the alphabet and starts
+ * again, and sends several requests before reading their responses, so that the server has
+ * to queue responses while the client is not reading. Every request must be answered with
+ * exactly one game response on the same connection, a missing or foreign response fails
+ * the row.
+ *
+ * The server is started in-process and reads its word file relative to the working
+ * directory, like <code>server.startup.ServerStarter</code>. It handles the messages on
+ * the selector, or on worker threads with <code>-Dhangman.executor=WORKER_POOL</code> and
+ * <code>-Dhangman.poolSize</code>.
+ *
+ * Run with: <code>java benchmark.SoakBenchmark [secondsPerRow] [pipelineDepth] [clients...]</code>
+ *
+ * @author Antonio
+ *
+ */
+public class SoakBenchmark {
+	private static final String HOST = "127.0.0.1";
+	private static final int PORT = 5300;
+	private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static final int READ_TIMEOUT_MILLIS = 10000;
+	//The server sets up the game of a new client in the background
+	private static final long GAME_SETUP_MILLIS = 1000;
+
+	/**
+	 * Runs the soak test.
+	 * @param args optional seconds per row, pipeline depth and client counts.
+	 * @throws Exception if the server could not be started.
+	 */
+	public static void main(String[] args) throws Exception {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int[] clientCounts = {1, 2, 4, 8, 16, 32, 64};
+		if(args.length > 2) {
+			clientCounts = new int[args.length - 2];
+			for(int i = 2; i < args.length; i++) {
+				clientCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+		ExecutionMode mode = ExecutionMode.valueOf(System.getProperty("hangman.executor",
+				ExecutionMode.SELECTOR.toString()).toUpperCase());
+		int poolSize = Integer.getInteger("hangman.poolSize", Runtime.getRuntime().availableProcessors());
+		Thread serverThread = new Thread(new HangmanServer(PORT, 1, mode, poolSize)::run, "hangman-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		Thread.sleep(300);
+
+		System.out.printf("%8s %14s %14s %10s%n", "clients", "responses/s", "per client", "failed");
+		for(int clients : clientCounts) {
+			Result result = run(PORT, clients, depth, seconds);
+			System.out.printf("%8d %14.0f %14.0f %10d%n", clients, result.responsesPerSecond,
+					result.responsesPerSecond / clients, result.failedClients);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Runs clients against a server until the time is up.
+	 * @param port the port of the server
+	 * @param clients the number of clients
+	 * @param depth the number of requests a client sends before reading the responses.
+	 * @param seconds how long to run
+	 * @return the responses per second and the failed clients.
+	 * @throws InterruptedException if interrupted while waiting for the clients.
+	 */
+	static Result run(int port, int clients, int depth, long seconds) throws InterruptedException {
+		AtomicLong responses = new AtomicLong();
+		AtomicLong failed = new AtomicLong();
+		CountDownLatch ready = new CountDownLatch(clients);
+		CountDownLatch done = new CountDownLatch(clients);
+		long[] measureStart = new long[1];
+		for(int i = 0; i < clients; i++) {
+			Thread client = new Thread(() -> {
+				try(SoakClient soakClient = new SoakClient(port)) {
+					Thread.sleep(GAME_SETUP_MILLIS);
+					ready.countDown();
+					ready.await();
+					long end = System.nanoTime() + seconds * 1_000_000_000L;
+					while(System.nanoTime() < end) {
+						responses.addAndGet(soakClient.exchange(depth));
+					}
+				} catch(IOException | RuntimeException e) {
+					failed.incrementAndGet();
+					System.err.println("Client failed: " + e);
+				} catch(InterruptedException e) {
+					failed.incrementAndGet();
+				} finally {
+					ready.countDown();
+					done.countDown();
+				}
+			}, "soak-client-" + i);
+			client.start();
+		}
+		ready.await();
+		measureStart[0] = System.nanoTime();
+		done.await();
+		double elapsedSeconds = (System.nanoTime() - measureStart[0]) / 1e9;
+		return new Result(responses.get() / elapsedSeconds, failed.get());
+	}
+
+	/**
+	 * The outcome of a run.
+	 */
+	static final class Result {
+		final double responsesPerSecond;
+		final long failedClients;
+
+		private Result(double responsesPerSecond, long failedClients) {
+			this.responsesPerSecond = responsesPerSecond;
+			this.failedClients = failedClients;
+		}
+	}
+
+	//A client that checks that every request gets its response
+	private static final class SoakClient implements AutoCloseable {
+		private final SocketChannel channel;
+		private final ByteBuffer in = ByteBuffer.allocate(Constants.MAX_MSG_LENGTH);
+		private final ByteBuffer out = ByteBuffer.allocate(Constants.MAX_MSG_LENGTH);
+		private final FrameCodec codec = new FrameCodec();
+		private int requests = 0;
+
+		private SoakClient(int port) throws IOException {
+			this.channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+			this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			this.channel.socket().setSoTimeout(READ_TIMEOUT_MILLIS);
+			this.in.limit(0);
+		}
+
+		//Sends depth requests and reads their responses, returns the number of responses
+		private int exchange(int depth) throws IOException {
+			this.out.clear();
+			for(int i = 0; i < depth; i++) {
+				int letter = this.requests++ % (LETTERS.length() + 1);
+				if(letter == 0) {
+					this.codec.encode(MessageType.START, "", this.out);
+				} else {
+					this.codec.encode(MessageType.GUESS, LETTERS.subSequence(letter - 1, letter), this.out);
+				}
+			}
+			this.out.flip();
+			while(this.out.hasRemaining()) {
+				this.channel.write(this.out);
+			}
+			for(int received = 0; received < depth; received++) {
+				if(nextMessage() != MessageType.GAME_RESPONSE) {
+					throw new IOException("Unexpected response: " + this.codec.getType() + " " + this.codec.getBody());
+				}
+			}
+			return depth;
+		}
+
+		private MessageType nextMessage() throws IOException {
+			while(!this.codec.decode(this.in)) {
+				this.in.clear();
+				//The timeout of the socket only applies to its stream
+				int read = this.channel.socket().getInputStream().read(this.in.array());
+				if(read < 0) {
+					throw new IOException("Server closed the connection");
+				}
+				this.in.limit(read);
+			}
+			return this.codec.getType();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
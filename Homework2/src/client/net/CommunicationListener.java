@@ -1,5 +1,7 @@
 package client.net;
 
+import common.MessageType;
+
 /**
  * Handle output from the server and notify the view.
  * @author Antonio
@@ -16,9 +18,10 @@ public interface CommunicationListener {
 	public void disconnected();
 	/**
 	 * Called whenever a response from the server has been retrieved
-	 * @param msg The response from the server
+	 * @param type The type of the response
+	 * @param body The body of the response from the server
 	 */
-	public void handleResponse(String msg);
+	public void handleResponse(MessageType type, String body);
 	/**
 	 * Called to notify the view
 	 * @param msg The message to notify the view with
@@ -8,12 +8,11 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.Queue;
-import java.util.StringJoiner;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 
 import common.Constants;
-import common.MessageDivider;
+import common.FrameCodec;
 import common.MessageType;
 
 /**
@@ -32,7 +31,7 @@ public class ServerConnection implements Runnable{
 	
 	private final ByteBuffer receivingBuffer = ByteBuffer.allocateDirect(Constants.MAX_MSG_LENGTH);
 	private final Queue<ByteBuffer> sendingBuffer = new ArrayDeque<>();
-	private final MessageDivider messageDivider = new MessageDivider();
+	private final FrameCodec codec = new FrameCodec();
 	private InetSocketAddress serverAddress;
 	private Selector selector;
 	private SocketChannel socketChannel;
@@ -105,7 +104,7 @@ public class ServerConnection implements Runnable{
 	 */
 	public void disconnect() {
 		this.connected = false;
-		sendMessage(MessageType.DISCONNECT.toString());
+		sendMessage(MessageType.DISCONNECT, "");
 	}
 	
 	/**
@@ -118,7 +117,7 @@ public class ServerConnection implements Runnable{
 			notifyMessage("Connect and start a game to make guesses!");
 			return;
 		}
-		sendMessage(MessageType.GUESS.toString(), guessMsg);
+		sendMessage(MessageType.GUESS, guessMsg);
 	}
 	
 	/**
@@ -130,7 +129,7 @@ public class ServerConnection implements Runnable{
 			notifyMessage("Connect to start a game!");
 			return;
 		}
-		sendMessage(MessageType.START.toString());
+		sendMessage(MessageType.START, "");
 	}
 
 	/**
@@ -193,19 +192,10 @@ public class ServerConnection implements Runnable{
 		if(numOfReadBytes == -1) {
 			throw new IOException(FAIL_COMMUNICATION_MSG);
 		}
-		String readMsg = getMessageFromBuffer();
-		this.messageDivider.addReceivedMessage(readMsg);
-		while(this.messageDivider.hasNext()) {
-			String message = this.messageDivider.nextMessage();
-			notifyMessageReceived(message);
-		}
-	}
-	
-	private String getMessageFromBuffer() {
 		this.receivingBuffer.flip();
-		byte[] bytes = new byte[this.receivingBuffer.remaining()];
-		this.receivingBuffer.get(bytes);
-		return new String(bytes);
+		while(this.codec.decode(this.receivingBuffer)) {
+			notifyMessageReceived(this.codec.getType(), this.codec.getBody().toString());
+		}
 	}
 	
 	private void writeToServer(SelectionKey key) throws IOException {
@@ -222,21 +212,16 @@ public class ServerConnection implements Runnable{
 		}
 	}
 	
-	private void notifyMessageReceived(String msg) {
+	private void notifyMessageReceived(MessageType type, String body) {
 		Executor pool = ForkJoinPool.commonPool();
 		pool.execute(() -> {
-			listener.handleResponse(msg);
+			listener.handleResponse(type, body);
 		});
 	}
 	
-	private void sendMessage(String... parts) {
-		StringJoiner joiner = new StringJoiner(Constants.MSG_TYPE_DELIMITER);
-		for(String part : parts) {
-			joiner.add(part);
-		}
-		String msgWithLengthHeader = MessageDivider.addLengthHeader(joiner.toString());
+	private void sendMessage(MessageType type, String body) {
 		synchronized(this.sendingBuffer) {
-			this.sendingBuffer.add(ByteBuffer.wrap(msgWithLengthHeader.getBytes()));
+			this.sendingBuffer.add(this.codec.encode(type, body));
 		}
 		this.timeToSend = true;
 		this.selector.wakeup();
@@ -47,12 +47,10 @@ public class ConsoleOutput implements CommunicationListener {
 	 * is parsed to be correctly displayed to the client.
 	 */
 	@Override
-	public void handleResponse(String msg) {
-		MessageParser msgParser = new MessageParser(msg);
-		MessageType msgType = msgParser.msgType;
-		switch (msgType) {
+	public void handleResponse(MessageType type, String body) {
+		switch (type) {
 		case GAME_RESPONSE:
-			String[] gameBody = msgParser.message.split(Constants.MSG_BODY_DELIMITER);
+			String[] gameBody = body.split(Constants.MSG_BODY_DELIMITER);
 			String gameWord = gameBody[Constants.MSG_BODY_GAME_WORD_INDEX];
 			String remainingAttempts = gameBody[Constants.MSG_BODY_GAME_ATTEMPTS_INDEX];
 			String score = gameBody[Constants.MSG_BODY_GAME_SCORE_INDEX];
@@ -63,28 +61,4 @@ public class ConsoleOutput implements CommunicationListener {
 		}
 		this.out.print(PROMPT);
 	}
-	
-	private class MessageParser{
-		private MessageType msgType;
-		private String message = null;
-		
-		private MessageParser (String message) {
-			String[] splittedMessage = message.split(Constants.MSG_TYPE_DELIMITER);
-			this.msgType = MessageType.valueOf(getParameter(splittedMessage, Constants.MSG_TYPE_INDEX));
-			switch (this.msgType) {
-			case GAME_RESPONSE:
-				this.message = getParameter(splittedMessage, Constants.MSG_BODY_INDEX);
-				break;
-			default:
-				break;
-			}
-
-		}
-		
-		private String getParameter(String[] strArray, int index) {
-			if(strArray == null) return null;
-			if(index >= strArray.length) return null;
-			return strArray[index];
-		}
-	}
 }
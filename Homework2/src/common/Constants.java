@@ -11,9 +11,4 @@ public class Constants {
 	public static final int MSG_BODY_GAME_ATTEMPTS_INDEX = 1;
 	public static final int MSG_BODY_GAME_SCORE_INDEX = 2;
 	public static final int MAX_MSG_LENGTH = 4096;
-	public static final String MSG_LEN_DELIMITER = "###";
-	public static final String MSG_TYPE_DELIMITER = "##";
-	public static final int MSG_LEN_INDEX = 0;
-	public static final int MSG_TYPE_INDEX = 0;
-	public static final int MSG_BODY_INDEX = 1;
 }
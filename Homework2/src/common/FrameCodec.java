@@ -0,0 +1,251 @@
+package common;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the frames that the client and the server exchange, directly on
+ * <code>ByteBuffer</code>. A frame is the length of its payload in bytes as a 4-byte int,
+ * followed by the payload: one byte with the ordinal of the {@link MessageType} and the
+ * body of the message in UTF-8.
+ *
+ * Frames are decoded from the buffer a channel was read into, where they are. Only the
+ * bytes of a frame that is not completely read yet are copied, to an accumulation buffer
+ * that is kept until the frame is complete. The decoded body is kept in a reused
+ * <code>CharBuffer</code> and the encoder and the decoder are reused too, so coding a
+ * frame allocates nothing once the buffers have grown to the largest frame. The buffers
+ * are allocated when they are first needed, a connection that is idle has none.
+ *
+ * A <code>FrameCodec</code> belongs to one connection. It may decode on one thread and
+ * encode on another, but neither of them on two threads at the same time.
+ *
+ * @author Antonio
+ *
+ */
+public final class FrameCodec {
+	/**
+	 * The number of bytes of the length of a frame.
+	 */
+	public static final int LENGTH_BYTES = 4;
+	/**
+	 * The largest payload of a frame in bytes, longer frames are rejected.
+	 */
+	public static final int MAX_PAYLOAD_BYTES = Constants.MAX_MSG_LENGTH;
+	private static final int TYPE_BYTES = 1;
+	private static final int MAX_BYTES_PER_CHAR = 3;
+	private static final int MIN_BUFFER_SIZE = 64;
+	private static final MessageType[] TYPES = MessageType.values();
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	//Used by the encoding thread only
+	private CharBuffer bodyToEncode;
+	//Used by the decoding thread only
+	private CharBuffer body;
+	private MessageType type;
+	//The bytes of a frame that is not completely read yet; allocated with the first such frame
+	private ByteBuffer partialFrame;
+
+	/**
+	 * @param body the body of a message
+	 * @return the most bytes the frame of the message can take.
+	 */
+	public static int maxFrameBytes(CharSequence body) {
+		return LENGTH_BYTES + TYPE_BYTES + body.length() * MAX_BYTES_PER_CHAR;
+	}
+
+	/**
+	 * Writes a frame to a buffer, from its position on.
+	 * @param type the type of the message
+	 * @param body the body of the message; can be empty.
+	 * @param out the buffer to write to.
+	 * @return <code>true</code> if the frame was written; <code>false</code> if it does not fit
+	 * in the remaining space of the buffer, which is then left as it was.
+	 * @throws IllegalArgumentException if the payload is longer than {@link #MAX_PAYLOAD_BYTES}.
+	 */
+	public boolean encode(MessageType type, CharSequence body, ByteBuffer out) {
+		int start = out.position();
+		if(out.remaining() < LENGTH_BYTES + TYPE_BYTES) {
+			return false;
+		}
+		out.position(start + LENGTH_BYTES);
+		out.put((byte) type.ordinal());
+		CharBuffer chars = charsToEncode(body);
+		this.encoder.reset();
+		if(this.encoder.encode(chars, out, true).isOverflow() || this.encoder.flush(out).isOverflow()) {
+			out.position(start);
+			return false;
+		}
+		int payloadBytes = out.position() - start - LENGTH_BYTES;
+		if(payloadBytes > MAX_PAYLOAD_BYTES) {
+			out.position(start);
+			throw new IllegalArgumentException("The message is longer than " + MAX_PAYLOAD_BYTES + " bytes");
+		}
+		out.putInt(start, payloadBytes);
+		return true;
+	}
+
+	/**
+	 * Writes a frame to a new buffer of the size of the frame.
+	 * @param type the type of the message
+	 * @param body the body of the message; can be empty.
+	 * @return the frame, ready to be written to a channel.
+	 */
+	public ByteBuffer encode(MessageType type, CharSequence body) {
+		ByteBuffer frame = ByteBuffer.allocate(maxFrameBytes(body));
+		encode(type, body, frame);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Decodes the next frame from a buffer that was read into and flipped. When the buffer
+	 * ends with a part of a frame, the part is kept and the frame is decoded once the
+	 * rest of it is passed in. The type and the body of the decoded frame are available
+	 * from {@link #getType()} and {@link #getBody()} until the next frame is decoded.
+	 * @param in the read bytes, from the position on.
+	 * @return <code>true</code> if a frame was decoded; <code>false</code> if all bytes of the
+	 * buffer were taken and they end before the next frame does.
+	 * @throws ProtocolException if the frame is longer than {@link #MAX_PAYLOAD_BYTES} or not a message.
+	 */
+	public boolean decode(ByteBuffer in) throws ProtocolException {
+		if(this.partialFrame != null && this.partialFrame.position() > 0) {
+			if(!completePartialFrame(in)) {
+				return false;
+			}
+			this.partialFrame.flip();
+			decodeFrame(this.partialFrame, this.partialFrame.getInt());
+			this.partialFrame.clear();
+			return true;
+		}
+		if(in.remaining() >= LENGTH_BYTES) {
+			int payloadBytes = payloadBytes(in.getInt(in.position()));
+			if(in.remaining() >= LENGTH_BYTES + payloadBytes) {
+				in.position(in.position() + LENGTH_BYTES);
+				decodeFrame(in, payloadBytes);
+				return true;
+			}
+		}
+		if(in.hasRemaining()) {
+			keepPartialFrame(in);
+		}
+		return false;
+	}
+
+	/**
+	 * @return the type of the last decoded frame.
+	 */
+	public MessageType getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return the body of the last decoded frame, the buffer is reused by the next frame;
+	 * or <code>null</code> if no frame was decoded yet.
+	 */
+	public CharSequence getBody() {
+		return this.body;
+	}
+
+	/**
+	 * @return <code>true</code> if a part of a frame is kept, waiting for the rest of it.
+	 */
+	public boolean hasPartialFrame() {
+		return this.partialFrame != null && this.partialFrame.position() > 0;
+	}
+
+	private CharBuffer charsToEncode(CharSequence body) {
+		this.bodyToEncode = ensureCapacity(this.bodyToEncode, body.length());
+		this.bodyToEncode.clear();
+		this.bodyToEncode.append(body);
+		this.bodyToEncode.flip();
+		return this.bodyToEncode;
+	}
+
+	private void decodeFrame(ByteBuffer frame, int payloadBytes) throws ProtocolException {
+		int end = frame.position() + payloadBytes;
+		int ordinal = frame.get();
+		if(ordinal < 0 || ordinal >= TYPES.length) {
+			throw new ProtocolException("Unknown message type " + ordinal);
+		}
+		this.type = TYPES[ordinal];
+		int bodyBytes = payloadBytes - TYPE_BYTES;
+		//UTF-8 never decodes to more chars than bytes
+		this.body = ensureCapacity(this.body, bodyBytes);
+		this.body.clear();
+		int limit = frame.limit();
+		frame.limit(end);
+		this.decoder.reset();
+		CoderResult result = this.decoder.decode(frame, this.body, true);
+		if(!result.isError()) {
+			this.decoder.flush(this.body);
+		}
+		frame.limit(limit);
+		frame.position(end);
+		this.body.flip();
+	}
+
+	//Moves as much of the rest of the partial frame as there is from in, returns true if it is complete
+	private boolean completePartialFrame(ByteBuffer in) throws ProtocolException {
+		if(this.partialFrame.position() < LENGTH_BYTES) {
+			transfer(in, LENGTH_BYTES - this.partialFrame.position());
+			if(this.partialFrame.position() < LENGTH_BYTES) {
+				return false;
+			}
+		}
+		int frameBytes = LENGTH_BYTES + payloadBytes(this.partialFrame.getInt(0));
+		ensurePartialFrameCapacity(frameBytes);
+		transfer(in, frameBytes - this.partialFrame.position());
+		return this.partialFrame.position() == frameBytes;
+	}
+
+	private void keepPartialFrame(ByteBuffer in) throws ProtocolException {
+		int frameBytes = in.remaining() < LENGTH_BYTES ? LENGTH_BYTES : LENGTH_BYTES + payloadBytes(in.getInt(in.position()));
+		ensurePartialFrameCapacity(frameBytes);
+		this.partialFrame.put(in);
+	}
+
+	private void ensurePartialFrameCapacity(int frameBytes) {
+		if(this.partialFrame == null) {
+			this.partialFrame = ByteBuffer.allocate(Math.max(frameBytes, MIN_BUFFER_SIZE));
+		} else if(this.partialFrame.capacity() < frameBytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(frameBytes, this.partialFrame.capacity() * 2));
+			this.partialFrame.flip();
+			larger.put(this.partialFrame);
+			this.partialFrame = larger;
+		}
+	}
+
+	private static CharBuffer ensureCapacity(CharBuffer chars, int capacity) {
+		if(chars == null) {
+			return CharBuffer.allocate(Math.max(capacity, MIN_BUFFER_SIZE));
+		}
+		if(chars.capacity() < capacity) {
+			return CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+		}
+		return chars;
+	}
+
+	private void transfer(ByteBuffer in, int bytes) {
+		int limit = in.limit();
+		in.limit(in.position() + Math.min(bytes, in.remaining()));
+		this.partialFrame.put(in);
+		in.limit(limit);
+	}
+
+	private static int payloadBytes(int length) throws ProtocolException {
+		if(length < TYPE_BYTES || length > MAX_PAYLOAD_BYTES) {
+			throw new ProtocolException("Invalid frame length " + length);
+		}
+		return length;
+	}
+}
@@ -1,7 +1,8 @@
 package common;
 
 /**
- * Different message types.
+ * Different message types. A frame carries the ordinal of its type, see {@link FrameCodec},
+ * so new types are added at the end.
  * 
  * @author Antonio
  *
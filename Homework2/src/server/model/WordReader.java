@@ -9,29 +9,32 @@ import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Reads words from a specific word text file for the hangman game.
- * See {@link HangmanGame}.
+ * See {@link HangmanGame}. Every game has a <code>WordReader</code>, the file is
+ * read by the first one and the words are shared by all of them.
  * 
  * @author Antonio
  *
  */
 public class WordReader {
+	private static final int INITIAL_BUFFER_BYTES = 8092*100;
 	private static final String WORD_FILE_PATH = "\\src\\server\\resources\\words.txt";
 	private static final String WORD_FILE_TOTAL_PATH = System.getProperty("user.dir") + WordReader.WORD_FILE_PATH;
+	private static List<String> sharedWords;
 	private final Path path;
 	private List<String> words;
 
 	/**
-	 * Creates a <code>WordReader</code> and reads in the the file with a non-blocking
-	 * <code>FileChannel</code> and stores the words in <code>words</code>.
+	 * Creates a <code>WordReader</code> with the words of the file. The first one reads in
+	 * the file with an <code>AsynchronousFileChannel</code>, the others wait for its words.
 	 * @throws IOException if some error occurs with reading the file.
 	 */
 	WordReader() throws IOException{
 		this.path = Paths.get(WORD_FILE_TOTAL_PATH);
-		this.words = readInWordsNonBlocking();
+		this.words = sharedWords(this);
 	}
 
 	/**
@@ -42,16 +45,35 @@ public class WordReader {
 		return this.words.get(rand.nextInt(this.words.size())).toUpperCase();
 	}
 
+	private static synchronized List<String> sharedWords(WordReader reader) throws IOException {
+		if(sharedWords == null) {
+			sharedWords = reader.readInWordsNonBlocking();
+		}
+		return sharedWords;
+	}
+
+	//Reads until the end of the file, the buffer is doubled whenever it is full
 	private List<String> readInWordsNonBlocking() throws IOException {
-		AsynchronousFileChannel asyncChannel = AsynchronousFileChannel.open(this.path, StandardOpenOption.READ);
-		ByteBuffer inBuffer = ByteBuffer.allocate(8092*100);
-		long position = 0;
-		Future<Integer> operation = asyncChannel.read(inBuffer, position);
-		while(!operation.isDone());	
+		ByteBuffer inBuffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+		try(AsynchronousFileChannel asyncChannel = AsynchronousFileChannel.open(this.path, StandardOpenOption.READ)) {
+			int readBytes;
+			while((readBytes = asyncChannel.read(inBuffer, inBuffer.position()).get()) != -1) {
+				if(readBytes == 0 && !inBuffer.hasRemaining()) {
+					ByteBuffer larger = ByteBuffer.allocate(inBuffer.capacity() * 2);
+					inBuffer.flip();
+					larger.put(inBuffer);
+					inBuffer = larger;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading the word file", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to read the word file", e.getCause());
+		}
 		inBuffer.flip();
 		byte[] data = new byte[inBuffer.limit()];
 		inBuffer.get(data);
-		inBuffer.clear();
 		return parseReadInWordFile(new String(data));
 	}
 	
@@ -0,0 +1,166 @@
+package server.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct <code>ByteBuffer</code> in a few size classes, carved from large
+ * direct slabs. A buffer is borrowed for as long as it is needed, e.g the buffer a
+ * channel is read into until the frames in it are decoded, and then released back
+ * to the free list of its size class; the slabs are kept. So the memory of the buffers
+ * follows the number of clients that are reading or have responses queued, not the
+ * number of clients that are connected.
+ *
+ * Direct buffers are written to and read from a channel as they are, a heap buffer is
+ * copied to a temporary direct buffer by the JDK on every write and read.
+ *
+ * A <code>BufferPool</code> belongs to one {@link Reactor} and is used by its thread only,
+ * so it does not lock. The metrics may be read from any thread.
+ *
+ * @author Antonio
+ *
+ */
+public final class BufferPool {
+	/**
+	 * The capacities of the buffers of the pool, from the smallest.
+	 */
+	public static final int[] SIZE_CLASSES = {256, 1024, 4096, 16384};
+	/**
+	 * The bytes of a slab, the buffers of a size class are carved from slabs of this size.
+	 */
+	public static final int SLAB_BYTES = 1 << 20;
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final ArrayDeque<ByteBuffer>[] freeBuffers = new ArrayDeque[SIZE_CLASSES.length];
+	//Written by the thread of the reactor only
+	private volatile long slabs = 0;
+	private volatile long buffersInUse = 0;
+	private volatile long bytesInUse = 0;
+	private volatile long peakBytesInUse = 0;
+	private volatile long borrows = 0;
+	private volatile long unpooledBorrows = 0;
+
+	/**
+	 * Creates an empty <code>BufferPool</code>, slabs are allocated when they are needed.
+	 */
+	public BufferPool() {
+		for(int i = 0; i < this.freeBuffers.length; i++) {
+			this.freeBuffers[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Borrows a cleared buffer of the smallest size class that holds the given number of
+	 * bytes. Larger buffers are not pooled, they are allocated on the heap.
+	 * @param bytes the number of bytes needed.
+	 * @return a buffer of at least the given capacity.
+	 */
+	public ByteBuffer borrow(int bytes) {
+		this.borrows++;
+		int sizeClass = sizeClassOf(bytes);
+		if(sizeClass < 0) {
+			this.unpooledBorrows++;
+			return ByteBuffer.allocate(bytes);
+		}
+		ArrayDeque<ByteBuffer> free = this.freeBuffers[sizeClass];
+		if(free.isEmpty()) {
+			carveSlab(sizeClass);
+		}
+		ByteBuffer buffer = free.pop();
+		this.buffersInUse++;
+		this.bytesInUse += buffer.capacity();
+		if(this.bytesInUse > this.peakBytesInUse) {
+			this.peakBytesInUse = this.bytesInUse;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Releases a borrowed buffer back to the pool. The buffer must not be used after this.
+	 * @param buffer a buffer borrowed from this pool.
+	 */
+	public void release(ByteBuffer buffer) {
+		if(!buffer.isDirect()) {
+			return;
+		}
+		int sizeClass = sizeClassOf(buffer.capacity());
+		buffer.clear();
+		this.freeBuffers[sizeClass].push(buffer);
+		this.buffersInUse--;
+		this.bytesInUse -= buffer.capacity();
+	}
+
+	/**
+	 * @return the number of slabs allocated.
+	 */
+	public long getSlabs() {
+		return this.slabs;
+	}
+
+	/**
+	 * @return the bytes of the slabs allocated, i.e the direct memory of the pool.
+	 */
+	public long getReservedBytes() {
+		return this.slabs * SLAB_BYTES;
+	}
+
+	/**
+	 * @return the number of buffers borrowed and not released yet.
+	 */
+	public long getBuffersInUse() {
+		return this.buffersInUse;
+	}
+
+	/**
+	 * @return the bytes of the buffers borrowed and not released yet.
+	 */
+	public long getBytesInUse() {
+		return this.bytesInUse;
+	}
+
+	/**
+	 * @return the most bytes that were borrowed at the same time.
+	 */
+	public long getPeakBytesInUse() {
+		return this.peakBytesInUse;
+	}
+
+	/**
+	 * @return the number of buffers borrowed so far.
+	 */
+	public long getBorrows() {
+		return this.borrows;
+	}
+
+	/**
+	 * @return the number of buffers borrowed so far that were too large for the pool.
+	 */
+	public long getUnpooledBorrows() {
+		return this.unpooledBorrows;
+	}
+
+	@Override
+	public String toString() {
+		return "slabs=" + this.slabs + " reserved=" + getReservedBytes() + "B inUse=" + this.buffersInUse
+				+ " (" + this.bytesInUse + "B, peak " + this.peakBytesInUse + "B) borrows=" + this.borrows
+				+ " unpooled=" + this.unpooledBorrows;
+	}
+
+	private void carveSlab(int sizeClass) {
+		ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_BYTES);
+		int size = SIZE_CLASSES[sizeClass];
+		for(int offset = 0; offset + size <= SLAB_BYTES; offset += size) {
+			slab.limit(offset + size).position(offset);
+			this.freeBuffers[sizeClass].push(slab.slice());
+		}
+		this.slabs++;
+	}
+
+	private static int sizeClassOf(int bytes) {
+		for(int i = 0; i < SIZE_CLASSES.length; i++) {
+			if(bytes <= SIZE_CLASSES[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
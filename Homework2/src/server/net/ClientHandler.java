@@ -4,89 +4,105 @@ package server.net;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import common.Constants;
-import common.MessageDivider;
+import common.FrameCodec;
 import common.MessageType;
 import server.controller.Controller;
 
 /**
  * A <code>ClientHandler</code> which handles communication with one client only.
+ * The messages are read on the thread of the reactor, and handled either there or,
+ * in order, on a pool of worker threads, see {@link ExecutionMode}. The reactor does not
+ * read from a client while more than <code>MAX_PENDING_MESSAGES</code> of its messages wait
+ * for a worker, and reads again once the workers have caught up. A message whose handling
+ * throws on a worker removes the client, as it does on the thread of the reactor.
  * 
  * @author Antonio
  *
  */
 public class ClientHandler {
-	private final HangmanServer server;
+	private static final int MAX_PENDING_MESSAGES = 64;
+	private final Reactor reactor;
 	private final SocketChannel clientChannel;
-	private final ByteBuffer fromClient = ByteBuffer.allocate(Constants.MAX_MSG_LENGTH);
-	private final MessageDivider messageDivider = new MessageDivider();
+	private final FrameCodec codec = new FrameCodec();
 	private final Controller controller = new Controller();
+	private final Executor executor;
+	//Messages handed to the workers and not handled yet
+	private final AtomicInteger pendingMessages = new AtomicInteger();
 	
 	/**
-	 * Creates a <code>ClientHandler</code> with a reference to the server
+	 * Creates a <code>ClientHandler</code> with a reference to its reactor
 	 * and a <code>SocketChannel</code> to the client.
-	 * @param server the server
+	 * @param reactor the <code>Reactor</code> the client belongs to.
 	 * @param socketChannel the <code>SocketChannel</code> to the client.
+	 * @param workers the pool to handle the messages on; or <code>null</code> to handle them
+	 * on the thread of the reactor.
 	 */
-	ClientHandler(HangmanServer server, SocketChannel socketChannel){
+	ClientHandler(Reactor reactor, SocketChannel socketChannel, Executor workers){
 		this.clientChannel = socketChannel;
-		this.server = server;
+		this.reactor = reactor;
+		this.executor = workers == null ? null : new SerialExecutor(workers);
 	}
 	
 	/**
-	 * Runs whenever a message is received from the client to act accordingly.
+	 * Called whenever a message is received from the client and needs to be
+	 * read. Clears the <code>ByteBuffer</code> before filling with the read
+	 * bytes, then the frames are decoded from the read bytes where they are, see
+	 * {@link FrameCodec}. Every message is handled right away, or after the messages
+	 * read before on a worker thread. The buffer is not used after this returns, a
+	 * frame that is not completely read yet is kept by the codec.
+	 * @param fromClient the buffer to read into, lent by the reactor.
+	 * @throws IOException when the connection to the client is lost, or it sent something
+	 * that is not a frame.
 	 */
-	public void run() {
-		while(this.messageDivider.hasNext()) {
-			ClientMessage clientMessage = new ClientMessage(this.messageDivider.nextMessage());
-			String response;
-			switch (MessageType.valueOf(clientMessage.msgType)) {
-			case START:
-				response = this.controller.startGame();
-				this.server.respondToClient(this.clientChannel, response);
-				break;
-			case GUESS:
-				response = this.controller.makeGuess(clientMessage.body);
-				this.server.respondToClient(clientChannel, response);
-				break;
-			case DISCONNECT:
-				//See HangmanServer.readFromClient
-				break;
-			default:
-				break;
+	void readMessage(ByteBuffer fromClient) throws IOException {
+		fromClient.clear();
+		int numOfReadBytes = this.clientChannel.read(fromClient);
+		if(numOfReadBytes == -1) {
+			throw new IOException("Connection to client closed!");
+		}
+		fromClient.flip();
+		while(this.codec.decode(fromClient)) {
+			if(this.executor == null) {
+				handleMessage(this.codec.getType(), this.codec.getBody());
+			} else {
+				//The body buffer is reused by the next frame
+				MessageType type = this.codec.getType();
+				String body = this.codec.getBody().toString();
+				this.pendingMessages.incrementAndGet();
+				this.executor.execute(() -> handlePendingMessage(type, body));
 			}
 		}
 	}
 	
 	/**
-	 * Called whenever a message is received from the client and needs to be
-	 * read. Clears the <code>ByteBuffer</code> before filling with the read
-	 * bytes, then the message is extracted from the read bytes and added to
-	 * the <code>MessageSplitter</code>. Finally it runs the ClientHandler.run 
-	 * method.
-	 * @throws IOException when the connection to the client is lost.
+	 * @return <code>true</code> if the reactor may read more messages of this client; <code>false</code>
+	 * if too many of them wait for a worker, the reactor is told with <code>resumeReading</code>
+	 * once they do not.
 	 */
-	void readMessage() throws IOException {
-		this.fromClient.clear();
-		int numOfReadBytes = this.clientChannel.read(this.fromClient);
-		if(numOfReadBytes == -1) {
-			throw new IOException("Connection to client closed!");
-		}
-		String receivedMessage = extractBufferMessage();
-		this.messageDivider.addReceivedMessage(receivedMessage);
-		//ForkJoinPool.commonPool().execute(this);
-		run();
+	boolean acceptsMessages() {
+		return this.pendingMessages.get() <= MAX_PENDING_MESSAGES;
+	}
+	
+	/**
+	 * @return the codec of the frames of this client.
+	 */
+	FrameCodec getCodec() {
+		return this.codec;
 	}
 	
 	/**
-	 * Called to send a <code>ByteBuffer</code> message to the client.
+	 * Called to send encoded messages to the client in one write. The channel is
+	 * non-blocking, so it may take only a part of the messages; the rest is left in
+	 * the buffer, from its position on.
 	 * 
-	 * @param msg the <code>ByteBuffer</code> message.
+	 * @param msgs the <code>ByteBuffer</code> with the messages.
 	 * @throws IOException if some I/O problem occurs.
 	 */
-	void sendMessage(ByteBuffer msg) throws IOException {
-		this.clientChannel.write(msg);
+	void sendMessages(ByteBuffer msgs) throws IOException {
+		this.clientChannel.write(msgs);
 	}
 	
 	/**
@@ -97,35 +113,33 @@ public class ClientHandler {
 		this.clientChannel.close();
 	}
 	
-	private String extractBufferMessage() {
-		this.fromClient.flip();
-		byte[] bytes = new byte[this.fromClient.remaining()];
-		this.fromClient.get(bytes);
-		return new String(bytes);
+	private void handlePendingMessage(MessageType type, CharSequence body) {
+		try {
+			handleMessage(type, body);
+		} catch (RuntimeException exc) {
+			System.err.println("Failed to handle a message, disconnecting the client:");
+			exc.printStackTrace();
+			this.reactor.removeFailedClient(this.clientChannel);
+		} finally {
+			if(this.pendingMessages.decrementAndGet() == MAX_PENDING_MESSAGES) {
+				this.reactor.resumeReading(this.clientChannel);
+			}
+		}
 	}
 	
-	private class ClientMessage{
-		private String msgType;
-		private String body = null;
-		private String[] splittedMessage;
-		
-		private ClientMessage(String clientMessage) {
-			this.splittedMessage = clientMessage.split(Constants.MSG_TYPE_DELIMITER);
-			this.msgType = getParameter(splittedMessage, Constants.MSG_TYPE_INDEX);
-			switch (MessageType.valueOf(this.msgType)) {
-			case GUESS:
-				this.body = getParameter(splittedMessage, Constants.MSG_BODY_INDEX);
-				break;
-			default:
-				break;
-			}	
-			
-		}
-		
-		private String getParameter(String[] splittedMsg, int index) {
-			if(index >= this.splittedMessage.length) return null;
-			if(splittedMsg == null) return null;
-			return this.splittedMessage[index];
+	private void handleMessage(MessageType type, CharSequence body) {
+		switch (type) {
+		case START:
+			this.reactor.respondToClient(this.clientChannel, this.controller.startGame());
+			break;
+		case GUESS:
+			this.reactor.respondToClient(this.clientChannel, this.controller.makeGuess(body.toString()));
+			break;
+		case DISCONNECT:
+			//See Reactor.readFromClient
+			break;
+		default:
+			break;
 		}
 	}
 }
@@ -0,0 +1,21 @@
+package server.net;
+
+/**
+ * Where the <code>ClientHandler</code> handles the messages of its client, see
+ * {@link HangmanServer}.
+ * 
+ * @author Antonio
+ *
+ */
+public enum ExecutionMode {
+	/**
+	 * On the thread of the reactor that read the messages.
+	 */
+	SELECTOR,
+	
+	/**
+	 * On a pool of worker threads, in order for every client, so that a slow message
+	 * does not stall the other clients of the reactor.
+	 */
+	WORKER_POOL
+}
@@ -2,166 +2,141 @@ package server.net;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.StandardSocketOptions;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayDeque;
-import java.util.Iterator;
-import java.util.Queue;
-
-import common.MessageDivider;
-import common.MessageType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * The class <code>HangmanServer</code> will run in a specified port and with a 
- * non-blocking <code>ServerSocketChannel</code> and is also responsible of
- * managing the client nodes with a <code>Selector</code>; i.e all communication passes through here.
- * 
+ * The class <code>HangmanServer</code> will run in a specified port with a
+ * <code>ServerSocketChannel</code> and hands the clients to one or more {@link Reactor},
+ * selector loops that manage the client nodes; i.e all communication passes through them.
+ *
+ * With one reactor the thread that runs the server accepts, reads, handles and writes
+ * everything, like a single selector loop. With more reactors the thread that runs the
+ * server only accepts clients and hands them round-robin to the reactors, each running on
+ * its own thread, so that the clients are served on as many cores. A client stays with
+ * its reactor, so nothing on the path from reading to writing is shared between them.
+ *
+ * The messages are handled on the thread of the reactor, or on a pool of worker threads
+ * shared by the reactors, see {@link ExecutionMode}. Every reactor borrows the buffers of
+ * its clients from a {@link BufferPool} of its own.
+ *
  * @author Antonio
  *
  */
 public class HangmanServer {
-	private static final int LINGER_TIME = 5000;
+	//Clients that connected but are not accepted yet, many connect at once when the server is busy
+	private static final int BACKLOG = 1024;
 	private int port = 8000; //default
-	private Selector selector;
-	private ServerSocketChannel serverSocketChannel;
-	private Queue<ByteBuffer> bufferToClient = new ArrayDeque<>();
-	
-	
-	
+	private final int reactorCount;
+	private final ExecutionMode mode;
+	private final int poolSize;
+	private final BufferPool[] bufferPools;
+
 	/**
-	 * Creates a <code>HangmanServer</code>
+	 * Creates a <code>HangmanServer</code> with a single reactor.
 	 * @param port The port where the server will be started on.
 	 */
 	public HangmanServer(int port) {
+		this(port, 1);
+	}
+
+	/**
+	 * Creates a <code>HangmanServer</code>
+	 * @param port The port where the server will be started on.
+	 * @param reactorCount the number of selector loops, e.g the number of cores.
+	 */
+	public HangmanServer(int port, int reactorCount) {
+		this(port, reactorCount, ExecutionMode.SELECTOR, 0);
+	}
+
+	/**
+	 * Creates a <code>HangmanServer</code>
+	 * @param port The port where the server will be started on.
+	 * @param reactorCount the number of selector loops, e.g the number of cores.
+	 * @param mode where the messages are handled.
+	 * @param poolSize the number of worker threads, used with {@link ExecutionMode#WORKER_POOL}.
+	 */
+	public HangmanServer(int port, int reactorCount, ExecutionMode mode, int poolSize) {
 		this.port = port;
+		this.reactorCount = Math.max(1, reactorCount);
+		this.mode = mode;
+		this.poolSize = Math.max(1, poolSize);
+		this.bufferPools = new BufferPool[this.reactorCount];
+		for(int i = 0; i < this.bufferPools.length; i++) {
+			this.bufferPools[i] = new BufferPool();
+		}
 	}
 	
 	/**
-	 * Runs the server. This means that it will first configure itself by creating a
-	 * <code>Selector</code> for handling clients nodes, opening a <code>ServerSocketChannel</code>
-	 * and configuring it to be non-blocking and started on the specified port number and also
-	 * registered with the created <code>Selector</code> to wait for new clients. It will then
-	 * live and handle ready <code>SelectionKey</code> accordingly.
+	 * @return the buffer pools of the reactors, e.g to read their metrics.
+	 */
+	public List<BufferPool> getBufferPools() {
+		return Collections.unmodifiableList(Arrays.asList(this.bufferPools));
+	}
+
+	/**
+	 * Runs the server. This means that it will first open a <code>ServerSocketChannel</code>
+	 * on the specified port number. With a single reactor the channel is configured to be
+	 * non-blocking and registered with the <code>Selector</code> of the reactor, which then runs
+	 * in this thread. Otherwise the reactors are started in threads of their own, and this
+	 * thread accepts new clients and hands them to the reactors in turn.
 	 */
 	public void run() {
 		try {
-			config();
-			System.out.println("Server socket on port: " + this.port);
-			while(true) {
-				this.selector.select();
-				Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
-				while(iterator.hasNext()) {
-					SelectionKey key = iterator.next();
-					iterator.remove();
-					if(!key.isValid()) {
-						continue;
-					}
-					if(key.isAcceptable()) {
-						startClientHandler(key);
-					} else if (key.isReadable()) {
-						readFromClient(key);
-					} else if (key.isWritable()) {
-						writeToClient(key);
-					}
-				}
+			ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+			serverSocketChannel.bind(new InetSocketAddress(this.port), BACKLOG);
+			System.out.println("Server socket on port: " + this.port + " (" + this.reactorCount
+					+ (this.reactorCount == 1 ? " reactor, " : " reactors, ") + describeMode() + ")");
+			ExecutorService workers = createWorkers();
+			if(this.reactorCount == 1) {
+				serverSocketChannel.configureBlocking(false);
+				new Reactor(serverSocketChannel, workers, this.bufferPools[0]).run();
+				return;
+			}
+			Reactor[] reactors = startReactors(workers);
+			for(int next = 0; ; next = (next + 1) % reactors.length) {
+				SocketChannel clientChannel = serverSocketChannel.accept();
+				reactors[next].addClient(clientChannel);
 			}
-			
+
 		} catch(IOException exc) {
 			System.err.println("Caught exception from HangmanServer:");
 			exc.printStackTrace();
 		}
-		
-	}
-	
-	/**
-	 * Called from a <code>ClientHandler</code> to tell the server that the 
-	 * given message is to be sent to the client. It will then add the message
-	 * converted into a <code>ByteBuffer</code> to the <code>bufferToClient</code>
-	 * and set the key representing the given channel to a write operation. Finally
-	 * the <code>Selector</code> is woken up.
-	 * @param channel the given client channel.
-	 * @param msg the given message.
-	 */
-	void respondToClient(SocketChannel channel, String msg) {
-		ByteBuffer completeMessage = convertToByteBuffer(msg);
-		synchronized(this.bufferToClient) {
-			this.bufferToClient.add(completeMessage);
-		}
-		channel.keyFor(this.selector).interestOps(SelectionKey.OP_WRITE);
-		selector.wakeup();
-	}
-	
-	private ByteBuffer convertToByteBuffer(String msg) {
-		msg = MessageDivider.addMsgTypeHeader(MessageType.GAME_RESPONSE.toString(), msg);
-		String msgWithLengthHeader = MessageDivider.addLengthHeader(msg);
-		return ByteBuffer.wrap(msgWithLengthHeader.getBytes());
-	}
-	
-	private void config() throws IOException {
-		this.selector = Selector.open();
-		this.serverSocketChannel = ServerSocketChannel.open();
-		this.serverSocketChannel.configureBlocking(false);
-		this.serverSocketChannel.bind(new InetSocketAddress(this.port));
-		this.serverSocketChannel.register(this.selector, SelectionKey.OP_ACCEPT);
-	}
-	
-	private void startClientHandler(SelectionKey key) throws IOException {
-		ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
-		SocketChannel clientChannel = serverChannel.accept();
-		clientChannel.configureBlocking(false);
-		ClientHandler clientHandler = new ClientHandler(this, clientChannel);
-		clientChannel.register(this.selector, SelectionKey.OP_WRITE, new HangmanClient(clientHandler));
-		clientChannel.setOption(StandardSocketOptions.SO_LINGER, LINGER_TIME);
+
 	}
-	
-	private void readFromClient(SelectionKey key) throws IOException {
-		HangmanClient client = (HangmanClient) key.attachment();
-		try {
-			client.handler.readMessage();
-		} catch (IOException clientHasLeft) {
-			removeClient(key);
-		}
+
+	private String describeMode() {
+		return this.mode == ExecutionMode.WORKER_POOL ? this.poolSize + " workers" : "handled on the selector";
 	}
-	
-	private void writeToClient(SelectionKey key) throws IOException {
-		HangmanClient client = (HangmanClient) key.attachment();
-		try {
-			client.send();
-			key.interestOps(SelectionKey.OP_READ);
-		} catch (IOException e) {
-			e.printStackTrace();
-			removeClient(key);
+
+	private ExecutorService createWorkers() {
+		if(this.mode != ExecutionMode.WORKER_POOL) {
+			return null;
 		}
-		
-	}
-	
-	private void removeClient(SelectionKey key) throws IOException {
-		HangmanClient client = (HangmanClient) key.attachment();
-		client.handler.disconnectClient();
-		key.cancel();
+		AtomicInteger workerCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(this.poolSize, runnable -> {
+			Thread worker = new Thread(runnable, "worker-" + workerCount.getAndIncrement());
+			worker.setDaemon(true);
+			return worker;
+		});
 	}
-	
-	
-	private class HangmanClient{
-		private final ClientHandler handler;
-		
-		private HangmanClient(ClientHandler handler) {
-			this.handler = handler;
-		}
-		
-		private void send() throws IOException {
-			ByteBuffer msg = null;
-			synchronized (bufferToClient) {
-				while((msg = bufferToClient.peek()) != null) {
-					this.handler.sendMessage(msg);
-					bufferToClient.remove();
-				}
-			}
+
+	private Reactor[] startReactors(ExecutorService workers) throws IOException {
+		Reactor[] reactors = new Reactor[this.reactorCount];
+		for(int i = 0; i < reactors.length; i++) {
+			reactors[i] = new Reactor(null, workers, this.bufferPools[i]);
+			Thread reactorThread = new Thread(reactors[i], "reactor-" + i);
+			reactorThread.setDaemon(true);
+			reactorThread.start();
 		}
+		return reactors;
 	}
-		
+
 }
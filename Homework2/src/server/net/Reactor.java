@@ -0,0 +1,393 @@
+package server.net;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import common.Constants;
+import common.FrameCodec;
+import common.MessageType;
+
+/**
+ * A selector loop that reads from, handles and writes to its own clients, see
+ * {@link HangmanServer}. A client belongs to one <code>Reactor</code> for as long as it is
+ * connected, and its <code>ClientHandler</code> only runs on the thread of the reactor.
+ * New clients are handed over through a queue and registered by the reactor itself.
+ * 
+ * When the messages are handled on worker threads, see {@link ExecutionMode}, the workers
+ * hand the responses back through a lock-free queue and wake up the selector, at most
+ * once until the reactor has taken the responses. Only the thread of the reactor writes
+ * to the clients and touches their queues of responses.
+ * 
+ * Every client has its own queue of responses that are not sent yet, a buffer the responses
+ * are encoded into, see {@link FrameCodec}. The responses to the messages of one read are
+ * written together, with one write, and what the socket did not take stays queued. A client
+ * is registered for <code>OP_WRITE</code> only while its queue is not empty, and the queue is
+ * written from where the last write stopped when the channel becomes writable again. A client
+ * that sends requests but does not read the responses is not read from while its queue holds
+ * more than <code>QUEUE_HIGH_WATER_BYTES</code>, so its queue is bounded by that and the
+ * responses to one read; it is read from again once the queue is written. Likewise a client
+ * is not read from while too many of its messages wait for a worker, see {@link ClientHandler},
+ * until the worker that catches up hands the client back like a response.
+ * 
+ * A failure of one client, e.g a client that is gone before it is registered, or a message
+ * whose handling throws, only removes that client; the reactor goes on serving the others.
+ * A worker whose handling of a message throws hands the client back to be removed.
+ * 
+ * The buffers are borrowed from the {@link BufferPool} of the reactor: the buffer a client
+ * is read into until the frames in it are decoded, and the queue of a client while it is
+ * not empty. An idle client holds no buffer.
+ * 
+ * @author Antonio
+ *
+ */
+class Reactor implements Runnable {
+	private static final int LINGER_TIME = 5000;
+	private static final int READ_BUFFER_BYTES = Constants.MAX_MSG_LENGTH;
+	private static final int QUEUE_HIGH_WATER_BYTES = 8192;
+	private final Selector selector;
+	private final Queue<SocketChannel> newClients = new ConcurrentLinkedQueue<>();
+	private final Queue<Response> handedOffResponses = new ConcurrentLinkedQueue<>();
+	private final Queue<SelectionKey> clientsToResume = new ConcurrentLinkedQueue<>();
+	private final Queue<SelectionKey> clientsToRemove = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean wakeupPending = new AtomicBoolean();
+	private final Queue<SelectionKey> clientsToWrite = new ArrayDeque<>();
+	private final Executor workers;
+	private final BufferPool bufferPool;
+	private volatile Thread selectorThread;
+	
+	/**
+	 * Creates a <code>Reactor</code>.
+	 * @param serverSocketChannel a non-blocking channel to accept clients from; or <code>null</code>
+	 * if the clients are handed over with {@link #addClient(SocketChannel)}.
+	 * @param workers the pool to handle the messages of the clients on; or <code>null</code> to
+	 * handle them on the thread of the reactor.
+	 * @param bufferPool the pool to borrow the buffers of the clients from, used by the reactor only.
+	 * @throws IOException if the <code>Selector</code> could not be opened.
+	 */
+	Reactor(ServerSocketChannel serverSocketChannel, Executor workers, BufferPool bufferPool) throws IOException {
+		this.workers = workers;
+		this.bufferPool = bufferPool;
+		this.selector = Selector.open();
+		if(serverSocketChannel != null) {
+			serverSocketChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+		}
+	}
+	
+	/**
+	 * Hands over an accepted client, it is registered by the thread of the reactor.
+	 * @param clientChannel the channel to the client.
+	 */
+	void addClient(SocketChannel clientChannel) {
+		this.newClients.add(clientChannel);
+		this.selector.wakeup();
+	}
+	
+	/**
+	 * Runs the selector loop and handles ready <code>SelectionKey</code> accordingly.
+	 */
+	@Override
+	public void run() {
+		this.selectorThread = Thread.currentThread();
+		try {
+			while(true) {
+				this.selector.select();
+				registerNewClients();
+				takeHandedOffResponses();
+				Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+				while(iterator.hasNext()) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					if(!key.isValid()) {
+						continue;
+					}
+					if(key.isAcceptable()) {
+						acceptClient((ServerSocketChannel) key.channel());
+						continue;
+					}
+					if(key.isReadable()) {
+						readFromClient(key);
+					}
+					if(key.isValid() && key.isWritable()) {
+						writeToClient(key);
+					}
+				}
+			}
+			
+		} catch(IOException exc) {
+			System.err.println("Caught exception from HangmanServer:");
+			exc.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Called from a <code>ClientHandler</code> to tell the reactor that the 
+	 * given message is to be sent to the client. The message is encoded into the queue of
+	 * the client. On the thread of the reactor the queue is written once the received messages
+	 * are handled, see <code>readFromClient</code>, so that all their responses leave in one
+	 * write. A worker thread encodes the message into a buffer of its own and hands it over to
+	 * the reactor instead.
+	 * @param channel the given client channel.
+	 * @param msg the given message.
+	 */
+	void respondToClient(SocketChannel channel, String msg) {
+		SelectionKey key = channel.keyFor(this.selector);
+		if(key == null) {
+			return;
+		}
+		HangmanClient client = (HangmanClient) key.attachment();
+		if(Thread.currentThread() != this.selectorThread) {
+			ByteBuffer frame = client.handler.getCodec().encode(MessageType.GAME_RESPONSE, msg);
+			this.handedOffResponses.add(new Response(key, frame));
+			wakeUp();
+			return;
+		}
+		if(key.isValid()) {
+			client.queue(msg);
+		}
+	}
+	
+	/**
+	 * Called by a worker thread when a client whose messages were not read any more, because
+	 * too many of them waited for the workers, may be read from again.
+	 * @param channel the given client channel.
+	 */
+	void resumeReading(SocketChannel channel) {
+		SelectionKey key = channel.keyFor(this.selector);
+		if(key == null) {
+			return;
+		}
+		this.clientsToResume.add(key);
+		wakeUp();
+	}
+	
+	/**
+	 * Called by a worker thread when the handling of a message of a client failed, the
+	 * client is removed by the thread of the reactor.
+	 * @param channel the given client channel.
+	 */
+	void removeFailedClient(SocketChannel channel) {
+		SelectionKey key = channel.keyFor(this.selector);
+		if(key == null) {
+			return;
+		}
+		this.clientsToRemove.add(key);
+		wakeUp();
+	}
+	
+	private void wakeUp() {
+		if(this.wakeupPending.compareAndSet(false, true)) {
+			this.selector.wakeup();
+		}
+	}
+	
+	//Removes the failed clients, queues the responses of the workers, and writes them once all are queued;
+	//which also reads again from the resumed clients
+	private void takeHandedOffResponses() {
+		this.wakeupPending.set(false);
+		SelectionKey failed;
+		while((failed = this.clientsToRemove.poll()) != null) {
+			if(failed.isValid()) {
+				removeClient(failed);
+			}
+		}
+		SelectionKey resumed;
+		while((resumed = this.clientsToResume.poll()) != null) {
+			this.clientsToWrite.add(resumed);
+		}
+		Response response;
+		while((response = this.handedOffResponses.poll()) != null) {
+			if(!response.key.isValid()) {
+				continue;
+			}
+			HangmanClient client = (HangmanClient) response.key.attachment();
+			if(!client.hasQueued()) {
+				this.clientsToWrite.add(response.key);
+			}
+			client.queue(response.frame);
+		}
+		SelectionKey key;
+		while((key = this.clientsToWrite.poll()) != null) {
+			if(key.isValid()) {
+				writeToClient(key);
+			}
+		}
+	}
+	
+	private void registerNewClients() {
+		SocketChannel clientChannel;
+		while((clientChannel = this.newClients.poll()) != null) {
+			startClientHandler(clientChannel);
+		}
+	}
+	
+	private void acceptClient(ServerSocketChannel serverSocketChannel) {
+		try {
+			startClientHandler(serverSocketChannel.accept());
+		} catch (IOException e) {
+			System.err.println("Failed to accept a client: " + e);
+		}
+	}
+	
+	private void startClientHandler(SocketChannel clientChannel) {
+		if(clientChannel == null) {
+			return;
+		}
+		try {
+			clientChannel.configureBlocking(false);
+			ClientHandler clientHandler = new ClientHandler(this, clientChannel, this.workers);
+			clientChannel.register(this.selector, SelectionKey.OP_READ, new HangmanClient(clientHandler, this.bufferPool));
+			clientChannel.setOption(StandardSocketOptions.SO_LINGER, LINGER_TIME);
+			//The responses are written in batches already, see respondToClient
+			clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		} catch (IOException clientHasLeft) {
+			//Closing the channel also cancels its key, if it was registered
+			closeChannel(clientChannel);
+		}
+	}
+	
+	private void readFromClient(SelectionKey key) {
+		HangmanClient client = (HangmanClient) key.attachment();
+		ByteBuffer fromClient = this.bufferPool.borrow(READ_BUFFER_BYTES);
+		try {
+			client.handler.readMessage(fromClient);
+		} catch (IOException clientHasLeft) {
+			removeClient(key);
+			return;
+		} catch (RuntimeException exc) {
+			System.err.println("Failed to handle a message, disconnecting the client:");
+			exc.printStackTrace();
+			removeClient(key);
+			return;
+		} finally {
+			this.bufferPool.release(fromClient);
+		}
+		writeToClient(key);
+	}
+	
+	private void writeToClient(SelectionKey key) {
+		HangmanClient client = (HangmanClient) key.attachment();
+		try {
+			client.send(key);
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			removeClient(key);
+		}
+		
+	}
+	
+	private void removeClient(SelectionKey key) {
+		HangmanClient client = (HangmanClient) key.attachment();
+		client.releaseQueue();
+		key.cancel();
+		try {
+			client.handler.disconnectClient();
+		} catch (IOException e) {
+			System.err.println("Failed to close a client: " + e);
+		}
+	}
+	
+	private static void closeChannel(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Failed to close a client: " + e);
+		}
+	}
+	
+	private static class HangmanClient{
+		private final ClientHandler handler;
+		private final BufferPool bufferPool;
+		//Encoded responses not completely sent yet, in write mode; borrowed while there are any
+		private ByteBuffer toClient;
+		
+		private HangmanClient(ClientHandler handler, BufferPool bufferPool) {
+			this.handler = handler;
+			this.bufferPool = bufferPool;
+		}
+		
+		private void queue(String msg) {
+			int frameBytes = FrameCodec.maxFrameBytes(msg);
+			if(this.toClient == null) {
+				this.toClient = this.bufferPool.borrow(frameBytes);
+			}
+			while(!this.handler.getCodec().encode(MessageType.GAME_RESPONSE, msg, this.toClient)) {
+				grow(frameBytes);
+			}
+		}
+		
+		private void queue(ByteBuffer frame) {
+			if(this.toClient == null) {
+				this.toClient = this.bufferPool.borrow(frame.remaining());
+			} else if(this.toClient.remaining() < frame.remaining()) {
+				grow(frame.remaining());
+			}
+			this.toClient.put(frame);
+		}
+		
+		private boolean hasQueued() {
+			return this.toClient != null;
+		}
+		
+		//Writes the queued messages in one write, waits to write the rest if the channel did not take all,
+		//and stops reading from the client while too much is queued or waits for a worker
+		private void send(SelectionKey key) throws IOException {
+			if(hasQueued()) {
+				this.toClient.flip();
+				this.handler.sendMessages(this.toClient);
+				if(this.toClient.hasRemaining()) {
+					this.toClient.compact();
+				} else {
+					releaseQueue();
+				}
+			}
+			int interestOps = 0;
+			if((!hasQueued() || this.toClient.position() <= QUEUE_HIGH_WATER_BYTES) && this.handler.acceptsMessages()) {
+				interestOps |= SelectionKey.OP_READ;
+			}
+			if(hasQueued()) {
+				interestOps |= SelectionKey.OP_WRITE;
+			}
+			if(key.interestOps() != interestOps) {
+				key.interestOps(interestOps);
+			}
+		}
+		
+		private void grow(int bytes) {
+			ByteBuffer larger = this.bufferPool.borrow(Math.max(this.toClient.capacity() * 2, this.toClient.position() + bytes));
+			this.toClient.flip();
+			larger.put(this.toClient);
+			this.bufferPool.release(this.toClient);
+			this.toClient = larger;
+		}
+		
+		private void releaseQueue() {
+			if(this.toClient != null) {
+				this.bufferPool.release(this.toClient);
+				this.toClient = null;
+			}
+		}
+	}
+	
+	//A response handed over from a worker thread
+	private static final class Response {
+		private final SelectionKey key;
+		private final ByteBuffer frame;
+		
+		private Response(SelectionKey key, ByteBuffer frame) {
+			this.key = key;
+			this.frame = frame;
+		}
+	}
+		
+}
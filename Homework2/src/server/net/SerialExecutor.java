@@ -0,0 +1,63 @@
+package server.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the tasks of one client on a shared pool, one at a time and in the order they
+ * were given, so that the messages of a client are handled in order while the messages
+ * of different clients are handled in parallel. At most one task of the client is queued
+ * in the pool, it runs the tasks of the client until there are none left.
+ * 
+ * Nothing is locked: the tasks are added to a concurrent queue, and a flag that is set
+ * with a compare-and-set tells if the client already has a task in the pool.
+ * 
+ * @author Antonio
+ *
+ */
+final class SerialExecutor implements Executor {
+	private final Executor pool;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	
+	/**
+	 * Creates a <code>SerialExecutor</code>.
+	 * @param pool the pool the tasks run on.
+	 */
+	SerialExecutor(Executor pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Runs a task after the tasks given before it.
+	 * @param task the task
+	 */
+	@Override
+	public void execute(Runnable task) {
+		this.tasks.add(task);
+		schedule();
+	}
+	
+	private void schedule() {
+		if(this.scheduled.compareAndSet(false, true)) {
+			this.pool.execute(this::runTasks);
+		}
+	}
+	
+	private void runTasks() {
+		try {
+			Runnable task;
+			while((task = this.tasks.poll()) != null) {
+				task.run();
+			}
+		} finally {
+			this.scheduled.set(false);
+			//A task may have been added after the last poll, but before the flag was cleared
+			if(!this.tasks.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+}
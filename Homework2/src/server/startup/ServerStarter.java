@@ -1,10 +1,14 @@
 package server.startup;
 
+import server.net.ExecutionMode;
 import server.net.HangmanServer;
 
 /**
  * Just a server starter. Starts the <code>HangmanServer</code> at 
- * port 5000.
+ * port 5000, with one reactor per core. Another number of reactors is
+ * chosen with <code>-Dhangman.reactors</code>. Start with
+ * <code>-Dhangman.executor=WORKER_POOL</code> to handle the messages on a pool of
+ * <code>-Dhangman.poolSize</code> (default one per core) worker threads.
  * 
  * @author Antonio
  *
@@ -17,7 +21,11 @@ public class ServerStarter {
 	 * @param args Not used
 	 */
 	public static void main(String[] args) {
-		HangmanServer server = new HangmanServer(PORT);
+		int reactors = Integer.getInteger("hangman.reactors", Runtime.getRuntime().availableProcessors());
+		ExecutionMode mode = ExecutionMode.valueOf(System.getProperty("hangman.executor",
+				ExecutionMode.SELECTOR.toString()).toUpperCase());
+		int poolSize = Integer.getInteger("hangman.poolSize", Runtime.getRuntime().availableProcessors());
+		HangmanServer server = new HangmanServer(PORT, reactors, mode, poolSize);
 		server.run();
 	}
 